@@ -0,0 +1,211 @@
+package com.sample.productsmanagement.benchmark;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.product.ProductService;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
+import com.sample.productsmanagement.service.s3.FlatImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3CallExecutor;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.FaultInjectingObjectStorage;
+import com.sample.productsmanagement.service.storage.InMemoryObjectStorage;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Latency of creating a product with an image, with every database statement replaced by a
+ * fixed delay and images stored in memory behind the same delay as an S3 PUT.
+ * {@link #sequentialCreate} replays the previous path: auto-increment insert, change record,
+ * statistics, key update and upload, one after another. {@link #createProduct} runs the
+ * current {@link ProductService#createProduct}, where the id is assigned in memory and the
+ * upload overlaps the database statements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductCreateBenchmark {
+
+  private static final String BUCKET = "product-images";
+
+  @Param({"1"})
+  private long dbLatencyMillis;
+
+  @Param({"20"})
+  private long s3LatencyMillis;
+
+  private static final byte[] IMAGE = ByteBuffer.allocate(16 * 1024)
+      .put(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13})
+      .put("IHDR".getBytes(StandardCharsets.US_ASCII))
+      .putInt(800)
+      .putInt(600)
+      .array();
+
+  private final AtomicInteger ids = new AtomicInteger();
+  private final MultipartFile image = (MultipartFile) Proxy.newProxyInstance(
+      MultipartFile.class.getClassLoader(), new Class<?>[] {MultipartFile.class},
+      (proxy, method, args) -> switch (method.getName()) {
+        case "getOriginalFilename" -> "product.png";
+        case "getContentType" -> "image/png";
+        case "getBytes" -> IMAGE.clone();
+        case "getInputStream" -> new ByteArrayInputStream(IMAGE);
+        case "getSize" -> (long) IMAGE.length;
+        case "isEmpty" -> false;
+        default -> null;
+      });
+
+  private ThreadPoolBulkhead bulkhead;
+  private S3Service s3Service;
+  private ProductRepository identityRepository;
+  private ProductChangeRepository productChangeRepository;
+  private ProductStatisticsRepository productStatisticsRepository;
+  private ProductService productService;
+
+  @Setup
+  public void setup() {
+    bulkhead = ThreadPoolBulkhead.ofDefaults("s3");
+    s3Service = new S3Service();
+    inject(s3Service, "objectStorage", new FaultInjectingObjectStorage(
+        new InMemoryObjectStorage("/api/v1/images"), Duration.ofMillis(s3LatencyMillis),
+        Duration.ZERO, 0));
+    inject(s3Service, "s3CallExecutor", new S3CallExecutor(CircuitBreaker.ofDefaults("s3"),
+        bulkhead, TimeLimiter.of(TimeLimiterConfig.custom()
+            .timeoutDuration(Duration.ofSeconds(5))
+            .build())));
+    inject(s3Service, "bucketName", BUCKET);
+
+    identityRepository = stub(ProductRepository.class, method ->
+        pause(method.getName().equals("save") ? dbLatencyMillis : 0));
+    ProductRepository pooledRepository = stub(ProductRepository.class, method ->
+        pause(method.getName().equals("flush") ? dbLatencyMillis : 0));
+    productChangeRepository = stub(ProductChangeRepository.class, method ->
+        pause(method.getName().equals("save") ? dbLatencyMillis : 0));
+    productStatisticsRepository = stub(ProductStatisticsRepository.class, method ->
+        pause(method.getName().equals("increment") ? dbLatencyMillis : 0));
+
+    ProductShards productShards = new UnshardedProductShards();
+    ProductStatisticsService productStatisticsService = new ProductStatisticsService();
+    inject(productStatisticsService, "productShards", productShards);
+    inject(productStatisticsService, "productStatisticsRepository", productStatisticsRepository);
+    inject(productStatisticsService, "slots", 16);
+
+    productService = new ProductService();
+    inject(productService, "productRepository", pooledRepository);
+    inject(productService, "s3Service", s3Service);
+    inject(productService, "imageKeyLayout", new FlatImageKeyLayout());
+    inject(productService, "imageInspector", new ImageInspector());
+    inject(productService, "productChangeRepository", productChangeRepository);
+    inject(productService, "productStatisticsService", productStatisticsService);
+    inject(productService, "productShards", productShards);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    bulkhead.close();
+  }
+
+  @Benchmark
+  public Product sequentialCreate() throws IOException {
+    Product storedProduct = identityRepository.save(newProduct());
+    productChangeRepository.save(ProductChange.builder()
+        .productId(storedProduct.getId())
+        .type(ChangeType.CREATED)
+        .createdAt(Instant.now())
+        .build());
+    productStatisticsRepository.increment(0, 1, storedProduct.getQuantity(),
+        (long) storedProduct.getPrice() * storedProduct.getQuantity());
+    String filePath = String.format("%s-%s", storedProduct.getId(),
+        image.getOriginalFilename());
+    storedProduct.setImageLocation(filePath);
+    String preSignedUrl = s3Service.uploadFile(filePath, image);
+    identityRepository.save(storedProduct);
+
+    return storedProduct.toBuilder().imageLocation(preSignedUrl).build();
+  }
+
+  @Benchmark
+  public Product createProduct() throws IOException {
+    return productService.createProduct(newProduct(), image);
+  }
+
+  private Product newProduct() {
+    return Product.builder().name("benchmark product").price(100).quantity(10).build();
+  }
+
+  /**
+   * Repository stand-in that waits for the given latency and hands saved products
+   * their id, as the real implementations would.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T stub(Class<T> type, java.util.function.ToLongFunction<Method> latency) {
+    InvocationHandler handler = (proxy, method, args) -> {
+      switch (method.getName()) {
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "equals":
+          return proxy == args[0];
+        case "toString":
+          return type.getSimpleName();
+        default:
+          break;
+      }
+      latency.applyAsLong(method);
+      if (args != null && args.length == 1 && args[0] instanceof Product product) {
+        if (product.getId() == 0) {
+          product.setId(ids.incrementAndGet());
+        }
+        return product;
+      }
+      return args != null && args.length == 1 && method.getName().equals("save") ? args[0] : null;
+    };
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler);
+  }
+
+  private static long pause(long millis) {
+    if (millis > 0) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return millis;
+  }
+
+  private static void inject(Object target, String name, Object value) {
+    Field field = ReflectionUtils.findField(target.getClass(), name);
+    ReflectionUtils.makeAccessible(field);
+    ReflectionUtils.setField(field, target, value);
+  }
+}
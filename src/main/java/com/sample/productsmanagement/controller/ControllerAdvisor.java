@@ -1,11 +1,20 @@
 package com.sample.productsmanagement.controller;
 
+import com.sample.productsmanagement.exception.ImageNotFoundException;
+import com.sample.productsmanagement.exception.ImportQueueFullException;
 import com.sample.productsmanagement.exception.InvalidFileFormatException;
+import com.sample.productsmanagement.exception.InvalidManagementTokenException;
+import com.sample.productsmanagement.exception.InvalidProductIdException;
+import com.sample.productsmanagement.exception.ProductImportNotFoundException;
 import com.sample.productsmanagement.exception.ProductNotFoundException;
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.exception.TooManyProductIdsException;
 import java.util.HashMap;
 import java.util.List;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -22,9 +31,31 @@ public class ControllerAdvisor {
 
   @ExceptionHandler(value = ProductNotFoundException.class)
   public ResponseEntity<Object> handleProductNotFoundException(ProductNotFoundException exception){
+    return ResponseEntity.status(HttpStatus.NOT_FOUND)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(exception.getErrorBody());
+  }
+
+  @ExceptionHandler(value = ImageNotFoundException.class)
+  public ResponseEntity<Object> handleImageNotFoundException(ImageNotFoundException exception){
+    return new ResponseEntity<>(createErrorMessage(exception.getMessage()), HttpStatus.NOT_FOUND);
+  }
+
+  @ExceptionHandler(value = ProductImportNotFoundException.class)
+  public ResponseEntity<Object> handleProductImportNotFoundException(ProductImportNotFoundException exception){
     return new ResponseEntity<>(createErrorMessage(exception.getMessage()), HttpStatus.NOT_FOUND);
   }
 
+  @ExceptionHandler(value = InvalidProductIdException.class)
+  public ResponseEntity<Object> handleInvalidProductIdException(InvalidProductIdException exception){
+    return new ResponseEntity<>(createErrorMessage(exception.getMessage()), HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(value = TooManyProductIdsException.class)
+  public ResponseEntity<Object> handleTooManyProductIdsException(TooManyProductIdsException exception){
+    return new ResponseEntity<>(createErrorMessage(exception.getMessage()), HttpStatus.BAD_REQUEST);
+  }
+
   @ExceptionHandler(value = MethodArgumentNotValidException.class)
   public ResponseEntity<Object> handleInvalidRequest(MethodArgumentNotValidException exception){
     List<ObjectError> violationLists = exception.getBindingResult().getAllErrors();
@@ -40,4 +71,23 @@ public class ControllerAdvisor {
 
     return new ResponseEntity<>(createErrorMessage(message), HttpStatus.BAD_REQUEST);
   }
+
+  @ExceptionHandler(value = StorageUnavailableException.class)
+  public ResponseEntity<Object> handleStorageUnavailableException(StorageUnavailableException exception){
+    return new ResponseEntity<>(createErrorMessage(exception.getMessage()), HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  @ExceptionHandler(value = ImportQueueFullException.class)
+  public ResponseEntity<Object> handleImportQueueFullException(ImportQueueFullException exception){
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "60")
+        .body(createErrorMessage(exception.getMessage()));
+  }
+
+  @ExceptionHandler(value = InvalidManagementTokenException.class)
+  public ResponseEntity<Object> handleInvalidManagementTokenException(InvalidManagementTokenException exception){
+    return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+        .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+        .body(createErrorMessage(exception.getMessage()));
+  }
 }
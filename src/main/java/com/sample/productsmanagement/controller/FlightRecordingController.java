@@ -0,0 +1,73 @@
+package com.sample.productsmanagement.controller;
+
+import com.sample.productsmanagement.exception.InvalidManagementTokenException;
+import com.sample.productsmanagement.profiling.FlightRecordingService;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Downloads the last minutes of the flight recording as a {@code .jfr} file, for JDK Mission
+ * Control or {@code jfr print}. Requires {@code Authorization: Bearer} with
+ * {@code product.profiling.dump-token}, every request is refused while no token is configured.
+ */
+@RestController
+@RequestMapping(path = "/api/v1/management/flight-recording")
+@ConditionalOnProperty(name = "product.profiling.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class FlightRecordingController {
+
+  private static final String BEARER = "Bearer ";
+
+  @Autowired
+  private FlightRecordingService flightRecordingService;
+
+  @Value("${product.profiling.dump-token:}")
+  private String dumpToken;
+
+  @GetMapping
+  public void dumpFlightRecording(
+      @RequestHeader(name = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+      @RequestParam(name = "minutes", defaultValue = "5") int minutes,
+      HttpServletResponse response) throws IOException {
+    checkToken(authorization);
+
+    Path dump = flightRecordingService.dump(Duration.ofMinutes(Math.max(1, minutes)));
+    try {
+      response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+      response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+          .filename(String.format("product-service-%s.jfr", System.currentTimeMillis()))
+          .build()
+          .toString());
+      response.setContentLengthLong(Files.size(dump));
+      Files.copy(dump, response.getOutputStream());
+    } finally {
+      Files.deleteIfExists(dump);
+    }
+  }
+
+  private void checkToken(String authorization) {
+    // compared in constant time so the response time does not reveal a matching prefix
+    if (Strings.isBlank(dumpToken) || authorization == null || !MessageDigest.isEqual(
+        authorization.getBytes(StandardCharsets.UTF_8),
+        (BEARER + dumpToken).getBytes(StandardCharsets.UTF_8))) {
+      throw new InvalidManagementTokenException("A valid management token is required");
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.sample.productsmanagement.controller;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.service.image.CachedImage;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.product.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Serves product images through {@link ImageCacheService} under stable URLs so browsers and
+ * CDNs can cache them, unlike presigned URLs which change on every request. Only images of live
+ * products are served. The URL is the object key, which an updated product reuses for its new
+ * image, with the version of the upload appended. A URL with the current version is cached for
+ * good, any other use is revalidated with the ETag and answered with a bodiless 304 while the
+ * image is unchanged.
+ *
+ * <p>Where the servlet container supports it, larger images are handed to it to send from the
+ * cached file with sendfile, without copying them through the heap.
+ */
+@RestController
+@RequestMapping(path = "/api/v1/images")
+public class ImageController {
+
+  private static final int MAX_ATTEMPTS = 3;
+
+  private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+  private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private static final CacheControl IMMUTABLE =
+      CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+  @Autowired
+  private ImageCacheService imageCacheService;
+
+  @Autowired
+  private ProductService productService;
+
+  /**
+   * Looks the image up again when its file was deleted between the lookup and the open, which
+   * only happens to a lookup older than the cache retention, and gives up after
+   * {@value #MAX_ATTEMPTS} attempts while the image keeps being replaced.
+   */
+  @GetMapping(path = "/{*imageKey}")
+  public void getImage(@PathVariable("imageKey") String imageKey, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    String key = imageKey.substring(1);
+    long version = productService.getImageVersion(key);
+    boolean immutable = version != 0 && Long.toString(version)
+        .equals(request.getParameter(ProductService.IMAGE_VERSION_PARAMETER));
+    for (int attempt = 1; ; attempt++) {
+      try {
+        sendImage(imageCacheService.get(key), immutable, request, response);
+        return;
+      } catch (NoSuchFileException exception) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw new StorageUnavailableException(
+              String.format("Image %s, replaced while it was being read", key), exception);
+        }
+      }
+    }
+  }
+
+  /**
+   * Opens the cached file before anything is written, so the headers and the body come from the
+   * same download even if the image is evicted or downloaded again while it is being sent.
+   */
+  private void sendImage(CachedImage image, boolean immutable, HttpServletRequest request,
+      HttpServletResponse response) throws IOException {
+    try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+      response.setHeader(HttpHeaders.ETAG, image.eTag());
+      response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE.getHeaderValue()
+          : CacheControl.noCache().cachePublic().getHeaderValue());
+      response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+      if (image.lastModified() > 0) {
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, image.lastModified());
+      }
+      if (image.eTag().equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+
+      long start = 0;
+      long end = image.size() - 1;
+      String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+      if (rangeHeader != null && image.size() > 0) {
+        List<HttpRange> ranges;
+        try {
+          ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException exception) {
+          ranges = List.of();
+        }
+        if (ranges.size() == 1) {
+          try {
+            start = ranges.get(0).getRangeStart(image.size());
+            end = ranges.get(0).getRangeEnd(image.size());
+          } catch (IllegalArgumentException exception) {
+            start = image.size();
+          }
+          if (start >= image.size() || start > end) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + image.size());
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+          }
+          response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+          response.setHeader(HttpHeaders.CONTENT_RANGE,
+              String.format("bytes %d-%d/%d", start, end, image.size()));
+        }
+      }
+
+      long length = end - start + 1;
+      response.setContentType(image.contentType() == null
+          ? MediaType.APPLICATION_OCTET_STREAM_VALUE : image.contentType());
+      response.setContentLengthLong(Math.max(length, 0));
+      if (length <= 0) {
+        return;
+      }
+      if (length >= SENDFILE_MIN_SIZE
+          && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+        // the container opens the file once this returns, well within the cache retention
+        request.setAttribute(SENDFILE_FILENAME, image.path().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, end + 1);
+        return;
+      }
+
+      WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      long remaining = length;
+      while (remaining > 0) {
+        long transferred = channel.transferTo(position, remaining, target);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
+        remaining -= transferred;
+      }
+    }
+  }
+}
@@ -2,9 +2,17 @@ package com.sample.productsmanagement.controller;
 
 import com.mysql.cj.util.StringUtils;
 import com.sample.productsmanagement.exception.InvalidFileFormatException;
+import com.sample.productsmanagement.exception.InvalidProductIdException;
+import com.sample.productsmanagement.exception.TooManyProductIdsException;
 import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChangeSet;
+import com.sample.productsmanagement.model.ProductChangesDTO;
 import com.sample.productsmanagement.model.ProductDTO;
+import com.sample.productsmanagement.model.ProductLookup;
+import com.sample.productsmanagement.model.ProductLookupDTO;
+import com.sample.productsmanagement.model.ProductStatisticsDTO;
 import com.sample.productsmanagement.service.product.ProductService;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import java.util.HashMap;
@@ -27,9 +35,15 @@ import org.springframework.web.multipart.MultipartFile;
 @RequestMapping(path = "/api/v1/products")
 public class ProductController {
 
+  private static final int MAX_CHANGES_PAGE_SIZE = 1000;
+  private static final int MAX_BATCH_IDS = 1000;
+
   @Autowired
   private ProductService productService;
 
+  @Autowired
+  private ProductStatisticsService productStatisticsService;
+
   private void checkFileFormat(MultipartFile productImage) {
     String fileType = productImage.getContentType() == null? "":productImage.getContentType();
     boolean isImages = StringUtils.startsWithIgnoreCase(fileType, "image");
@@ -63,6 +77,41 @@ public class ProductController {
     return ResponseEntity.ok(productDTOList);
   }
 
+  /**
+   * Looks up several products at once, in the order of the requested ids. Ids without a product
+   * are answered with {@code found: false} instead of failing the whole lookup, while empty or
+   * non-positive ids reject it.
+   */
+  @GetMapping(path = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<ProductLookupDTO>> getProductsByIds(
+      @RequestParam("ids") List<Integer> ids) {
+    if (ids.size() > MAX_BATCH_IDS) {
+      throw new TooManyProductIdsException(
+          String.format("At most %s product ids can be looked up at once", MAX_BATCH_IDS));
+    }
+    if (ids.stream().anyMatch(id -> id == null || id <= 0)) {
+      throw new InvalidProductIdException("Product ids should be positive numbers");
+    }
+    List<ProductLookup> lookups = productService.getProductsByIds(ids);
+
+    return ResponseEntity.ok(lookups.stream().map(ProductLookup::convertToDTO).toList());
+  }
+
+  @GetMapping(path = "/changes", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ProductChangesDTO> getProductChanges(
+      @RequestParam(name = "cursor", defaultValue = "0") long cursor,
+      @RequestParam(name = "limit", defaultValue = "500") int limit) {
+    int pageSize = Math.max(1, Math.min(limit, MAX_CHANGES_PAGE_SIZE));
+    ProductChangeSet changes = productService.getProductChanges(cursor, pageSize);
+
+    return ResponseEntity.ok(changes.convertToDTO());
+  }
+
+  @GetMapping(path = "/statistics", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ProductStatisticsDTO> getProductStatistics() {
+    return ResponseEntity.ok(productStatisticsService.getStatistics());
+  }
+
   @PutMapping(path = "/{productId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,  produces = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<ProductDTO> updateProduct(@PathVariable("productId") int productId,
       @ModelAttribute @Valid ProductDTO productDto, @RequestParam("file") MultipartFile productImage)
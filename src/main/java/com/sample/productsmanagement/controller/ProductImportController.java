@@ -0,0 +1,42 @@
+package com.sample.productsmanagement.controller;
+
+import com.sample.productsmanagement.model.ProductImport;
+import com.sample.productsmanagement.model.ProductImportDTO;
+import com.sample.productsmanagement.service.product.ProductImportService;
+import java.io.IOException;
+import java.net.URI;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping(path = "/api/v1/products/imports")
+public class ProductImportController {
+
+  @Autowired
+  private ProductImportService productImportService;
+
+  @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ProductImportDTO> importProducts(@RequestParam("file") MultipartFile products,
+      @RequestParam(name = "images", required = false) MultipartFile images) throws IOException {
+    ProductImport productImport = productImportService.startImport(products, images);
+
+    return ResponseEntity.accepted()
+        .location(URI.create(String.format("/api/v1/products/imports/%s", productImport.getId())))
+        .body(productImport.convertToDTO());
+  }
+
+  @GetMapping(path = "/{importId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ProductImportDTO> getImport(@PathVariable("importId") long importId) {
+    ProductImport productImport = productImportService.getImport(importId);
+
+    return ResponseEntity.ok(productImport.convertToDTO());
+  }
+}
@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class ImportQueueFullException extends RuntimeException {
+  public ImportQueueFullException(String message) {
+    super(message);
+  }
+}
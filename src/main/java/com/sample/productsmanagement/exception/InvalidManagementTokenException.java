@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class InvalidManagementTokenException extends RuntimeException {
+  public InvalidManagementTokenException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class InvalidProductIdException extends RuntimeException {
+  public InvalidProductIdException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class ProductImportNotFoundException extends RuntimeException {
+  public ProductImportNotFoundException(String message) {
+    super(message);
+  }
+}
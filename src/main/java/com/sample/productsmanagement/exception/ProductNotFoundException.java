@@ -1,7 +1,26 @@
 package com.sample.productsmanagement.exception;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * Thrown for every lookup of a missing product, which for scrapers and stale clients is the
+ * common case. It skips the stack trace and carries its serialized error body so the 404 is
+ * written without walking the stack or serializing a map.
+ */
 public class ProductNotFoundException extends RuntimeException{
+  private final String errorBody;
+
   public ProductNotFoundException(String message) {
-    super(message);
+    super(message, null, false, false);
+    this.errorBody = String.format("{\"message\":\"%s\"}",
+        new String(JsonStringEncoder.getInstance().quoteAsString(message)));
+  }
+
+  public static ProductNotFoundException forId(int id) {
+    return new ProductNotFoundException(String.format("Product with id %s, not found", id));
+  }
+
+  public String getErrorBody() {
+    return errorBody;
   }
 }
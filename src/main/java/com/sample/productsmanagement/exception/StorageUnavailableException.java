@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class StorageUnavailableException extends RuntimeException {
+  public StorageUnavailableException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.exception;
+
+public class TooManyProductIdsException extends RuntimeException {
+  public TooManyProductIdsException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,54 @@
+package com.sample.productsmanagement.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Format, dimensions and byte size of a product image, read from the image header while it is
+ * uploaded. Width and height are {@code null} when the header did not reveal them within the
+ * inspected prefix. The version tells uploads to the same key apart.
+ */
+@Data
+@Builder
+@Embeddable
+@JsonInclude(Include.NON_NULL)
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageMetadata {
+
+  @Column(name = "image_format", length = 8)
+  private String format;
+
+  @Column(name = "image_width")
+  private Integer width;
+
+  @Column(name = "image_height")
+  private Integer height;
+
+  @Column(name = "image_size")
+  private Long size;
+
+  /**
+   * Upload time in epoch milliseconds, carried by the image proxy URL so a replaced image gets a
+   * new URL. {@code null} for images uploaded before it was recorded.
+   */
+  @JsonIgnore
+  @Column(name = "image_version")
+  private Long version;
+
+  public ImageMetadata(String format, Integer width, Integer height, Long size) {
+    this(format, width, height, size, null);
+  }
+
+  @JsonIgnore
+  public String getContentType() {
+    return "image/" + format;
+  }
+}
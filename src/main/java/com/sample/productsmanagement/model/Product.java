@@ -1,31 +1,83 @@
 package com.sample.productsmanagement.model;
 
+import com.sample.productsmanagement.repository.shard.ShardAwareTableGenerator;
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import java.time.Instant;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 
 @Data
 @Entity
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
+@Table(indexes = @Index(columnList = "imageLocation"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@SQLDelete(sql = "update product set deleted = true, deleted_at = utc_timestamp(6) where id = ?")
+@SQLRestriction("deleted = false")
 public class Product {
 
+  public static final String ID_GENERATOR_TABLE = "product_id_generator";
+  public static final int ID_ALLOCATION_SIZE = 50;
+
+  /**
+   * Ids come from a pooled table generator instead of the auto-increment column, so an id is
+   * known as soon as the product is persisted and the row is inserted once, at flush, with its
+   * image location already set. Inserts can be batched for the same reason. The generator is
+   * the one a JPA table generator maps to, with a separate pool per shard when sharded.
+   */
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(generator = "product_id")
+  @GenericGenerator(name = "product_id", type = ShardAwareTableGenerator.class, parameters = {
+      @Parameter(name = ShardAwareTableGenerator.TABLE_PARAM, value = ID_GENERATOR_TABLE),
+      @Parameter(name = ShardAwareTableGenerator.SEGMENT_COLUMN_PARAM, value = "name"),
+      @Parameter(name = ShardAwareTableGenerator.VALUE_COLUMN_PARAM, value = "next_val"),
+      @Parameter(name = ShardAwareTableGenerator.SEGMENT_VALUE_PARAM, value = "product"),
+      @Parameter(name = ShardAwareTableGenerator.INCREMENT_PARAM, value = "" + ID_ALLOCATION_SIZE),
+      @Parameter(name = ShardAwareTableGenerator.INITIAL_PARAM, value = "1")})
   private int id;
   private String name;
   private int price;
   private int quantity;
 
+  /**
+   * S3 object key of the image. Binary collation makes the index order match the S3 listing
+   * order, which the image reconciliation job merge-joins against.
+   */
+  @Column(columnDefinition = "varchar(255) character set utf8mb4 collate utf8mb4_0900_bin")
   private String imageLocation;
 
+  @Embedded
+  private ImageMetadata image;
+
+  /**
+   * Soft delete flag. Deleting through JPA only sets it (see {@link SQLDelete}), flagged rows are
+   * hidden from every query by {@link SQLRestriction} and removed later, together with their
+   * image, by the purge job.
+   */
+  private boolean deleted;
+  private Instant deletedAt;
+
+  public Product(int id, String name, int price, int quantity, String imageLocation) {
+    this(id, name, price, quantity, imageLocation, null, false, null);
+  }
+
   public void updateProduct(Product updatedProduct) {
     this.name = updatedProduct.name;
     this.price = updatedProduct.price;
@@ -39,6 +91,7 @@ public class Product {
         .price(this.price)
         .quantity(this.quantity)
         .imageUrl(this.imageLocation)
+        .image(this.image)
         .build();
   }
 }
@@ -0,0 +1,56 @@
+package com.sample.productsmanagement.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Append-only change log of products. The auto-increment id is the change feed cursor, and
+ * {@link ChangeType#DELETED} rows act as tombstones for deleted products.
+ *
+ * <p>When sharded, changes are written on the product's shard in the product's transaction and
+ * the feed is the table on the first shard, which the other shards' records are relayed to.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "product_change", indexes = @Index(columnList = "productId"))
+public class ProductChange {
+
+  public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+  private int productId;
+
+  @Enumerated(EnumType.STRING)
+  private ChangeType type;
+  private Instant createdAt;
+
+  /**
+   * Image location the change replaced or removed, so other instances can drop it from their
+   * image caches. Empty for creates and for products without an image.
+   */
+  private String previousImageLocation;
+
+  public ProductChange(long id, int productId, ChangeType type, Instant createdAt) {
+    this(id, productId, type, createdAt, null);
+  }
+}
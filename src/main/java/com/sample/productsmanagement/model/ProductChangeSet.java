@@ -0,0 +1,16 @@
+package com.sample.productsmanagement.model;
+
+import java.util.List;
+
+public record ProductChangeSet(List<Product> products, List<Integer> deletedIds, long cursor,
+                               boolean hasMore) {
+
+  public ProductChangesDTO convertToDTO() {
+    return ProductChangesDTO.builder()
+        .products(products.stream().map(Product::convertToDTO).toList())
+        .deletedIds(deletedIds)
+        .cursor(cursor)
+        .hasMore(hasMore)
+        .build();
+  }
+}
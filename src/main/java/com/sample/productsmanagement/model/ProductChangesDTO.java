@@ -0,0 +1,18 @@
+package com.sample.productsmanagement.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangesDTO {
+  private List<ProductDTO> products;
+  private List<Integer> deletedIds;
+  private long cursor;
+  private boolean hasMore;
+}
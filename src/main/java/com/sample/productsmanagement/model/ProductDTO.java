@@ -1,5 +1,7 @@
 package com.sample.productsmanagement.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
@@ -27,6 +29,9 @@ public class ProductDTO {
 
   private String imageUrl;
 
+  @JsonInclude(Include.NON_NULL)
+  private ImageMetadata image;
+
   public Product mapToProduct(){
     return Product.builder()
         .name(this.name)
@@ -0,0 +1,72 @@
+package com.sample.productsmanagement.model;
+
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.OrderColumn;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Status of a bulk product import. Only the first few row errors are kept, the rest are
+ * counted in {@code failedRows}.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "product_import")
+public class ProductImport {
+
+  public enum Status {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  @Enumerated(EnumType.STRING)
+  private Status status;
+  private long processedRows;
+  private long importedRows;
+  private long failedRows;
+  private long uploadedImages;
+
+  @Builder.Default
+  @OrderColumn
+  @ElementCollection(fetch = FetchType.EAGER)
+  private List<String> errors = new ArrayList<>();
+  private Instant createdAt;
+  private Instant updatedAt;
+  private Instant finishedAt;
+
+  public ProductImportDTO convertToDTO() {
+    return ProductImportDTO.builder()
+        .id(this.id)
+        .status(this.status)
+        .processedRows(this.processedRows)
+        .importedRows(this.importedRows)
+        .failedRows(this.failedRows)
+        .uploadedImages(this.uploadedImages)
+        .errors(List.copyOf(this.errors))
+        .createdAt(this.createdAt)
+        .finishedAt(this.finishedAt)
+        .build();
+  }
+}
@@ -0,0 +1,25 @@
+package com.sample.productsmanagement.model;
+
+import com.sample.productsmanagement.model.ProductImport.Status;
+import java.time.Instant;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportDTO {
+  private long id;
+  private Status status;
+  private long processedRows;
+  private long importedRows;
+  private long failedRows;
+  private long uploadedImages;
+  private List<String> errors;
+  private Instant createdAt;
+  private Instant finishedAt;
+}
@@ -0,0 +1,15 @@
+package com.sample.productsmanagement.model;
+
+/**
+ * Result of looking up one requested id, {@code product} is {@code null} when no product has it.
+ */
+public record ProductLookup(int id, Product product) {
+
+  public ProductLookupDTO convertToDTO() {
+    return ProductLookupDTO.builder()
+        .id(id)
+        .found(product != null)
+        .product(product == null ? null : product.convertToDTO())
+        .build();
+  }
+}
@@ -0,0 +1,20 @@
+package com.sample.productsmanagement.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductLookupDTO {
+  private int id;
+  private boolean found;
+
+  @JsonInclude(Include.NON_NULL)
+  private ProductDTO product;
+}
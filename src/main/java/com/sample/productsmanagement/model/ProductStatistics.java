@@ -0,0 +1,29 @@
+package com.sample.productsmanagement.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One stripe of the catalog statistics counters. Writers add their delta to a random slot so
+ * concurrent transactions rarely wait on the same row lock, and readers sum the fixed number of
+ * slots.
+ */
+@Data
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "product_statistics")
+public class ProductStatistics {
+
+  @Id
+  private int slot;
+  private long totalProducts;
+  private long totalUnits;
+  private long totalValue;
+}
@@ -0,0 +1,16 @@
+package com.sample.productsmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStatisticsDTO {
+  private long totalProducts;
+  private long totalUnits;
+  private long totalValue;
+}
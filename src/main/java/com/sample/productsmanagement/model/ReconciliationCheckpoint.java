@@ -0,0 +1,34 @@
+package com.sample.productsmanagement.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a reconciliation run. Every key up to and including {@code lastKey} has been
+ * compared on both sides, so an interrupted run resumes right after it.
+ */
+@Data
+@Entity
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "reconciliation_checkpoint")
+public class ReconciliationCheckpoint {
+
+  @Id
+  private String name;
+  private String lastKey;
+  private long scannedObjects;
+  private long orphanedObjects;
+  private long deletedObjects;
+  private long missingObjects;
+  private Instant startedAt;
+  private Instant updatedAt;
+  private Instant completedAt;
+}
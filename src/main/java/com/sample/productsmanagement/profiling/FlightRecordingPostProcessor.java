@@ -0,0 +1,165 @@
+package com.sample.productsmanagement.profiling;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.service.product.ProductService;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.StoredObject;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Records a {@link ProductOperationEvent} for every call to {@link ProductService}, the
+ * repositories and {@link S3Service}, and hands the duration of service calls to
+ * {@link FlightRecordingService} to check against the latency SLO. The product id is taken from a
+ * {@link Product} argument or result, or from a leading {@code int} argument of a service call,
+ * and the bytes from the uploaded image or the downloaded object. Asynchronous calls are recorded
+ * once their future completes.
+ */
+@Component
+@ConditionalOnProperty(name = "product.profiling.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class FlightRecordingPostProcessor implements BeanPostProcessor {
+
+  enum Phase {
+    SERVICE("service"),
+    DB("db"),
+    STORAGE("storage");
+
+    private final String label;
+
+    Phase(String label) {
+      this.label = label;
+    }
+  }
+
+  private final ObjectProvider<FlightRecordingService> flightRecordingService;
+
+  public FlightRecordingPostProcessor(
+      ObjectProvider<FlightRecordingService> flightRecordingService) {
+    this.flightRecordingService = flightRecordingService;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    Phase phase = phaseOf(bean);
+    if (phase == null) {
+      return bean;
+    }
+
+    OperationInterceptor interceptor = new OperationInterceptor(phase, beanName,
+        flightRecordingService);
+    if (bean instanceof Advised advised && !advised.isFrozen()) {
+      advised.addAdvice(0, interceptor);
+      return bean;
+    }
+    ProxyFactory proxyFactory = new ProxyFactory(bean);
+    // the service also implements MeterBinder, callers need the class itself
+    proxyFactory.setProxyTargetClass(true);
+    proxyFactory.addAdvice(interceptor);
+    return proxyFactory.getProxy(bean.getClass().getClassLoader());
+  }
+
+  private static Phase phaseOf(Object bean) {
+    if (bean instanceof ProductService) {
+      return Phase.SERVICE;
+    }
+    if (bean instanceof Repository<?, ?>) {
+      return Phase.DB;
+    }
+    if (bean instanceof S3Service) {
+      return Phase.STORAGE;
+    }
+    return null;
+  }
+
+  private record OperationInterceptor(Phase phase, String beanName,
+      ObjectProvider<FlightRecordingService> flightRecordingService)
+      implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      ProductOperationEvent event = new ProductOperationEvent();
+      if (!event.isEnabled() && phase != Phase.SERVICE) {
+        return invocation.proceed();
+      }
+
+      long startedAt = System.nanoTime();
+      event.begin();
+      Object result = null;
+      boolean failed = true;
+      try {
+        result = invocation.proceed();
+        failed = false;
+        return result;
+      } finally {
+        if (result instanceof CompletableFuture<?> future && !future.isDone()) {
+          future.whenComplete((value, error) ->
+              complete(event, invocation, value, error != null, startedAt));
+        } else {
+          complete(event, invocation, result, failed, startedAt);
+        }
+      }
+    }
+
+    private void complete(ProductOperationEvent event, MethodInvocation invocation,
+        Object result, boolean failed, long startedAt) {
+      String operation = beanName + "." + invocation.getMethod().getName();
+      event.end();
+      if (event.shouldCommit()) {
+        event.operation = operation;
+        event.phase = phase.label;
+        event.productId = productIdOf(invocation, result);
+        event.bytes = bytesOf(invocation, result);
+        event.failed = failed;
+        event.commit();
+      }
+      if (phase == Phase.SERVICE) {
+        flightRecordingService.ifAvailable(service -> service.checkLatency(operation,
+            Duration.ofNanos(System.nanoTime() - startedAt)));
+      }
+    }
+
+    private int productIdOf(MethodInvocation invocation, Object result) {
+      Object[] arguments = invocation.getArguments();
+      if (arguments.length > 0 && arguments[0] instanceof Product product) {
+        return product.getId();
+      }
+      if (result instanceof Product product) {
+        return product.getId();
+      }
+      if (phase == Phase.SERVICE && arguments.length > 0
+          && invocation.getMethod().getParameterTypes()[0] == int.class) {
+        return (int) arguments[0];
+      }
+      return 0;
+    }
+
+    private long bytesOf(MethodInvocation invocation, Object result) {
+      for (Object argument : invocation.getArguments()) {
+        if (argument instanceof MultipartFile file) {
+          return file.getSize();
+        }
+        // the only long a storage call takes is the size of a streamed upload
+        if (phase == Phase.STORAGE && argument instanceof Long size) {
+          return size;
+        }
+      }
+      if (result instanceof Optional<?> optional
+          && optional.orElse(null) instanceof StoredObject stored) {
+        return stored.size();
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.sample.productsmanagement.profiling;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Keeps a JDK Flight Recorder recording running for the lifetime of the application, so what the
+ * threads were doing when latency degraded can be looked at afterwards. The recording uses the
+ * {@code product.profiling.settings} configuration, {@code default} costing around 1% of CPU,
+ * and is a ring buffer on disk bounded by {@code product.profiling.max-age} and
+ * {@code product.profiling.max-size}.
+ *
+ * <p>The last minutes of it are dumped on demand, or into {@code product.profiling.dump-directory}
+ * when a service call takes longer than the latency SLO, {@code product.profiling.slo.latency}.
+ * Those automatic dumps are taken at most once per {@code product.profiling.slo.min-dump-interval}
+ * and only the newest {@code product.profiling.max-dumps} are kept.
+ */
+@Service
+@ConditionalOnProperty(name = "product.profiling.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class FlightRecordingService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecordingService.class);
+
+  private static final String SLO_DUMP_PREFIX = "slo-";
+
+  @Value("${product.profiling.settings:default}")
+  private String settings;
+
+  @Value("${product.profiling.max-age:PT30M}")
+  private Duration maxAge;
+
+  @Value("${product.profiling.max-size:256MB}")
+  private DataSize maxSize;
+
+  @Value("${product.profiling.event-threshold:0ms}")
+  private Duration eventThreshold;
+
+  @Value("${product.profiling.dump-directory:${java.io.tmpdir}/product-profiling}")
+  private Path dumpDirectory;
+
+  @Value("${product.profiling.max-dumps:10}")
+  private int maxDumps;
+
+  @Value("${product.profiling.slo.latency:2s}")
+  private Duration sloLatency;
+
+  @Value("${product.profiling.slo.dump-window:PT5M}")
+  private Duration sloDumpWindow;
+
+  @Value("${product.profiling.slo.min-dump-interval:PT15M}")
+  private Duration minDumpInterval;
+
+  private final AtomicReference<Instant> nextSloDumpAt = new AtomicReference<>(Instant.MIN);
+
+  private Recording recording;
+
+  @PostConstruct
+  void start() throws IOException, ParseException {
+    Files.createDirectories(dumpDirectory);
+    try (Stream<Path> files = Files.list(dumpDirectory)) {
+      for (Path file : files.toList()) {
+        if (!file.getFileName().toString().startsWith(SLO_DUMP_PREFIX)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+    if (!FlightRecorder.isAvailable()) {
+      LOGGER.warn("Flight Recorder is not available in this JVM, nothing will be recorded");
+      return;
+    }
+
+    recording = new Recording(Configuration.getConfiguration(settings));
+    recording.setName("product-service");
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.setMaxSize(maxSize.toBytes());
+    recording.enable(ProductOperationEvent.class).withThreshold(eventThreshold);
+    // dumps leave the host, and the environment and system properties hold the credentials
+    recording.disable("jdk.InitialEnvironmentVariable");
+    recording.disable("jdk.InitialSystemProperty");
+    recording.start();
+  }
+
+  @PreDestroy
+  void stop() {
+    if (recording != null) {
+      recording.close();
+    }
+  }
+
+  /**
+   * Writes the events of the last {@code window} of the recording, at most its maximum age, to a
+   * new temporary file the caller deletes once done with it.
+   */
+  public Path dump(Duration window) throws IOException {
+    if (recording == null) {
+      throw new IllegalStateException("Flight Recorder is not available in this JVM");
+    }
+
+    Path target = Files.createTempFile(dumpDirectory, "dump-", ".jfr");
+    try {
+      dump(window, target);
+    } catch (IOException | RuntimeException exception) {
+      Files.deleteIfExists(target);
+      throw exception;
+    }
+    return target;
+  }
+
+  private void dump(Duration window, Path target) throws IOException {
+    Instant since = Instant.now().minus(window.compareTo(maxAge) > 0 ? maxAge : window);
+    Path snapshot = Files.createTempFile(dumpDirectory, "snapshot-", ".jfr");
+    try {
+      // the buffer holds whole chunks, which may reach further back than asked for
+      recording.dump(snapshot);
+      try (RecordingFile file = new RecordingFile(snapshot)) {
+        file.write(target, event -> !event.getEndTime().isBefore(since));
+      }
+    } finally {
+      Files.deleteIfExists(snapshot);
+    }
+  }
+
+  /**
+   * Dumps the last {@code product.profiling.slo.dump-window} in the background when the call took
+   * longer than the latency SLO and no dump was taken within the minimum interval.
+   */
+  void checkLatency(String operation, Duration latency) {
+    if (recording == null || sloLatency.isZero() || latency.compareTo(sloLatency) <= 0) {
+      return;
+    }
+    Instant now = Instant.now();
+    Instant next = nextSloDumpAt.get();
+    if (now.isBefore(next) || !nextSloDumpAt.compareAndSet(next, now.plus(minDumpInterval))) {
+      return;
+    }
+
+    LOGGER.warn("{} took {} ms, more than the latency SLO of {} ms, dumping the flight recording",
+        operation, latency.toMillis(), sloLatency.toMillis());
+    Thread.ofVirtual().name("flight-recording-dump").start(this::dumpSloBreach);
+  }
+
+  private void dumpSloBreach() {
+    Path target = dumpDirectory.resolve(SLO_DUMP_PREFIX + System.currentTimeMillis() + ".jfr");
+    try {
+      dump(sloDumpWindow, target);
+      LOGGER.info("Dumped the last {} of the flight recording to {}", sloDumpWindow, target);
+      deleteOldDumps();
+    } catch (IOException | RuntimeException exception) {
+      LOGGER.warn("Could not dump the flight recording to {}", target, exception);
+    }
+  }
+
+  private void deleteOldDumps() throws IOException {
+    List<Path> dumps;
+    try (Stream<Path> files = Files.list(dumpDirectory)) {
+      dumps = files.filter(file -> file.getFileName().toString().startsWith(SLO_DUMP_PREFIX))
+          .sorted(Comparator.comparing(Path::getFileName).reversed())
+          .toList();
+    }
+    for (Path dump : dumps.subList(Math.min(maxDumps, dumps.size()), dumps.size())) {
+      Files.deleteIfExists(dump);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.sample.productsmanagement.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One call to the product service, a repository or the image storage, recorded by
+ * {@link FlightRecordingPostProcessor}. The duration and thread come with every JFR event. Stack
+ * traces are left out, the execution samples of the recording already show where threads were.
+ */
+@Name("com.sample.products.ProductOperation")
+@Label("Product Operation")
+@Category("Products")
+@Description("Call to the product service, a repository or the image storage")
+@StackTrace(false)
+class ProductOperationEvent extends Event {
+
+  @Label("Operation")
+  @Description("Bean and method called")
+  String operation;
+
+  @Label("Phase")
+  @Description("service, db or storage")
+  String phase;
+
+  @Label("Product Id")
+  @Description("Id of the product operated on, 0 when the call is not about one product")
+  int productId;
+
+  @Label("Bytes")
+  @Description("Image bytes uploaded or downloaded, 0 when the call moves none")
+  @DataAmount
+  long bytes;
+
+  @Label("Failed")
+  boolean failed;
+}
@@ -0,0 +1,83 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives the image location column the binary collation of its mapping on tables created before
+ * it had one, which {@code ddl-auto=update} leaves alone. The index is only in S3 key order,
+ * and usable by {@link ProductRepository#findImageLocationsAfter}, with that collation. The
+ * column is altered once per shard, rebuilding the table, and left alone afterwards. Instances
+ * starting together alter it under a named lock, the others wait and find it altered.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ImageLocationCollationInitializer {
+
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(ImageLocationCollationInitializer.class);
+
+  private static final String COLLATION = "utf8mb4_0900_bin";
+
+  private static final String LOCK_NAME = "image-location-collation";
+
+  private static final Duration LOCK_TIMEOUT = Duration.ofMinutes(10);
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired
+  private NamedLocks namedLocks;
+
+  @PostConstruct
+  void init() {
+    for (String shard : productShards.names()) {
+      productShards.run(shard, () -> alter(shard));
+    }
+  }
+
+  private void alter(String shard) {
+    if (collation() == null) {
+      return;
+    }
+    boolean locked = namedLocks.runLocked(shard, LOCK_NAME, LOCK_TIMEOUT, () -> {
+      String collation = collation();
+      if (collation == null) {
+        return;
+      }
+      LOGGER.info("Changing the collation of product.image_location on shard {} from {} to {}",
+          shard, collation, COLLATION);
+      jdbcTemplate.execute("alter table product modify image_location varchar(255) "
+          + "character set utf8mb4 collate " + COLLATION);
+    });
+    if (!locked) {
+      LOGGER.warn("Another instance is still changing the collation of product.image_location "
+          + "on shard {} after {}", shard, LOCK_TIMEOUT);
+    }
+  }
+
+  /**
+   * The collation of the column when it has to be changed, {@code null} when it already has
+   * the binary one or does not exist yet.
+   */
+  private String collation() {
+    List<String> collations = jdbcTemplate.queryForList("select collation_name "
+        + "from information_schema.columns where table_schema = database() "
+        + "and table_name = 'product' and column_name = 'image_location'", String.class);
+    if (collations.isEmpty() || COLLATION.equals(collations.get(0))) {
+      return null;
+    }
+    return collations.get(0);
+  }
+}
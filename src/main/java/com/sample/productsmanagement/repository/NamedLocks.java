@@ -0,0 +1,60 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps work to one instance at a time with MySQL named locks. A lock is held by a connection of
+ * its own for as long as the work runs, and released by the server should that connection be
+ * lost, so a crashed instance never leaves it taken.
+ */
+@Component
+public class NamedLocks {
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  /**
+   * Runs the work while holding the lock of the shard, waiting up to {@code timeout} for another
+   * instance to release it. Returns {@code false} without running the work when it did not.
+   */
+  public boolean runLocked(String shard, String name, Duration timeout, Runnable work) {
+    Boolean ran = productShards.call(shard, () -> jdbcTemplate.execute(
+        (ConnectionCallback<Boolean>) connection -> {
+          if (!Integer.valueOf(1).equals(
+              select(connection, "select get_lock(?, ?)", name, timeout.toSeconds()))) {
+            return false;
+          }
+          try {
+            work.run();
+            return true;
+          } finally {
+            select(connection, "select release_lock(?)", name);
+          }
+        }));
+    return Boolean.TRUE.equals(ran);
+  }
+
+  private static Integer select(Connection connection, String sql, Object... parameters)
+      throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+      try (ResultSet result = statement.executeQuery()) {
+        return result.next() ? result.getObject(1, Integer.class) : null;
+      }
+    }
+  }
+}
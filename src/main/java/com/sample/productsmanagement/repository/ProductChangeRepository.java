@@ -0,0 +1,41 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+import org.hibernate.LockOptions;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductChangeRepository extends JpaRepository<ProductChange, Long> {
+
+  List<ProductChange> findByIdGreaterThanAndCreatedAtLessThanEqualOrderByIdAsc(long cursor,
+      Instant settledBefore, Limit limit);
+
+  /**
+   * The oldest change records no other transaction has locked, locked until this one ends.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT,
+      value = "" + LockOptions.SKIP_LOCKED))
+  @Query("select c from ProductChange c order by c.id")
+  List<ProductChange> findUnlockedOrderByIdAsc(Limit limit);
+
+  List<ProductChange> findByIdGreaterThanOrderByIdAsc(long cursor, Limit limit);
+
+  List<ProductChange> findByIdGreaterThanAndTypeOrderByIdAsc(long cursor, ChangeType type,
+      Limit limit);
+
+  @Query("select coalesce(max(c.id), 0) from ProductChange c where c.createdAt <= :before")
+  long findLastIdCreatedBefore(@Param("before") Instant before);
+}
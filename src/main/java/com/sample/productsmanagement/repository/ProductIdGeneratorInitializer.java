@@ -0,0 +1,61 @@
+package com.sample.productsmanagement.repository;
+
+import static com.sample.productsmanagement.model.Product.ID_ALLOCATION_SIZE;
+import static com.sample.productsmanagement.model.Product.ID_GENERATOR_TABLE;
+
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.ProductShards.IdRange;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the product id generator past the ids already in the table, which were assigned by the
+ * auto-increment column before the table generator was introduced. The value is only ever
+ * raised, so blocks already handed out to running instances are never reused. When sharded,
+ * every shard's generator is moved into its own id range, past the ids of that range it has.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ProductIdGeneratorInitializer {
+
+  private static final String GENERATOR_NAME = "product";
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @PostConstruct
+  void init() {
+    for (String shard : productShards.names()) {
+      productShards.run(shard, () -> raise(productShards.idRange(shard)));
+    }
+  }
+
+  private void raise(IdRange idRange) {
+    Long maxId = jdbcTemplate.queryForObject(
+        "select coalesce(max(id), 0) from product where id >= ? and id < ?", Long.class,
+        idRange.start(), idRange.end());
+    long floor = Math.max(maxId + ID_ALLOCATION_SIZE + 1,
+        (long) idRange.start() + ID_ALLOCATION_SIZE);
+
+    int updated = jdbcTemplate.update(String.format(
+        "update %s set next_val = ? where name = ? and next_val < ?", ID_GENERATOR_TABLE),
+        floor, GENERATOR_NAME, floor);
+    if (updated > 0) {
+      return;
+    }
+    try {
+      jdbcTemplate.update(String.format("insert into %s (name, next_val) select ?, ? from dual "
+              + "where not exists (select 1 from %s where name = ?)", ID_GENERATOR_TABLE,
+          ID_GENERATOR_TABLE), GENERATOR_NAME, floor, GENERATOR_NAME);
+    } catch (DuplicateKeyException ignored) {
+      // another instance created the row first from the same ids
+    }
+  }
+}
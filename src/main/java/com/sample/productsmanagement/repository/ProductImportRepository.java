@@ -0,0 +1,14 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.model.ProductImport;
+import com.sample.productsmanagement.model.ProductImport.Status;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductImportRepository extends JpaRepository<ProductImport, Long> {
+
+  List<ProductImport> findByStatusIn(Collection<Status> statuses);
+}
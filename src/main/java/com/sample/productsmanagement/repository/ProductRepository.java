@@ -1,10 +1,158 @@
 package com.sample.productsmanagement.repository;
 
 import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository.Totals;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
 
+  interface PurgeCandidate {
+    int getId();
+
+    String getImageLocation();
+  }
+
+  interface ProductImage {
+    int getId();
+
+    String getImageLocation();
+  }
+
+  interface ProductRow {
+    int getId();
+
+    String getName();
+
+    int getPrice();
+
+    int getQuantity();
+
+    String getImageLocation();
+
+    String getImageFormat();
+
+    Integer getImageWidth();
+
+    Integer getImageHeight();
+
+    Long getImageSize();
+
+    Long getImageVersion();
+  }
+
+  String PRODUCT_ROW_COLUMNS = "select id, name, price, quantity, "
+      + "image_location as imageLocation, image_format as imageFormat, "
+      + "image_width as imageWidth, image_height as imageHeight, image_size as imageSize, "
+      + "image_version as imageVersion from product ";
+
+  /**
+   * Loads the product with its row locked until the transaction ends.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select p from Product p where p.id = :id")
+  Optional<Product> findByIdForUpdate(@Param("id") int id);
+
+  /**
+   * Query cached, which only pays off for bounded results: a hit loads every product by id from
+   * the entity region, one select each for those it no longer holds. The lookups by id come in
+   * chunks of {@code product.batch.chunk-size}, well within the region, while the unbounded
+   * {@link #findAll()} is left uncached.
+   */
+  @Override
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  List<Product> findAllById(Iterable<Integer> ids);
+
+  /**
+   * Versions of the images of live products stored under the key, {@code 0} for one uploaded
+   * before versions were recorded. Query cached, the image proxy looks it up on every request.
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+  @Query("select coalesce(p.image.version, 0L) from Product p "
+      + "where p.imageLocation = :imageLocation")
+  List<Long> findImageVersions(@Param("imageLocation") String imageLocation);
+
+  @Query("select count(p) as totalProducts, coalesce(sum(p.quantity), 0) as totalUnits, "
+      + "coalesce(sum(cast(p.price as long) * p.quantity), 0) as totalValue from Product p")
+  Totals calculateTotals();
+
+  @Query("select p.id from Product p where p.id > :after order by p.id")
+  List<Integer> findIdsAfter(@Param("after") int after, Limit limit);
+
+  /**
+   * Products soft deleted longer than the grace period ago, by the database clock that also set
+   * their deletion time, and locked until the transaction ends. Rows another transaction has
+   * locked are skipped.
+   */
+  @Query(value = "select id, image_location as imageLocation from product where deleted = true "
+      + "and deleted_at <= utc_timestamp(6) - interval :gracePeriodSeconds second "
+      + "order by id limit :limit for update skip locked", nativeQuery = true)
+  List<PurgeCandidate> lockPurgeCandidates(@Param("gracePeriodSeconds") long gracePeriodSeconds,
+      @Param("limit") int limit);
+
+  /**
+   * Next page of image locations after {@code after} in S3 key order, soft deleted rows
+   * included since their images are still in use until the purge job removes them. The column's
+   * binary collation, see {@link ImageLocationCollationInitializer}, is that order.
+   */
+  @Query(value = "select image_location from product where image_location > :after "
+      + "order by image_location limit :limit", nativeQuery = true)
+  List<String> findImageLocationsAfter(@Param("after") String after, @Param("limit") int limit);
+
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product"))
+  @Query(value = "delete from product where deleted = true and id in (:ids)", nativeQuery = true)
+  int purgeDeleted(@Param("ids") Collection<Integer> ids);
+
+  /**
+   * Next page of products with an image after the given id, soft deleted rows included.
+   */
+  @Query(value = "select id, image_location as imageLocation from product "
+      + "where id > :after and image_location is not null order by id limit :limit",
+      nativeQuery = true)
+  List<ProductImage> findImagesAfter(@Param("after") int after, @Param("limit") int limit);
+
+  /**
+   * Locks the products, soft deleted ones included, until the transaction ends and returns
+   * their image locations.
+   */
+  @Query(value = "select id, image_location as imageLocation from product "
+      + "where id in (:ids) for update", nativeQuery = true)
+  List<ProductImage> lockImages(@Param("ids") Collection<Integer> ids);
+
+  /**
+   * Moves the image location only if it still has the expected value, so a product whose image
+   * was replaced in the meantime keeps the new one.
+   */
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product"))
+  @Query(value = "update product set image_location = :target "
+      + "where id = :id and image_location = :expected", nativeQuery = true)
+  int moveImageLocation(@Param("id") int id, @Param("expected") String expected,
+      @Param("target") String target);
+
+  /**
+   * Next page of products after the given id as plain rows, which bypass the persistence context
+   * and the second-level cache when every product is read.
+   */
+  @Query(value = PRODUCT_ROW_COLUMNS + "where deleted = false and id > :after order by id "
+      + "limit :limit", nativeQuery = true)
+  List<ProductRow> findRowsAfter(@Param("after") int after, @Param("limit") int limit);
+
+  @Query(value = PRODUCT_ROW_COLUMNS + "where deleted = false and id in (:ids)",
+      nativeQuery = true)
+  List<ProductRow> findRowsById(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,44 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.model.ProductStatistics;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.util.List;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProductStatisticsRepository extends JpaRepository<ProductStatistics, Integer> {
+
+  interface Totals {
+    long getTotalProducts();
+
+    long getTotalUnits();
+
+    long getTotalValue();
+  }
+
+  @Query("select coalesce(sum(s.totalProducts), 0) as totalProducts, "
+      + "coalesce(sum(s.totalUnits), 0) as totalUnits, "
+      + "coalesce(sum(s.totalValue), 0) as totalValue from ProductStatistics s")
+  Totals sumTotals();
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select s from ProductStatistics s")
+  List<ProductStatistics> lockAll();
+
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "product_statistics"))
+  @Query(value = "insert into product_statistics (slot, total_products, total_units, total_value) "
+      + "values (:slot, :products, :units, :value) on duplicate key update "
+      + "total_products = total_products + :products, total_units = total_units + :units, "
+      + "total_value = total_value + :value", nativeQuery = true)
+  void increment(@Param("slot") int slot, @Param("products") long products,
+      @Param("units") long units, @Param("value") long value);
+}
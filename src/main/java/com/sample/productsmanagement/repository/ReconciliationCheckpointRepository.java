@@ -0,0 +1,10 @@
+package com.sample.productsmanagement.repository;
+
+import com.sample.productsmanagement.model.ReconciliationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReconciliationCheckpointRepository
+    extends JpaRepository<ReconciliationCheckpoint, String> {
+}
@@ -0,0 +1,183 @@
+package com.sample.productsmanagement.repository.shard;
+
+import static com.sample.productsmanagement.model.Product.ID_ALLOCATION_SIZE;
+import static com.sample.productsmanagement.model.Product.ID_GENERATOR_TABLE;
+
+import com.sample.productsmanagement.repository.shard.RangeProductShards.Segment;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Moves the rows of id ranges that {@code product.sharding.moves} gave to another shard. Start an
+ * instance with {@code product.sharding.resharding.enabled=true} once every instance runs with the
+ * new moves; the rows are moved in the background while the instance serves requests.
+ *
+ * <p>Each page of rows is upserted on the new shard and then deleted from the previous one only
+ * where the row still holds the copied values. A row updated in between stays on the previous
+ * shard, which lookups keep preferring, and is copied again on the next pass; a write racing the
+ * delete fails and can be retried. Passes repeat until the previous shard has no row of the range
+ * left, so an interrupted move is simply run again. Change records stay where they were written,
+ * and statistics slots are left alone since moving a row changes no total.
+ */
+public class ProductResharder implements ApplicationRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductResharder.class);
+
+  private final RangeProductShards productShards;
+
+  @Value("${product.sharding.resharding.page-size:500}")
+  private int pageSize = 500;
+
+  @Value("${product.sharding.resharding.page-pause:PT0.1S}")
+  private Duration pagePause = Duration.ofMillis(100);
+
+  private ThreadPoolTaskExecutor reshardingExecutor;
+
+  public ProductResharder(RangeProductShards productShards) {
+    this.productShards = productShards;
+  }
+
+  @PostConstruct
+  void init() {
+    reshardingExecutor = new ThreadPoolTaskExecutor();
+    reshardingExecutor.setThreadNamePrefix("product-resharding-");
+    reshardingExecutor.setCorePoolSize(1);
+    reshardingExecutor.setMaxPoolSize(1);
+    reshardingExecutor.setAwaitTerminationSeconds(10);
+    reshardingExecutor.initialize();
+  }
+
+  @PreDestroy
+  void destroy() {
+    reshardingExecutor.shutdown();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    reshardingExecutor.execute(this::reshard);
+  }
+
+  public void reshard() {
+    for (Segment segment : productShards.pendingMoves()) {
+      if (!allocatedPast(segment)) {
+        LOGGER.error("Shard {} still allocates ids in {}, only ranges it has allocated past can "
+            + "be moved", segment.previousOwner(), segment.range());
+        continue;
+      }
+
+      LOGGER.info("Moving products with ids in {} from shard {} to {}", segment.range(),
+          segment.previousOwner(), segment.owner());
+      long moved = move(segment);
+      if (Thread.currentThread().isInterrupted()) {
+        LOGGER.warn("Resharding interrupted after moving {} products of {}", moved,
+            segment.range());
+        return;
+      }
+      LOGGER.info("Moved {} products with ids in {} from shard {} to {}, the move can be marked "
+          + "completed", moved, segment.range(), segment.previousOwner(), segment.owner());
+    }
+  }
+
+  /**
+   * Whether every id of the segment the previous owner could allocate has been handed out, so no
+   * new row appears in the range after it was moved. Blocks taken before are skipped by
+   * {@link ShardAwareTableGenerator} on instances that know about the move.
+   */
+  private boolean allocatedPast(Segment segment) {
+    Shard source = productShards.shard(segment.previousOwner());
+    if (source.idRange().start() >= segment.range().end()
+        || source.idRange().end() <= segment.range().start()) {
+      return true;
+    }
+    Long nextValue = productShards.jdbcTemplate(source.name()).queryForObject(String.format(
+        "select coalesce(max(next_val), 0) from %s where name = 'product'", ID_GENERATOR_TABLE),
+        Long.class);
+    return nextValue != null && nextValue - ID_ALLOCATION_SIZE + 1 >= segment.range().end();
+  }
+
+  private long move(Segment segment) {
+    JdbcTemplate source = productShards.jdbcTemplate(segment.previousOwner());
+    JdbcTemplate target = productShards.jdbcTemplate(segment.owner());
+    long moved = 0;
+    long remaining;
+    do {
+      remaining = 0;
+      int lastId = segment.range().start() - 1;
+      List<Map<String, Object>> rows;
+      do {
+        rows = source.queryForList(
+            "select * from product where id > ? and id < ? order by id limit ?", lastId,
+            segment.range().end(), pageSize);
+        if (rows.isEmpty()) {
+          break;
+        }
+        int deleted = moveRows(rows, source, target);
+        moved += deleted;
+        remaining += rows.size() - deleted;
+        lastId = ((Number) rows.get(rows.size() - 1).get("id")).intValue();
+        if (!pause()) {
+          return moved;
+        }
+      } while (rows.size() == pageSize);
+    } while (remaining > 0);
+    return moved;
+  }
+
+  /**
+   * Copies the rows, overwriting copies left by an earlier pass, and deletes the originals that
+   * still hold the copied values. Returns how many were deleted.
+   */
+  private static int moveRows(List<Map<String, Object>> rows, JdbcTemplate source,
+      JdbcTemplate target) {
+    List<String> columns = List.copyOf(rows.get(0).keySet());
+    List<String> values = columns.stream().filter(column -> !column.equals("id")).toList();
+    String upsert = String.format(
+        "insert into product (%s) values (%s) as copy on duplicate key update %s",
+        String.join(", ", columns),
+        columns.stream().map(column -> "?").collect(Collectors.joining(", ")),
+        values.stream().map(column -> column + " = copy." + column)
+            .collect(Collectors.joining(", ")));
+    String delete = String.format("delete from product where id = ? and %s",
+        values.stream().map(column -> column + " <=> ?").collect(Collectors.joining(" and ")));
+
+    target.batchUpdate(upsert, rows.stream()
+        .map(row -> columns.stream().map(row::get).toArray())
+        .toList());
+    List<Object[]> originals = new ArrayList<>(rows.size());
+    for (Map<String, Object> row : rows) {
+      Object[] original = new Object[values.size() + 1];
+      original[0] = row.get("id");
+      for (int i = 0; i < values.size(); i++) {
+        original[i + 1] = row.get(values.get(i));
+      }
+      originals.add(original);
+    }
+    int deleted = 0;
+    for (int count : source.batchUpdate(delete, originals)) {
+      deleted += count > 0 ? 1 : 0;
+    }
+    return deleted;
+  }
+
+  private boolean pause() {
+    try {
+      Thread.sleep(pagePause);
+      return true;
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
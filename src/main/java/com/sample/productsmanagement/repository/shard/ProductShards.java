@@ -0,0 +1,104 @@
+package com.sample.productsmanagement.repository.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Where product rows are stored. Without {@code product.sharding.enabled} there is a single
+ * shard, the {@code spring.datasource} database, and routing is a pass-through. With it products
+ * are spread by id range across the databases configured in {@link ShardingConfig}.
+ *
+ * <p>A product, its change records and the statistics slots its writes touch live on the same
+ * shard, so every write stays one local transaction. Repository calls are routed with
+ * {@link #call} outside of a transaction, or with {@link #bindTransaction} before the first
+ * statement of one. The first shard also holds the tables that are not per product, like
+ * imports, checkpoints and the change feed clients read.
+ */
+public interface ProductShards {
+
+  /**
+   * Ids from {@code start}, inclusive, to {@code end}, exclusive.
+   */
+  record IdRange(int start, int end) {
+
+    public boolean contains(int id) {
+      return id >= start && id < end;
+    }
+  }
+
+  List<String> names();
+
+  /**
+   * The shard holding the product, or the shard that will hold it when it does not exist.
+   */
+  String shardFor(int productId);
+
+  /**
+   * Groups the ids by the shard holding each of them, as {@link #shardFor} would.
+   */
+  default Map<String, List<Integer>> groupByShard(Collection<Integer> productIds) {
+    return productIds.stream().collect(Collectors.groupingBy(this::shardFor));
+  }
+
+  String shardForNewProduct();
+
+  /**
+   * Range the shard allocates the ids of new products from.
+   */
+  IdRange idRange(String shard);
+
+  <T> T call(String shard, Supplier<T> work);
+
+  default void run(String shard, Runnable work) {
+    call(shard, () -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /**
+   * Routes the rest of the current transaction to the shard. Has to be called before the
+   * transaction runs its first statement, which is when the connection is taken.
+   */
+  void bindTransaction(String shard);
+
+  /**
+   * Runs the query on every shard, in parallel when there is more than one, and returns the
+   * results in the order of {@link #names()}.
+   */
+  <T> List<List<T>> scatter(Function<String, List<T>> query);
+
+  /**
+   * Merges the results of {@link #scatter} in the given order, keeping one of the elements that
+   * compare equal and at most {@code limit}. For keyset pagination every shard returns its first
+   * {@code limit} rows after the same key, so the merged ones are the first {@code limit} of all
+   * shards. Rows being moved between shards may be on both for a moment and are returned once.
+   */
+  static <T> List<T> merge(List<List<T>> results, Comparator<? super T> order, int limit) {
+    if (results.size() == 1) {
+      List<T> result = results.get(0);
+      return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    List<T> all = new ArrayList<>();
+    results.forEach(all::addAll);
+    // each input is one presorted run, which the sort merges without comparing within runs
+    all.sort(order);
+    List<T> merged = new ArrayList<>(Math.min(all.size(), limit));
+    for (T element : all) {
+      if (merged.size() == limit) {
+        break;
+      }
+      if (merged.isEmpty() || order.compare(merged.get(merged.size() - 1), element) != 0) {
+        merged.add(element);
+      }
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,405 @@
+package com.sample.productsmanagement.repository.shard;
+
+import com.sample.productsmanagement.repository.shard.ShardingProperties.MoveProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+
+/**
+ * Spreads products across shards by id range. Every shard allocates the ids of new products from
+ * its own range, so ids are unique across shards and the shard of a product follows from its id.
+ * New products are placed round robin on the shards that accept them, which spreads the writes
+ * rather than filling one range after the other.
+ *
+ * <p>Moves give an id range to another shard. Until a move is completed its rows may still be on
+ * the previous shard, which stays authoritative for a row as long as it has it: lookups check it
+ * first and only then the new one, so a row that {@link ProductResharder} has copied but not yet
+ * deleted is never read or written on the copy.
+ *
+ * <p>The check costs a primary key lookup on the previous shard for every product read or written
+ * in the range, or one query per {@value #MAX_IDS_PER_QUERY} ids with {@link #groupByShard}. It
+ * is skipped where the row cannot be there anymore, since the previous shard never allocates a
+ * moved id again: for ids it was found without, up to {@value #MAX_MOVED_IDS} of them, and for the
+ * whole range once the previous shard has none of its rows left. That is checked at most every ten
+ * seconds, so the extra lookups end with the move rather than when it is marked completed.
+ */
+public class RangeProductShards implements ProductShards {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RangeProductShards.class);
+
+  private static final int MAX_IDS_PER_QUERY = 1000;
+  private static final int MAX_MOVED_IDS = 100_000;
+  private static final Duration DRAIN_CHECK_INTERVAL = Duration.ofSeconds(10);
+
+  /**
+   * Part of the id space owned by {@code owner}, still partly on {@code previousOwner} while it is
+   * being moved.
+   */
+  record Segment(IdRange range, String owner, String previousOwner) {
+  }
+
+  private final Map<String, Shard> shards = new LinkedHashMap<>();
+  private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  private final List<String> writable;
+  private final AtomicInteger nextWritable = new AtomicInteger();
+  private final int scatterThreads;
+  private ThreadPoolTaskExecutor scatterExecutor;
+
+  /**
+   * Ids of moving ranges that were not on their previous shard when looked up.
+   */
+  private final Set<Integer> movedIds = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Starts of the moving segments whose previous shard was found without any of their rows.
+   */
+  private final Set<Integer> drainedSegments = ConcurrentHashMap.newKeySet();
+
+  /**
+   * When each moving segment is checked for being drained next, by segment start.
+   */
+  private final Map<Integer, Instant> drainChecks = new ConcurrentHashMap<>();
+
+  public RangeProductShards(List<Shard> shards, List<MoveProperties> moves, int scatterThreads) {
+    Assert.notEmpty(shards, "product.sharding.shards must list at least one shard");
+    this.scatterThreads = scatterThreads;
+
+    List<Shard> byStart = shards.stream()
+        .sorted(Comparator.comparingInt(shard -> shard.idRange().start()))
+        .toList();
+    Shard previous = null;
+    for (Shard shard : byStart) {
+      Assert.state(shard.idRange().start() > 0 && shard.idRange().start() < shard.idRange().end(),
+          String.format("Shard %s has an empty or negative id range", shard.name()));
+      Assert.state(previous == null || previous.idRange().end() <= shard.idRange().start(),
+          String.format("Id ranges of shards %s and %s overlap",
+              previous == null ? null : previous.name(), shard.name()));
+      put(new Segment(shard.idRange(), shard.name(), null));
+      previous = shard;
+    }
+    for (Shard shard : shards) {
+      Assert.state(this.shards.put(shard.name(), shard) == null,
+          () -> String.format("Shard %s is configured twice", shard.name()));
+    }
+    for (MoveProperties move : moves) {
+      applyMove(move);
+    }
+
+    for (Shard shard : shards) {
+      List<IdRange> movedOut = segments.values().stream()
+          .filter(segment -> !segment.owner().equals(shard.name()))
+          .map(Segment::range)
+          .filter(range -> range.start() < shard.idRange().end()
+              && range.end() > shard.idRange().start())
+          .toList();
+      this.shards.put(shard.name(), new Shard(shard.name(), shard.dataSource(), shard.idRange(),
+          shard.acceptsNewProducts(), movedOut));
+      jdbcTemplates.put(shard.name(), new JdbcTemplate(shard.dataSource()));
+    }
+    this.writable = shards.stream()
+        .filter(Shard::acceptsNewProducts)
+        .map(Shard::name)
+        .toList();
+    Assert.state(!writable.isEmpty(), "No shard accepts new products");
+  }
+
+  private void applyMove(MoveProperties move) {
+    Assert.state(shards.containsKey(move.to()),
+        () -> String.format("Move of ids %s to %s targets an unknown shard", move.idStart(),
+            move.to()));
+    Assert.state(move.idStart() < move.idEnd(),
+        () -> String.format("Move of ids %s to %s is empty", move.idStart(), move.to()));
+    split(move.idStart());
+    split(move.idEnd());
+
+    List<Segment> covered = new ArrayList<>(
+        segments.subMap(move.idStart(), true, move.idEnd(), false).values());
+    int position = move.idStart();
+    for (Segment segment : covered) {
+      if (segment.range().start() > position) {
+        put(new Segment(new IdRange(position, segment.range().start()), move.to(), null));
+      }
+      String previousOwner = move.completed() ? null
+          : segment.owner().equals(move.to()) ? segment.previousOwner() : segment.owner();
+      put(new Segment(segment.range(), move.to(), previousOwner));
+      position = segment.range().end();
+    }
+    if (position < move.idEnd()) {
+      put(new Segment(new IdRange(position, move.idEnd()), move.to(), null));
+    }
+  }
+
+  private void split(int at) {
+    Map.Entry<Integer, Segment> lower = segments.lowerEntry(at);
+    if (lower == null || lower.getValue().range().end() <= at) {
+      return;
+    }
+    Segment segment = lower.getValue();
+    put(new Segment(new IdRange(segment.range().start(), at), segment.owner(),
+        segment.previousOwner()));
+    put(new Segment(new IdRange(at, segment.range().end()), segment.owner(),
+        segment.previousOwner()));
+  }
+
+  private void put(Segment segment) {
+    segments.put(segment.range().start(), segment);
+  }
+
+  @PostConstruct
+  void init() {
+    scatterExecutor = new ThreadPoolTaskExecutor();
+    scatterExecutor.setThreadNamePrefix("product-shard-");
+    scatterExecutor.setCorePoolSize(scatterThreads);
+    scatterExecutor.setMaxPoolSize(scatterThreads);
+    scatterExecutor.setAwaitTerminationSeconds(10);
+    scatterExecutor.initialize();
+  }
+
+  @PreDestroy
+  void destroy() {
+    scatterExecutor.shutdown();
+    for (Shard shard : shards.values()) {
+      if (shard.dataSource() instanceof Closeable closeable) {
+        try {
+          closeable.close();
+        } catch (IOException exception) {
+          LOGGER.warn("Could not close the connection pool of shard {}", shard.name(), exception);
+        }
+      }
+    }
+  }
+
+  Shard primary() {
+    return shards.values().iterator().next();
+  }
+
+  Shard shard(String name) {
+    Shard shard = shards.get(name);
+    Assert.state(shard != null, () -> String.format("Unknown shard %s", name));
+    return shard;
+  }
+
+  JdbcTemplate jdbcTemplate(String shard) {
+    return jdbcTemplates.get(shard);
+  }
+
+  /**
+   * Segments whose rows still have to be moved from their previous owner.
+   */
+  List<Segment> pendingMoves() {
+    return segments.values().stream()
+        .filter(segment -> segment.previousOwner() != null)
+        .toList();
+  }
+
+  /**
+   * Whether the shard has the row, soft deleted or not.
+   */
+  boolean contains(String shard, int productId) {
+    return !jdbcTemplates.get(shard).queryForList("select id from product where id = ?",
+        Integer.class, productId).isEmpty();
+  }
+
+  /**
+   * Ids of the rows among the given ones that the shard has, soft deleted or not.
+   */
+  Set<Integer> containing(String shard, List<Integer> productIds) {
+    return new HashSet<>(jdbcTemplates.get(shard).queryForList(String.format(
+            "select id from product where id in (%s)",
+            String.join(", ", Collections.nCopies(productIds.size(), "?"))),
+        Integer.class, productIds.toArray()));
+  }
+
+  /**
+   * Whether the shard has any row in the range, soft deleted or not.
+   */
+  boolean hasRows(String shard, IdRange range) {
+    return !jdbcTemplates.get(shard).queryForList(
+        "select id from product where id >= ? and id < ? limit 1", Integer.class, range.start(),
+        range.end()).isEmpty();
+  }
+
+  private Segment segment(int productId) {
+    Map.Entry<Integer, Segment> entry = segments.floorEntry(productId);
+    if (entry == null || !entry.getValue().range().contains(productId)) {
+      return null;
+    }
+    return entry.getValue();
+  }
+
+  /**
+   * Whether rows of the segment may still be on its previous owner.
+   */
+  private boolean moving(Segment segment) {
+    if (segment.previousOwner() == null
+        || drainedSegments.contains(segment.range().start())) {
+      return false;
+    }
+    Instant now = Instant.now();
+    Instant checkAt = drainChecks.get(segment.range().start());
+    if (checkAt != null && now.isBefore(checkAt)) {
+      return true;
+    }
+    drainChecks.put(segment.range().start(), now.plus(DRAIN_CHECK_INTERVAL));
+    if (hasRows(segment.previousOwner(), segment.range())) {
+      return true;
+    }
+    drainedSegments.add(segment.range().start());
+    LOGGER.info("Shard {} has no products with ids in {} left, the move to {} can be marked "
+        + "completed", segment.previousOwner(), segment.range(), segment.owner());
+    return false;
+  }
+
+  private void rememberMoved(int productId) {
+    if (movedIds.size() < MAX_MOVED_IDS) {
+      movedIds.add(productId);
+    }
+  }
+
+  @Override
+  public List<String> names() {
+    return List.copyOf(shards.keySet());
+  }
+
+  /**
+   * Ids outside every range are looked up on the first shard, which held all products before
+   * sharding was enabled.
+   */
+  @Override
+  public String shardFor(int productId) {
+    Segment segment = segment(productId);
+    if (segment == null) {
+      return primary().name();
+    }
+    if (movedIds.contains(productId) || !moving(segment)) {
+      return segment.owner();
+    }
+    if (contains(segment.previousOwner(), productId)) {
+      return segment.previousOwner();
+    }
+    rememberMoved(productId);
+    return segment.owner();
+  }
+
+  /**
+   * Looks the ids of moving ranges up on their previous shards with one query per
+   * {@value #MAX_IDS_PER_QUERY} ids rather than one per id.
+   */
+  @Override
+  public Map<String, List<Integer>> groupByShard(Collection<Integer> productIds) {
+    Map<String, List<Integer>> groups = new LinkedHashMap<>();
+    Map<Segment, List<Integer>> moving = new LinkedHashMap<>();
+    for (int productId : productIds) {
+      Segment segment = segment(productId);
+      if (segment == null) {
+        groups.computeIfAbsent(primary().name(), shard -> new ArrayList<>()).add(productId);
+      } else if (movedIds.contains(productId) || !moving(segment)) {
+        groups.computeIfAbsent(segment.owner(), shard -> new ArrayList<>()).add(productId);
+      } else {
+        moving.computeIfAbsent(segment, key -> new ArrayList<>()).add(productId);
+      }
+    }
+
+    moving.forEach((segment, ids) -> {
+      for (int start = 0; start < ids.size(); start += MAX_IDS_PER_QUERY) {
+        List<Integer> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_QUERY, ids.size()));
+        Set<Integer> notMoved = containing(segment.previousOwner(), chunk);
+        for (int productId : chunk) {
+          String shard = segment.owner();
+          if (notMoved.contains(productId)) {
+            shard = segment.previousOwner();
+          } else {
+            rememberMoved(productId);
+          }
+          groups.computeIfAbsent(shard, key -> new ArrayList<>()).add(productId);
+        }
+      }
+    });
+    return groups;
+  }
+
+  @Override
+  public String shardForNewProduct() {
+    return writable.get(Math.floorMod(nextWritable.getAndIncrement(), writable.size()));
+  }
+
+  @Override
+  public IdRange idRange(String shard) {
+    return shard(shard).idRange();
+  }
+
+  @Override
+  public <T> T call(String shard, Supplier<T> work) {
+    Shard previous = ShardContext.bind(shard(shard));
+    try {
+      return work.get();
+    } finally {
+      ShardContext.restore(previous);
+    }
+  }
+
+  @Override
+  public void bindTransaction(String shard) {
+    Assert.state(TransactionSynchronizationManager.isSynchronizationActive(),
+        "A shard can only be bound to an active transaction");
+    Shard current = ShardContext.current();
+    if (current != null && current.name().equals(shard)) {
+      return;
+    }
+    Shard previous = ShardContext.bind(shard(shard));
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        ShardContext.restore(previous);
+      }
+    });
+  }
+
+  @Override
+  public <T> List<List<T>> scatter(Function<String, List<T>> query) {
+    List<CompletableFuture<List<T>>> results = shards.keySet().stream()
+        .map(shard -> CompletableFuture.supplyAsync(() -> call(shard, () -> query.apply(shard)),
+            scatterExecutor))
+        .toList();
+
+    List<List<T>> gathered = new ArrayList<>(results.size());
+    for (CompletableFuture<List<T>> result : results) {
+      try {
+        gathered.add(result.join());
+      } catch (CompletionException exception) {
+        if (exception.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw exception;
+      }
+    }
+    return gathered;
+  }
+}
@@ -0,0 +1,17 @@
+package com.sample.productsmanagement.repository.shard;
+
+import com.sample.productsmanagement.repository.shard.ProductShards.IdRange;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * One product database. {@code movedOut} are the parts of its id range that moves gave to other
+ * shards, whose ids it must no longer allocate.
+ */
+record Shard(String name, DataSource dataSource, IdRange idRange, boolean acceptsNewProducts,
+    List<IdRange> movedOut) {
+
+  boolean allocates(int id) {
+    return idRange.contains(id) && movedOut.stream().noneMatch(range -> range.contains(id));
+  }
+}
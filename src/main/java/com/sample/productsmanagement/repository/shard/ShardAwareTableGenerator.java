@@ -0,0 +1,68 @@
+package com.sample.productsmanagement.repository.shard;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Table generator with a separate pool of ids per shard. The generator row is read through the
+ * connection of the bound shard, so each shard allocates from its own row, and keeping one pool
+ * per shard makes sure a block taken on one shard is never used for an insert on another. Ids
+ * the bound shard no longer allocates, left in blocks taken before a move, are skipped. Without a
+ * bound shard it is a plain table generator.
+ */
+public class ShardAwareTableGenerator extends TableGenerator {
+
+  private final Map<String, TableGenerator> shardGenerators = new ConcurrentHashMap<>();
+  private Type type;
+  private Properties parameters;
+  private ServiceRegistry serviceRegistry;
+  private SqlStringGenerationContext context;
+
+  @Override
+  public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+    super.configure(type, parameters, serviceRegistry);
+    this.type = type;
+    this.parameters = parameters;
+    this.serviceRegistry = serviceRegistry;
+  }
+
+  @Override
+  public void initialize(SqlStringGenerationContext context) {
+    super.initialize(context);
+    this.context = context;
+  }
+
+  @Override
+  public Object generate(SharedSessionContractImplementor session, Object object) {
+    Shard shard = ShardContext.current();
+    if (shard == null) {
+      return super.generate(session, object);
+    }
+
+    TableGenerator generator = shardGenerators.computeIfAbsent(shard.name(), name -> {
+      TableGenerator shardGenerator = new TableGenerator();
+      shardGenerator.configure(type, parameters, serviceRegistry);
+      shardGenerator.initialize(context);
+      return shardGenerator;
+    });
+    while (true) {
+      Object id = generator.generate(session, object);
+      int value = ((Number) id).intValue();
+      if (shard.allocates(value)) {
+        return id;
+      }
+      if (!shard.idRange().contains(value)) {
+        throw new IdentifierGenerationException(String.format(
+            "Shard %s generated product id %s outside its range %s", shard.name(), value,
+            shard.idRange()));
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.sample.productsmanagement.repository.shard;
+
+/**
+ * Shard the current thread's database work is routed to, read by
+ * {@link ShardRoutingDataSource} when a connection is taken and by
+ * {@link ShardAwareTableGenerator} when an id is allocated.
+ */
+final class ShardContext {
+
+  private static final ThreadLocal<Shard> CURRENT = new ThreadLocal<>();
+
+  private ShardContext() {
+  }
+
+  static Shard current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Binds the shard and returns the one bound before, to be passed to {@link #restore}.
+   */
+  static Shard bind(Shard shard) {
+    Shard previous = CURRENT.get();
+    CURRENT.set(shard);
+    return previous;
+  }
+
+  static void restore(Shard previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.sample.productsmanagement.repository.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the shard bound to the current thread, or of the first shard when
+ * none is. Wrapped in a lazy connection proxy, so a transaction takes its connection at its first
+ * statement rather than when it begins.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    Shard shard = ShardContext.current();
+    return shard == null ? null : shard.name();
+  }
+}
@@ -0,0 +1,53 @@
+package com.sample.productsmanagement.repository.shard;
+
+import com.sample.productsmanagement.model.Product;
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+/**
+ * Applies {@code spring.jpa.hibernate.ddl-auto} to every shard but the first, which the
+ * application's entity manager factory takes care of, by starting and closing a short-lived
+ * entity manager factory per shard. Runs before the application's one, so the product id
+ * generator rows can be initialized on every shard right after it starts.
+ */
+class ShardSchemaInitializer {
+
+  private final RangeProductShards productShards;
+  private final EntityManagerFactoryBuilder entityManagerFactoryBuilder;
+  private final Map<String, Object> properties;
+
+  ShardSchemaInitializer(RangeProductShards productShards,
+      EntityManagerFactoryBuilder entityManagerFactoryBuilder, JpaProperties jpaProperties,
+      HibernateProperties hibernateProperties) {
+    this.productShards = productShards;
+    this.entityManagerFactoryBuilder = entityManagerFactoryBuilder;
+    this.properties = new HashMap<>(hibernateProperties.determineHibernateProperties(
+        jpaProperties.getProperties(), new HibernateSettings().ddlAuto(() -> "none")));
+    properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+    properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+    properties.put(AvailableSettings.GENERATE_STATISTICS, false);
+  }
+
+  @PostConstruct
+  void init() {
+    List<String> shards = productShards.names();
+    for (String shard : shards.subList(1, shards.size())) {
+      LocalContainerEntityManagerFactoryBean factory = entityManagerFactoryBuilder
+          .dataSource(productShards.shard(shard).dataSource())
+          .packages(Product.class)
+          .persistenceUnit("shard-" + shard)
+          .properties(properties)
+          .build();
+      factory.afterPropertiesSet();
+      factory.destroy();
+    }
+  }
+}
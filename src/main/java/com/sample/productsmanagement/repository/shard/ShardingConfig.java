@@ -0,0 +1,110 @@
+package com.sample.productsmanagement.repository.shard;
+
+import com.sample.productsmanagement.repository.shard.ProductShards.IdRange;
+import com.sample.productsmanagement.repository.shard.ShardingProperties.ShardProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Sharded persistence, enabled with {@code product.sharding.enabled}. The application's
+ * {@link DataSource} routes every connection to the shard bound to the current thread, see
+ * {@link ProductShards}, and {@code spring.datasource} is not used.
+ */
+@Configuration
+@ConditionalOnProperty(name = "product.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+  @Value("${product.sharding.scatter-threads:16}")
+  private int scatterThreads;
+
+  @Bean
+  public RangeProductShards productShards(ShardingProperties shardingProperties) {
+    List<Shard> shards = shardingProperties.shards().stream()
+        .map(shard -> new Shard(shard.name(), dataSource(shard),
+            new IdRange(shard.idStart(), shard.idEnd()), shard.acceptsNewProducts(), List.of()))
+        .toList();
+
+    return new RangeProductShards(shards, shardingProperties.moves(), scatterThreads);
+  }
+
+  private static DataSource dataSource(ShardProperties shard) {
+    HikariDataSource dataSource = DataSourceBuilder.create()
+        .type(HikariDataSource.class)
+        .url(shard.url())
+        .username(shard.username())
+        .password(shard.password())
+        .build();
+    dataSource.setPoolName("shard-" + shard.name());
+    return dataSource;
+  }
+
+  /**
+   * Connections are taken lazily, at a transaction's first statement, so the shard can be bound
+   * after the transaction began.
+   */
+  @Bean
+  public DataSource dataSource(RangeProductShards productShards) {
+    Map<Object, Object> targets = new LinkedHashMap<>();
+    for (String shard : productShards.names()) {
+      targets.put(shard, productShards.shard(shard).dataSource());
+    }
+    ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+    routingDataSource.setTargetDataSources(targets);
+    routingDataSource.setDefaultTargetDataSource(productShards.primary().dataSource());
+    routingDataSource.setLenientFallback(false);
+    routingDataSource.afterPropertiesSet();
+
+    return new LazyConnectionDataSourceProxy(routingDataSource);
+  }
+
+  /**
+   * Releases connections after every transaction instead of holding them for the whole open
+   * session of a request, which could span shards. Cached query results are keyed by the query
+   * only, not by the shard it ran on, so the query cache is turned off.
+   */
+  @Bean
+  public HibernatePropertiesCustomizer shardingHibernatePropertiesCustomizer() {
+    return properties -> {
+      properties.put(AvailableSettings.CONNECTION_HANDLING,
+          PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+      properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+    };
+  }
+
+  @Bean
+  ShardSchemaInitializer shardSchemaInitializer(RangeProductShards productShards,
+      EntityManagerFactoryBuilder entityManagerFactoryBuilder, JpaProperties jpaProperties,
+      HibernateProperties hibernateProperties) {
+    return new ShardSchemaInitializer(productShards, entityManagerFactoryBuilder, jpaProperties,
+        hibernateProperties);
+  }
+
+  @Bean
+  static EntityManagerFactoryDependsOnPostProcessor shardSchemaInitializerDependsOn() {
+    return new EntityManagerFactoryDependsOnPostProcessor("shardSchemaInitializer");
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "product.sharding.resharding.enabled", havingValue = "true")
+  public ProductResharder productResharder(RangeProductShards productShards) {
+    return new ProductResharder(productShards);
+  }
+}
@@ -0,0 +1,26 @@
+package com.sample.productsmanagement.repository.shard;
+
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Shards under {@code product.sharding.shards}, the first one also holding the tables that are
+ * not per product. Every shard allocates new ids from {@code id-start} to {@code id-end},
+ * exclusive, and the ranges must not overlap.
+ *
+ * <p>{@code product.sharding.moves} give a range of ids to another shard, applied in order on
+ * top of the shard ranges. The rows are moved by {@link ProductResharder}; once it reports a move
+ * done, set {@code completed} so lookups stop checking the previous shard.
+ */
+@ConfigurationProperties("product.sharding")
+public record ShardingProperties(List<ShardProperties> shards,
+    @DefaultValue List<MoveProperties> moves) {
+
+  public record ShardProperties(String name, String url, String username, String password,
+      int idStart, int idEnd, @DefaultValue("true") boolean acceptsNewProducts) {
+  }
+
+  public record MoveProperties(int idStart, int idEnd, String to, boolean completed) {
+  }
+}
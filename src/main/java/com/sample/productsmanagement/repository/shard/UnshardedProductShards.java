@@ -0,0 +1,54 @@
+package com.sample.productsmanagement.repository.shard;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single shard, the {@code spring.datasource} database, used unless sharding is enabled.
+ */
+@Component
+@ConditionalOnProperty(name = "product.sharding.enabled", havingValue = "false",
+    matchIfMissing = true)
+public class UnshardedProductShards implements ProductShards {
+
+  static final String SHARD = "default";
+
+  private static final IdRange ALL_IDS = new IdRange(1, Integer.MAX_VALUE);
+
+  @Override
+  public List<String> names() {
+    return List.of(SHARD);
+  }
+
+  @Override
+  public String shardFor(int productId) {
+    return SHARD;
+  }
+
+  @Override
+  public String shardForNewProduct() {
+    return SHARD;
+  }
+
+  @Override
+  public IdRange idRange(String shard) {
+    return ALL_IDS;
+  }
+
+  @Override
+  public <T> T call(String shard, Supplier<T> work) {
+    return work.get();
+  }
+
+  @Override
+  public void bindTransaction(String shard) {
+  }
+
+  @Override
+  public <T> List<List<T>> scatter(Function<String, List<T>> query) {
+    return List.of(query.apply(SHARD));
+  }
+}
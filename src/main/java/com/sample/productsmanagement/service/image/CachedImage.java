@@ -0,0 +1,7 @@
+package com.sample.productsmanagement.service.image;
+
+import java.nio.file.Path;
+
+public record CachedImage(String key, Path path, long size, String eTag, String contentType,
+                          long lastModified) {
+}
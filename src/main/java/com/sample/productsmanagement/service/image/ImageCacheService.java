@@ -0,0 +1,234 @@
+package com.sample.productsmanagement.service.image;
+
+import com.sample.productsmanagement.exception.ImageNotFoundException;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.StoredObject;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.util.Strings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Bounded on-disk LRU cache of stored images used by the image proxy. The index lives in memory,
+ * so the directory is cleared on startup. Concurrent misses for the same key share one download.
+ *
+ * <p>Every download goes to a file of its own, which is never written again. Evicted files are
+ * deleted once they have been out of the index for {@code product.image.cache.retention}, so a
+ * response handed to the servlet container to send from the file by name still finds it. A
+ * request that opened the file before the delete keeps reading the content it looked up, one that
+ * did not gets a {@link java.nio.file.NoSuchFileException} and looks the image up again.
+ */
+@Service
+public class ImageCacheService {
+
+  @Autowired
+  private S3Service s3Service;
+
+  @Value("${product.image.cache.directory:${java.io.tmpdir}/product-image-cache}")
+  private Path directory;
+
+  @Value("${product.image.cache.max-size:1GB}")
+  private DataSize maxSize;
+
+  @Value("${product.image.cache.retention:1m}")
+  private Duration retention = Duration.ofMinutes(1);
+
+  private final LinkedHashMap<String, CachedImage> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, CompletableFuture<CachedImage>> downloads = new ConcurrentHashMap<>();
+  private final Queue<RetiredFile> retiredFiles = new ConcurrentLinkedQueue<>();
+  private long totalBytes;
+
+  private record RetiredFile(Path path, long retiredAt) {
+  }
+
+  @PostConstruct
+  void init() throws IOException {
+    Files.createDirectories(directory);
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.toList()) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  public CachedImage get(String key) {
+    deleteRetiredFiles();
+    synchronized (this) {
+      CachedImage cached = entries.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    CompletableFuture<CachedImage> download = new CompletableFuture<>();
+    CompletableFuture<CachedImage> inFlight = downloads.putIfAbsent(key, download);
+    if (inFlight != null) {
+      return join(inFlight);
+    }
+
+    try {
+      CachedImage image = load(key);
+      put(image, download);
+      download.complete(image);
+    } catch (RuntimeException exception) {
+      download.completeExceptionally(exception);
+    } finally {
+      downloads.remove(key, download);
+    }
+    return join(download);
+  }
+
+  public void evict(String key) {
+    if (Strings.isEmpty(key)) {
+      return;
+    }
+
+    CachedImage removed;
+    synchronized (this) {
+      downloads.remove(key);
+      removed = entries.remove(key);
+      if (removed != null) {
+        totalBytes -= removed.size();
+      }
+    }
+    if (removed != null) {
+      retire(removed.path());
+    }
+  }
+
+  /**
+   * Evicts every cached image, for when the keys of replaced images are not known.
+   */
+  public void evictAll() {
+    List<CachedImage> removed;
+    synchronized (this) {
+      downloads.clear();
+      removed = new ArrayList<>(entries.values());
+      entries.clear();
+      totalBytes = 0;
+    }
+    removed.forEach(image -> retire(image.path()));
+  }
+
+  private CachedImage load(String key) {
+    Path target = null;
+    try {
+      target = Files.createTempFile(directory, fileName(key) + "-", ".image");
+      StoredObject stored = s3Service.downloadFile(key, target)
+          .orElseThrow(() -> new ImageNotFoundException(
+              String.format("Image %s, not found", key)));
+      CachedImage image = new CachedImage(key, target, Files.size(target),
+          String.format("\"%s\"", stored.eTag()), stored.contentType(),
+          stored.lastModified() == null ? 0 : stored.lastModified().toEpochMilli());
+      target = null;
+
+      return image;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    } finally {
+      if (target != null) {
+        delete(target);
+      }
+    }
+  }
+
+  /**
+   * Indexes a finished download unless the key was evicted while it was in flight, in which
+   * case the object may already have been replaced. The file is then retired, which the request
+   * that downloaded it notices when opening it once the retention has passed.
+   */
+  private void put(CachedImage image, CompletableFuture<CachedImage> download) {
+    List<CachedImage> evicted = new ArrayList<>();
+    synchronized (this) {
+      if (downloads.get(image.key()) != download) {
+        evicted.add(image);
+      } else {
+        CachedImage previous = entries.put(image.key(), image);
+        if (previous != null) {
+          totalBytes -= previous.size();
+          evicted.add(previous);
+        }
+        totalBytes += image.size();
+
+        Iterator<CachedImage> eldest = entries.values().iterator();
+        while (totalBytes > maxSize.toBytes() && eldest.hasNext()) {
+          CachedImage candidate = eldest.next();
+          if (candidate == image) {
+            continue;
+          }
+          eldest.remove();
+          totalBytes -= candidate.size();
+          evicted.add(candidate);
+        }
+      }
+    }
+    evicted.forEach(entry -> retire(entry.path()));
+  }
+
+  private void retire(Path path) {
+    retiredFiles.add(new RetiredFile(path, System.nanoTime()));
+    deleteRetiredFiles();
+  }
+
+  private void deleteRetiredFiles() {
+    long now = System.nanoTime();
+    RetiredFile retired;
+    while ((retired = retiredFiles.peek()) != null
+        && now - retired.retiredAt() >= retention.toNanos()) {
+      if (retiredFiles.remove(retired)) {
+        delete(retired.path());
+      }
+    }
+  }
+
+  private static CachedImage join(CompletableFuture<CachedImage> future) {
+    try {
+      return future.join();
+    } catch (CompletionException exception) {
+      if (exception.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw exception;
+    }
+  }
+
+  private static String fileName(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(key.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest);
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static void delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ignored) {
+      // a leftover file is only disk space, it is removed on the next start
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package com.sample.productsmanagement.service.image;
+
+import com.sample.productsmanagement.exception.InvalidFileFormatException;
+import com.sample.productsmanagement.model.ImageMetadata;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Checks uploaded images by their content instead of the declared content type. The header is
+ * read from the stream that is uploaded afterwards and replayed from a buffer, so the image is
+ * read once and only its header is held in memory. PNG, JPEG, GIF, WebP and BMP images are
+ * accepted; anything else, truncated headers and images with more than
+ * {@code product.image.max-pixels} pixels are rejected before a byte is sent to S3.
+ */
+@Component
+public class ImageInspector {
+
+  private static final int HEAD_LENGTH = 32;
+  private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A,
+      '\n'};
+  private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+  private static final byte[] GIF87_SIGNATURE = "GIF87a".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] GIF89_SIGNATURE = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] RIFF_SIGNATURE = "RIFF".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] BMP_SIGNATURE = "BM".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * Upper bound of the bytes read to find the dimensions. JPEG puts its frame header after the
+   * metadata segments, when they are larger the image is accepted without dimensions.
+   */
+  @Value("${product.image.max-header-size:256KB}")
+  private DataSize maxHeaderSize = DataSize.ofKilobytes(256);
+
+  @Value("${product.image.max-pixels:100000000}")
+  private long maxPixels = 100_000_000L;
+
+  /**
+   * Image metadata and the content to upload, which starts again at the first byte of the image.
+   */
+  public record InspectedImage(ImageMetadata metadata, InputStream content) {
+  }
+
+  /**
+   * Reads the image header from the stream. The stream is closed when the image is rejected,
+   * otherwise the caller closes the returned content.
+   */
+  public InspectedImage inspect(InputStream inputStream, long size) throws IOException {
+    BufferedInputStream content = new BufferedInputStream(inputStream);
+    int limit = (int) Math.max(HEAD_LENGTH,
+        Math.min(maxHeaderSize.toBytes(), Integer.MAX_VALUE - 8));
+    content.mark(limit);
+    try {
+      ImageMetadata metadata = readHeader(content, limit);
+      metadata.setSize(size);
+      checkPixels(metadata);
+      content.reset();
+      return new InspectedImage(metadata, content);
+    } catch (EOFException exception) {
+      content.close();
+      throw new InvalidFileFormatException("a truncated image");
+    } catch (IOException | RuntimeException exception) {
+      content.close();
+      throw exception;
+    }
+  }
+
+  private void checkPixels(ImageMetadata metadata) {
+    if (metadata.getWidth() != null && metadata.getHeight() != null
+        && (long) metadata.getWidth() * metadata.getHeight() > maxPixels) {
+      throw new InvalidFileFormatException(String.format("a %sx%s image, larger than %s pixels",
+          metadata.getWidth(), metadata.getHeight(), maxPixels));
+    }
+  }
+
+  private static ImageMetadata readHeader(InputStream content, int limit) throws IOException {
+    byte[] head = content.readNBytes(HEAD_LENGTH);
+    if (startsWith(head, PNG_SIGNATURE)) {
+      return png(head);
+    }
+    if (startsWith(head, JPEG_SIGNATURE)) {
+      return jpeg(head, content, limit);
+    }
+    if (startsWith(head, GIF87_SIGNATURE) || startsWith(head, GIF89_SIGNATURE)) {
+      return gif(head);
+    }
+    if (startsWith(head, RIFF_SIGNATURE) && ascii(head, 8).equals("WEBP")) {
+      return webp(head);
+    }
+    if (startsWith(head, BMP_SIGNATURE)) {
+      return bmp(head);
+    }
+    throw new InvalidFileFormatException("unrecognized content");
+  }
+
+  private static ImageMetadata png(byte[] head) throws EOFException {
+    require(head, 24);
+    if (!ascii(head, 12).equals("IHDR")) {
+      throw invalidHeader("png");
+    }
+    return image("png", int32be(head, 16), int32be(head, 20));
+  }
+
+  private static ImageMetadata gif(byte[] head) throws EOFException {
+    require(head, 10);
+    return image("gif", uint16le(head, 6), uint16le(head, 8));
+  }
+
+  private static ImageMetadata bmp(byte[] head) throws EOFException {
+    require(head, 22);
+    if (int32le(head, 14) == 12) {
+      return image("bmp", uint16le(head, 18), uint16le(head, 20));
+    }
+    require(head, 26);
+    return image("bmp", int32le(head, 18), Math.abs(int32le(head, 22)));
+  }
+
+  private static ImageMetadata webp(byte[] head) throws EOFException {
+    require(head, 16);
+    switch (ascii(head, 12)) {
+      case "VP8X" -> {
+        require(head, 30);
+        return image("webp", uint24le(head, 24) + 1, uint24le(head, 27) + 1);
+      }
+      case "VP8 " -> {
+        require(head, 30);
+        if ((head[23] & 0xFF) != 0x9D || head[24] != 0x01 || head[25] != 0x2A) {
+          throw invalidHeader("webp");
+        }
+        return image("webp", uint16le(head, 26) & 0x3FFF, uint16le(head, 28) & 0x3FFF);
+      }
+      case "VP8L" -> {
+        require(head, 25);
+        if (head[20] != 0x2F) {
+          throw invalidHeader("webp");
+        }
+        int bits = int32le(head, 21);
+        return image("webp", (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+      }
+      default -> throw invalidHeader("webp");
+    }
+  }
+
+  /**
+   * Walks the JPEG segments up to the frame header, which holds the dimensions. {@code position}
+   * counts the bytes read from the start of the image, so the marked stream can still be reset.
+   */
+  private static ImageMetadata jpeg(byte[] head, InputStream content, int limit)
+      throws IOException {
+    DataInputStream in = new DataInputStream(new SequenceInputStream(
+        new ByteArrayInputStream(head, 2, head.length - 2), content));
+    long position = 2;
+    while (position + 4 <= limit) {
+      if (in.readUnsignedByte() != 0xFF) {
+        throw invalidHeader("jpeg");
+      }
+      int marker = in.readUnsignedByte();
+      position += 2;
+      while (marker == 0xFF && position < limit) {
+        marker = in.readUnsignedByte();
+        position++;
+      }
+      if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+        continue;
+      }
+      if (marker == 0xD9 || marker == 0xDA) {
+        throw invalidHeader("jpeg");
+      }
+      int length = in.readUnsignedShort();
+      position += 2;
+      if (length < 2) {
+        throw invalidHeader("jpeg");
+      }
+      if (isStartOfFrame(marker)) {
+        if (position + 5 > limit) {
+          break;
+        }
+        in.readUnsignedByte();
+        int height = in.readUnsignedShort();
+        int width = in.readUnsignedShort();
+        return new ImageMetadata("jpeg", width, height == 0 ? null : height, null);
+      }
+      if (position + length - 2 > limit) {
+        break;
+      }
+      in.skipNBytes(length - 2);
+      position += length - 2;
+    }
+    return new ImageMetadata("jpeg", null, null, null);
+  }
+
+  private static boolean isStartOfFrame(int marker) {
+    return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8
+        && marker != 0xCC;
+  }
+
+  private static ImageMetadata image(String format, int width, int height) {
+    if (width <= 0 || height <= 0) {
+      throw invalidHeader(format);
+    }
+    return new ImageMetadata(format, width, height, null);
+  }
+
+  private static InvalidFileFormatException invalidHeader(String format) {
+    return new InvalidFileFormatException(String.format("an invalid %s header", format));
+  }
+
+  private static void require(byte[] head, int length) throws EOFException {
+    if (head.length < length) {
+      throw new EOFException();
+    }
+  }
+
+  private static boolean startsWith(byte[] bytes, byte[] prefix) {
+    return bytes.length >= prefix.length
+        && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+  private static String ascii(byte[] bytes, int offset) {
+    return bytes.length < offset + 4 ? ""
+        : new String(bytes, offset, 4, StandardCharsets.US_ASCII);
+  }
+
+  private static int uint16le(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+  }
+
+  private static int uint24le(byte[] bytes, int offset) {
+    return uint16le(bytes, offset) | (bytes[offset + 2] & 0xFF) << 16;
+  }
+
+  private static int int32le(byte[] bytes, int offset) {
+    return uint24le(bytes, offset) | (bytes[offset + 3] & 0xFF) << 24;
+  }
+
+  private static int int32be(byte[] bytes, int offset) {
+    return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+        | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+  }
+}
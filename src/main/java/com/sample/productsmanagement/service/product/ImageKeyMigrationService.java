@@ -0,0 +1,260 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.ProductImage;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3Service;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves existing product images to the keys and buckets of the configured
+ * {@link ImageKeyLayout}. Start an instance with {@code product.image.migration.enabled=true}
+ * after switching the layout or the bucket list; the migration runs in the background while the
+ * instance serves requests.
+ *
+ * <p>Products are read by id page by page and moved in batches of
+ * {@code product.image.migration.concurrency} per shard. Each batch is a short transaction that
+ * locks its products, copies the objects of those whose location is still the one read, in
+ * parallel, and moves their image locations before committing.
+ * {@link ProductService#updateProduct} locks the product before uploading, so a new image is
+ * never overwritten by a copy to the same key, and waits for about one copy at most. Products
+ * migrated already are skipped, so an interrupted migration is simply run again.
+ *
+ * <p>Source objects are kept unless {@code product.image.migration.delete-source} is set, since
+ * presigned URLs handed out before the move still point at them; the reconciliation job removes
+ * them later as orphans.
+ */
+@Service
+@ConditionalOnProperty(name = "product.image.migration.enabled", havingValue = "true")
+public class ImageKeyMigrationService implements ApplicationRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ImageKeyMigrationService.class);
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private S3Service s3Service;
+
+  @Autowired
+  private ImageKeyLayout imageKeyLayout;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Value("${product.image.migration.source-bucket:}")
+  private String sourceBucket;
+
+  @Value("${product.image.migration.page-size:500}")
+  private int pageSize;
+
+  @Value("${product.image.migration.concurrency:8}")
+  private int concurrency;
+
+  @Value("${product.image.migration.delete-source:false}")
+  private boolean deleteSource;
+
+  private ThreadPoolTaskExecutor migrationExecutor;
+  private ThreadPoolTaskExecutor copyExecutor;
+
+  private record Move(int productId, String sourceBucket, String source, String target) {
+  }
+
+  private record Migrated(List<Move> moved, int failed) {
+  }
+
+  @PostConstruct
+  void init() {
+    migrationExecutor = executor("image-key-migration-", 1);
+    copyExecutor = executor("image-key-migration-copy-", concurrency);
+  }
+
+  @PreDestroy
+  void destroy() {
+    migrationExecutor.shutdown();
+    copyExecutor.shutdown();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    migrationExecutor.execute(this::migrate);
+  }
+
+  public void migrate() {
+    LOGGER.info("Migrating product images to the {} key layout",
+        imageKeyLayout.getClass().getSimpleName());
+    int lastId = 0;
+    long moved = 0;
+    long skipped = 0;
+    long failed = 0;
+    List<ProductImage> page;
+    do {
+      int after = lastId;
+      page = ProductShards.merge(productShards.scatter(
+              shard -> productRepository.findImagesAfter(after, pageSize)),
+          Comparator.comparingInt(ProductImage::getId), pageSize);
+      List<Move> moves = new ArrayList<>();
+      for (ProductImage image : page) {
+        lastId = image.getId();
+        Move move = plan(image);
+        if (move == null) {
+          skipped++;
+        } else {
+          moves.add(move);
+        }
+      }
+
+      Migrated migrated = moveImages(moves);
+      List<Move> updated = migrated.moved();
+      moved += updated.size();
+      failed += migrated.failed();
+      skipped += moves.size() - updated.size() - migrated.failed();
+      if (deleteSource) {
+        deleteSources(updated);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        LOGGER.warn("Image key migration interrupted after product {}", lastId);
+        return;
+      }
+    } while (page.size() == pageSize);
+
+    LOGGER.info("Image key migration moved {} images, skipped {} and failed {}", moved, skipped,
+        failed);
+  }
+
+  /**
+   * Returns the copy the product needs, or {@code null} when its image already is where the
+   * layout puts it.
+   */
+  private Move plan(ProductImage image) {
+    String source = image.getImageLocation();
+    String target = imageKeyLayout.keyFor(image.getId(), originalFilename(image));
+    String bucket = Strings.isEmpty(sourceBucket) ? s3Service.bucketFor(source) : sourceBucket;
+    if (source.equals(target)
+        && (bucket.equals(s3Service.bucketFor(target)) || s3Service.fileExists(target))) {
+      return null;
+    }
+
+    return new Move(image.getId(), bucket, source, target);
+  }
+
+  private static String originalFilename(ProductImage image) {
+    String name = image.getImageLocation()
+        .substring(image.getImageLocation().lastIndexOf('/') + 1);
+    String idPrefix = image.getId() + "-";
+
+    return name.startsWith(idPrefix) ? name.substring(idPrefix.length()) : name;
+  }
+
+  /**
+   * Moves the images in one transaction per batch of {@code concurrency} products of a shard,
+   * so rows stay locked for about as long as one copy takes, and returns the moves that applied,
+   * with the number of copies that failed.
+   */
+  private Migrated moveImages(List<Move> moves) {
+    Map<Integer, Move> movesById = moves.stream()
+        .collect(Collectors.toMap(Move::productId, move -> move));
+    List<Move> moved = new ArrayList<>(moves.size());
+    int failed = 0;
+    for (Map.Entry<String, List<Integer>> shardIds
+        : productShards.groupByShard(movesById.keySet()).entrySet()) {
+      List<Integer> ids = shardIds.getValue();
+      for (int start = 0; start < ids.size(); start += concurrency) {
+        List<Move> batch = ids.subList(start, Math.min(start + concurrency, ids.size())).stream()
+            .map(movesById::get)
+            .toList();
+        Migrated batchMigrated = productShards.call(shardIds.getKey(),
+            () -> transactionTemplate.execute(status -> moveLocked(batch)));
+        if (batchMigrated != null) {
+          moved.addAll(batchMigrated.moved());
+          failed += batchMigrated.failed();
+        }
+      }
+    }
+    return new Migrated(moved, failed);
+  }
+
+  /**
+   * Locks the products, copies the images of those still at the source that was read and moves
+   * their locations.
+   */
+  private Migrated moveLocked(List<Move> moves) {
+    Map<Integer, String> locations = productRepository.lockImages(
+            moves.stream().map(Move::productId).toList()).stream()
+        .filter(image -> image.getImageLocation() != null)
+        .collect(Collectors.toMap(ProductImage::getId, ProductImage::getImageLocation));
+    List<Move> unchanged = moves.stream()
+        .filter(move -> move.source().equals(locations.get(move.productId())))
+        .toList();
+
+    List<Move> copied = copy(unchanged);
+    List<Move> moved = copied.stream()
+        .filter(move -> productRepository.moveImageLocation(move.productId(), move.source(),
+            move.target()) == 1)
+        .toList();
+    return new Migrated(moved, unchanged.size() - copied.size());
+  }
+
+  private List<Move> copy(List<Move> moves) {
+    List<CompletableFuture<Move>> copies = moves.stream()
+        .map(move -> CompletableFuture.supplyAsync(() -> {
+          s3Service.copyFile(move.sourceBucket(), move.source(), move.target());
+          return move;
+        }, copyExecutor).exceptionally(exception -> {
+          LOGGER.warn("Could not copy image {} of product {}", move.source(), move.productId(),
+              exception);
+          return null;
+        }))
+        .toList();
+
+    List<Move> copied = new ArrayList<>(moves.size());
+    for (CompletableFuture<Move> copy : copies) {
+      Move move = copy.join();
+      if (move != null) {
+        copied.add(move);
+      }
+    }
+    return copied;
+  }
+
+  private void deleteSources(List<Move> moves) {
+    moves.stream()
+        .filter(move -> !move.source().equals(move.target())
+            || !move.sourceBucket().equals(s3Service.bucketFor(move.target())))
+        .collect(Collectors.groupingBy(Move::sourceBucket,
+            Collectors.mapping(Move::source, Collectors.toList())))
+        .forEach(s3Service::deleteFiles);
+  }
+
+  private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int threads) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(threadNamePrefix);
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setAwaitTerminationSeconds(10);
+    executor.initialize();
+    return executor;
+  }
+}
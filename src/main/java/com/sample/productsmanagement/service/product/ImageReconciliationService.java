@@ -0,0 +1,282 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.model.ReconciliationCheckpoint;
+import com.sample.productsmanagement.repository.NamedLocks;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ReconciliationCheckpointRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import com.sample.productsmanagement.service.storage.ObjectSummary;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds images that no product references and products whose image is missing, by merge-joining
+ * the listing of every image bucket with the image locations of all products, soft deleted ones
+ * included. Both sides are read page by page in the same key order, so memory stays constant
+ * whatever the size of the bucket.
+ *
+ * <p>Orphaned objects older than the grace period are deleted when
+ * {@code product.reconciliation.delete-orphans} is set, otherwise only reported. Missing objects
+ * are confirmed with a HEAD request and reported. Progress is checkpointed after every page so
+ * an interrupted run resumes where it stopped. Runs hold a named lock on the first shard, which
+ * holds the checkpoint, so only one instance runs at a time and the others skip their turn.
+ */
+@Service
+@ConditionalOnProperty(name = "product.reconciliation.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class ImageReconciliationService {
+
+  static final String CHECKPOINT_NAME = "image-reconciliation";
+  private static final Logger LOGGER = LoggerFactory.getLogger(ImageReconciliationService.class);
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private ReconciliationCheckpointRepository checkpointRepository;
+
+  @Autowired
+  private S3Service s3Service;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired
+  private NamedLocks namedLocks;
+
+  @Value("${product.reconciliation.delete-orphans:false}")
+  private boolean deleteOrphans;
+
+  @Value("${product.reconciliation.grace-period:PT1H}")
+  private Duration gracePeriod;
+
+  @Value("${product.reconciliation.page-size:1000}")
+  private int pageSize;
+
+  @Value("${product.reconciliation.max-objects-per-second:2000}")
+  private int maxObjectsPerSecond;
+
+  @Scheduled(cron = "${product.reconciliation.cron:0 0 3 * * *}")
+  public void reconcile() {
+    if (!namedLocks.runLocked(productShards.names().get(0), CHECKPOINT_NAME, Duration.ZERO,
+        this::reconcileLocked)) {
+      LOGGER.info("Image reconciliation is already running on another instance");
+    }
+  }
+
+  private void reconcileLocked() {
+    ReconciliationCheckpoint checkpoint = checkpointRepository.findById(CHECKPOINT_NAME)
+        .filter(existing -> existing.getCompletedAt() == null)
+        .orElseGet(() -> ReconciliationCheckpoint.builder()
+            .name(CHECKPOINT_NAME)
+            .startedAt(Instant.now())
+            .build());
+    if (checkpoint.getLastKey() != null) {
+      LOGGER.info("Resuming image reconciliation after {}", checkpoint.getLastKey());
+    }
+
+    Instant modifiedBefore = Instant.now().minus(gracePeriod);
+    ObjectCursor objects = new ObjectCursor(checkpoint.getLastKey());
+    LocationCursor locations = new LocationCursor(checkpoint.getLastKey());
+    List<ObjectSummary> orphans = new ArrayList<>();
+    long pageStartedAt = System.nanoTime();
+    int processed = 0;
+
+    ObjectSummary object = objects.next();
+    String location = locations.next();
+    while (object != null || location != null) {
+      int comparison = object == null ? 1
+          : location == null ? -1 : ObjectStorage.compareKeys(object.key(), location);
+      String position;
+      if (comparison == 0) {
+        checkpoint.setScannedObjects(checkpoint.getScannedObjects() + 1);
+        position = location;
+        object = objects.next();
+        location = locations.next();
+      } else if (comparison < 0) {
+        checkpoint.setScannedObjects(checkpoint.getScannedObjects() + 1);
+        position = object.key();
+        if (object.lastModified().isBefore(modifiedBefore)) {
+          checkpoint.setOrphanedObjects(checkpoint.getOrphanedObjects() + 1);
+          orphans.add(object);
+        }
+        object = objects.next();
+      } else {
+        position = location;
+        if (!s3Service.fileExists(location)) {
+          checkpoint.setMissingObjects(checkpoint.getMissingObjects() + 1);
+          LOGGER.warn("Image {} is referenced by a product but missing from the bucket", location);
+        }
+        location = locations.next();
+      }
+
+      checkpoint.setLastKey(position);
+      if (++processed == pageSize) {
+        save(checkpoint, orphans);
+        throttle(processed, pageStartedAt);
+        pageStartedAt = System.nanoTime();
+        processed = 0;
+      }
+    }
+
+    save(checkpoint, orphans);
+    checkpoint.setLastKey(null);
+    checkpoint.setCompletedAt(Instant.now());
+    checkpointRepository.save(checkpoint);
+    LOGGER.info("Image reconciliation scanned {} objects, found {} orphaned ({} deleted) "
+            + "and {} missing", checkpoint.getScannedObjects(), checkpoint.getOrphanedObjects(),
+        checkpoint.getDeletedObjects(), checkpoint.getMissingObjects());
+  }
+
+  /**
+   * Deletes or reports the orphans of the current page before storing the position, so a
+   * resumed run never skips an orphan it has not acted on.
+   */
+  private void save(ReconciliationCheckpoint checkpoint, List<ObjectSummary> orphans) {
+    if (!orphans.isEmpty()) {
+      if (deleteOrphans) {
+        orphans.stream()
+            .collect(Collectors.groupingBy(ObjectSummary::bucket,
+                Collectors.mapping(ObjectSummary::key, Collectors.toList())))
+            .forEach(s3Service::deleteFiles);
+        checkpoint.setDeletedObjects(checkpoint.getDeletedObjects() + orphans.size());
+      } else {
+        LOGGER.warn("Orphaned images not referenced by any product: {}",
+            orphans.stream().map(ObjectSummary::key).toList());
+      }
+      orphans.clear();
+    }
+    checkpoint.setUpdatedAt(Instant.now());
+    checkpointRepository.save(checkpoint);
+  }
+
+  private void throttle(int objects, long startedAt) {
+    long minimumNanos = Duration.ofSeconds(1).toNanos() * objects / maxObjectsPerSecond;
+    long remainingNanos = minimumNanos - (System.nanoTime() - startedAt);
+    if (remainingNanos <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(Duration.ofNanos(remainingNanos));
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Listings of every bucket merged in key order, one page per bucket in memory at a time.
+   * Layouts never put the same key in two buckets, so the merge stays strictly ordered.
+   */
+  private class ObjectCursor {
+    private final List<BucketCursor> buckets;
+
+    ObjectCursor(String startAfter) {
+      this.buckets = s3Service.getBuckets().stream()
+          .map(bucket -> new BucketCursor(bucket, startAfter))
+          .toList();
+    }
+
+    ObjectSummary next() {
+      BucketCursor first = null;
+      for (BucketCursor bucket : buckets) {
+        ObjectSummary head = bucket.peek();
+        if (head != null
+            && (first == null
+            || ObjectStorage.compareKeys(head.key(), first.peek().key()) < 0)) {
+          first = bucket;
+        }
+      }
+      return first == null ? null : first.next();
+    }
+  }
+
+  private class BucketCursor {
+    private final String bucket;
+    private final String startAfter;
+    private Iterator<ObjectSummary> page = List.<ObjectSummary>of().iterator();
+    private String continuationToken;
+    private boolean truncated = true;
+    private ObjectSummary head;
+
+    BucketCursor(String bucket, String startAfter) {
+      this.bucket = bucket;
+      this.startAfter = startAfter;
+    }
+
+    ObjectSummary peek() {
+      if (head == null) {
+        while (!page.hasNext() && truncated) {
+          ObjectListing result = s3Service.listFiles(bucket, startAfter, continuationToken,
+              pageSize);
+          page = result.objects().iterator();
+          continuationToken = result.nextContinuationToken();
+          truncated = result.isTruncated();
+        }
+        head = page.hasNext() ? page.next() : null;
+      }
+      return head;
+    }
+
+    ObjectSummary next() {
+      ObjectSummary current = peek();
+      head = null;
+      return current;
+    }
+  }
+
+  /**
+   * Distinct image locations in key order, read with keyset pagination and merged across shards.
+   * The order is verified because a case-insensitive collation would make the merge-join report
+   * false orphans.
+   */
+  private class LocationCursor {
+    private Iterator<String> page = List.<String>of().iterator();
+    private String lastKey;
+    private boolean exhausted;
+
+    LocationCursor(String startAfter) {
+      this.lastKey = startAfter == null ? "" : startAfter;
+    }
+
+    String next() {
+      while (true) {
+        while (!page.hasNext() && !exhausted) {
+          String after = lastKey;
+          List<String> locations = ProductShards.merge(productShards.scatter(
+                  shard -> productRepository.findImageLocationsAfter(after, pageSize)),
+              ObjectStorage::compareKeys, pageSize);
+          page = locations.iterator();
+          exhausted = locations.size() < pageSize;
+        }
+        if (!page.hasNext()) {
+          return null;
+        }
+
+        String location = page.next();
+        int comparison = ObjectStorage.compareKeys(location, lastKey);
+        if (comparison < 0) {
+          throw new IllegalStateException(String.format(
+              "Image location %s is out of S3 key order after %s", location, lastKey));
+        }
+        if (comparison > 0) {
+          lastKey = location;
+          return location;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Copies the change records of every shard but the first into the change feed, which is the
+ * {@code product_change} table of the first shard. The other shards' tables serve as outboxes:
+ * records are written in the product's transaction and deleted here once copied, so every change
+ * reaches the feed at least once. Every instance relays, each batch claimed by one of them.
+ * Copies get a new id and creation time, so the feed's settle time holds them back like changes
+ * written on the first shard.
+ */
+@Service
+@ConditionalOnProperty(name = "product.sharding.enabled", havingValue = "true")
+public class ProductChangeRelay {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductChangeRelay.class);
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Value("${product.sharding.relay-batch-size:500}")
+  private int batchSize;
+
+  private TransactionTemplate feedTransactionTemplate;
+
+  @PostConstruct
+  void init() {
+    // the copies commit on the feed shard on their own, while the batch stays locked
+    feedTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    feedTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  @Scheduled(fixedDelayString = "${product.sharding.relay-interval:PT1S}")
+  public void relay() {
+    List<String> shards = productShards.names();
+    for (String shard : shards.subList(1, shards.size())) {
+      try {
+        relay(shard, shards.get(0));
+      } catch (DataAccessException exception) {
+        LOGGER.warn("Could not relay the product changes of shard {}", shard, exception);
+      }
+    }
+  }
+
+  /**
+   * Relays a batch at a time in a transaction on the shard that locks the batch's records until
+   * they are deleted. Instances relaying at the same time skip the records another one has
+   * locked, so each record is copied once unless the delete fails after the copy committed.
+   */
+  private void relay(String shard, String feedShard) {
+    int relayed;
+    do {
+      relayed = productShards.call(shard, () -> transactionTemplate.execute(
+          status -> relayBatch(feedShard)));
+    } while (relayed == batchSize);
+  }
+
+  private int relayBatch(String feedShard) {
+    List<ProductChange> changes =
+        productChangeRepository.findUnlockedOrderByIdAsc(Limit.of(batchSize));
+    if (changes.isEmpty()) {
+      return 0;
+    }
+
+    Instant now = Instant.now();
+    List<ProductChange> copies = changes.stream()
+        .map(change -> ProductChange.builder()
+            .productId(change.getProductId())
+            .type(change.getType())
+            .createdAt(now)
+            .previousImageLocation(change.getPreviousImageLocation())
+            .build())
+        .toList();
+    productShards.run(feedShard, () -> feedTransactionTemplate.execute(
+        status -> productChangeRepository.saveAll(copies)));
+    productChangeRepository.deleteAllByIdInBatch(
+        changes.stream().map(ProductChange::getId).toList());
+    return changes.size();
+  }
+}
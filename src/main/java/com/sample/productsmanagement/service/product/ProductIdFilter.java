@@ -0,0 +1,270 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bloom filter over the ids of existing products, so lookups of ids that were never created are
+ * answered without a query. It only gives definite answers for misses and answers "maybe" until
+ * the first build finishes.
+ *
+ * <p>Products created by this instance are added before their insert. Products created by other
+ * instances are picked up from the change feed every {@code product.id-filter.refresh-interval},
+ * so a miss is only trusted for ids up to the highest one of their shard's range that has settled
+ * into the filter: read by the rebuild scan or from a change older than the commit window. Higher
+ * ids, such as those another instance just created, are answered "maybe" and looked up. Rows
+ * written directly to the table are only seen after the next rebuild. A Bloom filter cannot
+ * remove entries, so deletes are only counted and the filter is rebuilt from the product table
+ * once they make up too large a share of it, or when it fills past its capacity.
+ */
+@Service
+@ConditionalOnProperty(name = "product.id-filter.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class ProductIdFilter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductIdFilter.class);
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Value("${product.id-filter.expected-products:100000}")
+  private int expectedProducts;
+
+  @Value("${product.id-filter.false-positive-rate:0.01}")
+  private double falsePositiveRate;
+
+  @Value("${product.id-filter.page-size:10000}")
+  private int pageSize;
+
+  @Value("${product.id-filter.commit-window:PT30S}")
+  private Duration commitWindow;
+
+  @Value("${product.id-filter.max-stale-ratio:0.2}")
+  private double maxStaleRatio;
+
+  private volatile BloomFilter filter;
+
+  private volatile BloomFilter building;
+
+  /**
+   * Highest settled id in the filter per shard, see {@link #mightContain}.
+   */
+  private volatile Map<String, Integer> settledIds = new ConcurrentHashMap<>();
+
+  private final AtomicLong deletions = new AtomicLong();
+
+  private long changeCursor;
+
+  public boolean mightContain(int id) {
+    BloomFilter current = filter;
+    return current == null || id > settledIds.getOrDefault(shardOf(id), 0)
+        || current.mightContain(id);
+  }
+
+  /**
+   * Shard whose id range holds the id, the first one for ids outside every range.
+   */
+  private String shardOf(int id) {
+    List<String> shards = productShards.names();
+    for (String shard : shards) {
+      if (productShards.idRange(shard).contains(id)) {
+        return shard;
+      }
+    }
+    return shards.get(0);
+  }
+
+  private static void settle(Map<String, Integer> settledIds, String shard, int id) {
+    settledIds.merge(shard, id, Math::max);
+  }
+
+  public void add(int id) {
+    BloomFilter current = filter;
+    if (current != null) {
+      current.add(id);
+    }
+    BloomFilter next = building;
+    if (next != null) {
+      next.add(id);
+    }
+  }
+
+  public void recordDeletion() {
+    deletions.incrementAndGet();
+  }
+
+  /**
+   * Builds a new filter from the product table while the current one keeps serving. Products
+   * created during the scan are added to both, and the change feed catch-up that follows adds
+   * those whose insert committed after the scan passed their id.
+   */
+  @Scheduled(fixedDelayString = "${product.id-filter.rebuild-interval:PT6H}",
+      initialDelayString = "${product.id-filter.rebuild-initial-delay:PT0S}")
+  public synchronized void rebuild() {
+    if (filter == null) {
+      changeCursor = productChangeRepository.findLastIdCreatedBefore(
+          Instant.now().minus(commitWindow));
+    }
+    long deletedBefore = deletions.get();
+    long products = productShards.scatter(shard -> List.of(productRepository.count())).stream()
+        .flatMap(List::stream)
+        .mapToLong(Long::longValue)
+        .sum();
+    BloomFilter next = new BloomFilter(Math.max(expectedProducts, 2 * products),
+        falsePositiveRate);
+    building = next;
+    Map<String, Integer> nextSettledIds = new ConcurrentHashMap<>();
+    int lastId = 0;
+    List<Integer> ids;
+    do {
+      int after = lastId;
+      ids = ProductShards.merge(productShards.scatter(
+              shard -> productRepository.findIdsAfter(after, Limit.of(pageSize))),
+          Comparator.<Integer>naturalOrder(), pageSize);
+      for (int id : ids) {
+        next.add(id);
+        settle(nextSettledIds, shardOf(id), id);
+      }
+      if (!ids.isEmpty()) {
+        lastId = ids.get(ids.size() - 1);
+      }
+    } while (ids.size() == pageSize);
+
+    filter = next;
+    settledIds = nextSettledIds;
+    building = null;
+    deletions.addAndGet(-deletedBefore);
+    catchUp(next);
+    LOGGER.info("Rebuilt product id filter with {} products and capacity {}", next.size(),
+        next.capacity());
+  }
+
+  @Scheduled(fixedDelayString = "${product.id-filter.refresh-interval:PT1S}")
+  public synchronized void refresh() {
+    BloomFilter current = filter;
+    if (current == null || current.size() > current.capacity()
+        || deletions.get() > maxStaleRatio * current.size()) {
+      rebuild();
+      return;
+    }
+    catchUp(current);
+  }
+
+  /**
+   * Adds products created since the change cursor. The cursor only moves past changes older than
+   * the commit window, so a change whose transaction was still open on the last read is read
+   * again rather than skipped, and only those changes raise the settled ids.
+   */
+  private void catchUp(BloomFilter target) {
+    Instant settledBefore = Instant.now().minus(commitWindow);
+    long readCursor = changeCursor;
+    boolean settled = true;
+    List<ProductChange> changes;
+    do {
+      changes = productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(readCursor,
+          ChangeType.CREATED, Limit.of(pageSize));
+      for (ProductChange change : changes) {
+        target.add(change.getProductId());
+        readCursor = change.getId();
+        settled = settled && !change.getCreatedAt().isAfter(settledBefore);
+        if (settled) {
+          changeCursor = change.getId();
+          settle(settledIds, shardOf(change.getProductId()), change.getProductId());
+        }
+      }
+    } while (changes.size() == pageSize);
+  }
+
+  /**
+   * Bit array probed at {@code hashes} positions derived from two halves of a 64-bit mix of the
+   * id. Bits are only ever set, with a compare-and-set so concurrent adds are not lost.
+   */
+  private static class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+    private final long capacity;
+    private final AtomicLong size = new AtomicLong();
+
+    BloomFilter(long capacity, double falsePositiveRate) {
+      long wordCount = Math.max(1,
+          (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))
+              / Long.SIZE));
+      this.bits = new AtomicLongArray(Math.toIntExact(wordCount));
+      this.bitCount = wordCount * Long.SIZE;
+      this.hashes = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+      this.capacity = capacity;
+    }
+
+    void add(int id) {
+      long hash = mix(id);
+      int first = (int) hash;
+      int second = (int) (hash >>> 32);
+      boolean changed = false;
+      for (int i = 0; i < hashes; i++) {
+        long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long previous = bits.getAndAccumulate(word, mask, (value, set) -> value | set);
+        changed |= (previous & mask) == 0;
+      }
+      if (changed) {
+        size.incrementAndGet();
+      }
+    }
+
+    boolean mightContain(int id) {
+      long hash = mix(id);
+      int first = (int) hash;
+      int second = (int) (hash >>> 32);
+      for (int i = 0; i < hashes; i++) {
+        long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+        if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    long size() {
+      return size.get();
+    }
+
+    long capacity() {
+      return capacity;
+    }
+
+    private static long mix(int id) {
+      long hash = id * 0x9E3779B97F4A7C15L;
+      hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+      hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+      return hash ^ (hash >>> 31);
+    }
+  }
+}
@@ -0,0 +1,514 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.exception.ImportQueueFullException;
+import com.sample.productsmanagement.exception.ProductImportNotFoundException;
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.model.ProductDTO;
+import com.sample.productsmanagement.model.ProductImport;
+import com.sample.productsmanagement.model.ProductImport.Status;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductImportRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.image.ImageInspector.InspectedImage;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3Service;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Imports products in bulk from a CSV file with a {@code name,price,quantity[,image]} header and
+ * an optional ZIP archive holding the images named in the {@code image} column.
+ *
+ * <p>Both uploads are moved to a work directory and processed in the background, on a bounded
+ * queue. The CSV is parsed record by record and the archive is read through its central
+ * directory, so memory use only depends on the batch size. Each batch is inserted in one short
+ * transaction, on one shard. Its images are then uploaded on a bounded pool with no transaction
+ * open, so a slow upload holds neither a connection nor row locks, and attached to the products
+ * in a second short transaction. Both transactions write their change records last, so the
+ * change feed and the other instances see the products once created and again once they have
+ * their image. Progress is stored on the {@link ProductImport} after every batch.
+ */
+@Service
+public class ProductImportService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductImportService.class);
+  private static final int MAX_REPORTED_ERRORS = 100;
+  private static final List<String> REQUIRED_COLUMNS = List.of("name", "price", "quantity");
+  private static final String IMAGE_COLUMN = "image";
+  private static final String PRODUCTS_FILE = "products.csv";
+  private static final String IMAGES_FILE = "images.zip";
+  private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.builder()
+      .setHeader()
+      .setSkipHeaderRecord(true)
+      .setIgnoreEmptyLines(true)
+      .setTrim(true)
+      .build();
+
+  @Autowired
+  private ProductImportRepository productImportRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private ProductStatisticsService productStatisticsService;
+
+  @Autowired(required = false)
+  private ProductIdFilter productIdFilter;
+
+  @Autowired
+  private S3Service s3Service;
+
+  @Autowired
+  private ImageKeyLayout imageKeyLayout;
+
+  @Autowired
+  private ImageInspector imageInspector;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired
+  private Validator validator;
+
+  @Value("${product.import.directory:${java.io.tmpdir}/product-import}")
+  private Path directory;
+
+  @Value("${product.import.batch-size:500}")
+  private int batchSize;
+
+  @Value("${product.import.concurrency:1}")
+  private int concurrency;
+
+  @Value("${product.import.queue-capacity:10}")
+  private int queueCapacity = 10;
+
+  @Value("${product.import.stale-after:PT24H}")
+  private Duration staleAfter = Duration.ofHours(24);
+
+  @Value("${product.import.upload-threads:4}")
+  private int uploadThreads;
+
+  @Value("${product.import.max-image-size:10MB}")
+  private DataSize maxImageSize;
+
+  private ThreadPoolTaskExecutor importExecutor;
+  private ThreadPoolTaskExecutor uploadExecutor;
+
+  private record ImportRow(Product product, ZipEntry image) {
+  }
+
+  private record UploadedImage(String location, ImageMetadata metadata) {
+  }
+
+  @PostConstruct
+  void init() throws IOException {
+    Files.createDirectories(directory);
+    importExecutor = executor("product-import-", concurrency, queueCapacity);
+    uploadExecutor = executor("product-import-upload-", uploadThreads, Integer.MAX_VALUE);
+    recoverImports();
+  }
+
+  @PreDestroy
+  void destroy() {
+    importExecutor.shutdown();
+    uploadExecutor.shutdown();
+  }
+
+  /**
+   * Stores the uploads in the work directory of the import and queues it. At most
+   * {@code product.import.queue-capacity} imports wait for a thread, further ones are rejected
+   * and leave nothing behind.
+   */
+  public ProductImport startImport(MultipartFile products, MultipartFile images)
+      throws IOException {
+    Instant now = Instant.now();
+    ProductImport productImport = productImportRepository.save(ProductImport.builder()
+        .status(Status.QUEUED)
+        .createdAt(now)
+        .updatedAt(now)
+        .build());
+    long importId = productImport.getId();
+    Path workDirectory = workDirectory(importId);
+    try {
+      Files.createDirectories(workDirectory);
+      products.transferTo(workDirectory.resolve(PRODUCTS_FILE));
+      if (images != null && !images.isEmpty()) {
+        images.transferTo(workDirectory.resolve(IMAGES_FILE));
+      }
+      importExecutor.execute(() -> runImport(importId, workDirectory));
+    } catch (IOException | TaskRejectedException exception) {
+      delete(workDirectory);
+      productImportRepository.delete(productImport);
+      if (exception instanceof TaskRejectedException) {
+        throw new ImportQueueFullException(String.format(
+            "Too many product imports in progress, at most %s can wait", queueCapacity));
+      }
+      throw exception;
+    }
+
+    return productImport;
+  }
+
+  /**
+   * Resolves the imports a previous run of this instance left unfinished, which are the ones
+   * with a work directory here. Queued ones are queued again, interrupted ones failed, since
+   * their inserted batches would be inserted twice. Imports without a work directory belong to
+   * another instance and are only failed once they have not progressed for
+   * {@code product.import.stale-after}.
+   */
+  private void recoverImports() {
+    Instant staleBefore = Instant.now().minus(staleAfter);
+    for (ProductImport productImport : productImportRepository.findByStatusIn(
+        List.of(Status.QUEUED, Status.RUNNING))) {
+      long importId = productImport.getId();
+      Path workDirectory = workDirectory(importId);
+      if (!Files.isDirectory(workDirectory)) {
+        if (productImport.getUpdatedAt().isBefore(staleBefore)) {
+          fail(productImport, "Import abandoned by the instance running it");
+        }
+      } else if (productImport.getStatus() == Status.RUNNING) {
+        fail(productImport, "Import interrupted by a restart");
+        delete(workDirectory);
+      } else {
+        try {
+          importExecutor.execute(() -> runImport(importId, workDirectory));
+          LOGGER.info("Queued product import {} again after a restart", importId);
+        } catch (TaskRejectedException exception) {
+          fail(productImport, "Import queue full after a restart");
+          delete(workDirectory);
+        }
+      }
+    }
+  }
+
+  private void fail(ProductImport productImport, String error) {
+    LOGGER.warn("Product import {} failed: {}", productImport.getId(), error);
+    productImport.setStatus(Status.FAILED);
+    addError(productImport, error);
+    productImport.setFinishedAt(Instant.now());
+    save(productImport);
+  }
+
+  private Path workDirectory(long importId) {
+    return directory.resolve("import-" + importId);
+  }
+
+  public ProductImport getImport(long id) {
+    return productImportRepository.findById(id).orElseThrow(() ->
+        new ProductImportNotFoundException(String.format("Product import with id %s, not found",
+            id)));
+  }
+
+  private void runImport(long importId, Path workDirectory) {
+    ProductImport productImport = getImport(importId);
+    if (productImport.getStatus() != Status.QUEUED) {
+      // failed as abandoned by another instance while it waited
+      delete(workDirectory);
+      return;
+    }
+    productImport.setStatus(Status.RUNNING);
+    productImport = save(productImport);
+
+    Path csv = workDirectory.resolve(PRODUCTS_FILE);
+    Path archive = Files.exists(workDirectory.resolve(IMAGES_FILE))
+        ? workDirectory.resolve(IMAGES_FILE) : null;
+
+    try (Reader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8);
+        CSVParser parser = CSV_FORMAT.parse(reader);
+        ZipFile zipFile = archive == null ? null : new ZipFile(archive.toFile())) {
+      if (!parser.getHeaderNames().containsAll(REQUIRED_COLUMNS)) {
+        throw new IllegalArgumentException(String.format("CSV header should contain %s",
+            String.join(", ", REQUIRED_COLUMNS)));
+      }
+
+      List<ImportRow> batch = new ArrayList<>(batchSize);
+      for (CSVRecord record : parser) {
+        productImport.setProcessedRows(productImport.getProcessedRows() + 1);
+        ImportRow row = parseRow(record, zipFile, productImport);
+        if (row != null) {
+          batch.add(row);
+        }
+        if (batch.size() == batchSize) {
+          importBatch(batch, zipFile, productImport);
+          productImport = save(productImport);
+          batch.clear();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          throw new IllegalStateException("Import interrupted");
+        }
+      }
+      importBatch(batch, zipFile, productImport);
+      productImport.setStatus(Status.COMPLETED);
+    } catch (IOException | RuntimeException exception) {
+      LOGGER.warn("Product import {} failed", importId, exception);
+      productImport.setStatus(Status.FAILED);
+      addError(productImport, exception.getMessage());
+    } finally {
+      productImport.setFinishedAt(Instant.now());
+      save(productImport);
+      delete(workDirectory);
+    }
+  }
+
+  private ImportRow parseRow(CSVRecord record, ZipFile zipFile, ProductImport productImport) {
+    long line = record.getRecordNumber() + 1;
+    try {
+      ProductDTO productDto = ProductDTO.builder()
+          .name(record.get("name"))
+          .price(Integer.parseInt(record.get("price")))
+          .quantity(Integer.parseInt(record.get("quantity")))
+          .build();
+      Set<ConstraintViolation<ProductDTO>> violations = validator.validate(productDto);
+      if (!violations.isEmpty()) {
+        rejectRow(productImport, line, violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining(", ")));
+        return null;
+      }
+
+      String imageName = record.isSet(IMAGE_COLUMN) ? record.get(IMAGE_COLUMN) : null;
+      ZipEntry image = null;
+      if (Strings.isNotEmpty(imageName)) {
+        image = zipFile == null ? null : zipFile.getEntry(imageName);
+        String error = checkImage(imageName, image);
+        if (error != null) {
+          rejectRow(productImport, line, error);
+          return null;
+        }
+      }
+
+      return new ImportRow(productDto.mapToProduct(), image);
+    } catch (NumberFormatException exception) {
+      rejectRow(productImport, line, "price and quantity should be numbers");
+      return null;
+    } catch (IllegalArgumentException exception) {
+      rejectRow(productImport, line, "row does not match the CSV header");
+      return null;
+    }
+  }
+
+  private String checkImage(String imageName, ZipEntry image) {
+    if (image == null || image.isDirectory()) {
+      return String.format("Image %s not found in the image archive", imageName);
+    }
+    String contentType = URLConnection.guessContentTypeFromName(imageName);
+    if (contentType == null || !contentType.startsWith("image")) {
+      return String.format("Product image should be image format but got, %s", imageName);
+    }
+    if (image.getSize() < 0 || image.getSize() > maxImageSize.toBytes()) {
+      return String.format("Image %s should not be larger than %s", imageName, maxImageSize);
+    }
+    return null;
+  }
+
+  private void importBatch(List<ImportRow> batch, ZipFile zipFile, ProductImport productImport) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    String shard = productShards.shardForNewProduct();
+    List<Product> products = transactionTemplate.execute(status -> insert(batch, shard));
+    productImport.setImportedRows(productImport.getImportedRows() + products.size());
+
+    List<CompletableFuture<ImageMetadata>> uploads = new ArrayList<>(products.size());
+    List<String> imageLocations = new ArrayList<>(products.size());
+    for (int i = 0; i < products.size(); i++) {
+      ZipEntry image = batch.get(i).image();
+      if (image == null) {
+        uploads.add(null);
+        imageLocations.add(null);
+        continue;
+      }
+      String imageName = image.getName().substring(image.getName().lastIndexOf('/') + 1);
+      String imageLocation = imageKeyLayout.keyFor(products.get(i).getId(), imageName);
+      uploads.add(CompletableFuture.supplyAsync(() -> upload(zipFile, image, imageLocation),
+          uploadExecutor));
+      imageLocations.add(imageLocation);
+    }
+
+    Map<Integer, UploadedImage> uploadedImages = new LinkedHashMap<>();
+    for (int i = 0; i < uploads.size(); i++) {
+      CompletableFuture<ImageMetadata> upload = uploads.get(i);
+      if (upload == null) {
+        continue;
+      }
+      Product product = products.get(i);
+      try {
+        uploadedImages.put(product.getId(),
+            new UploadedImage(imageLocations.get(i), upload.join()));
+      } catch (RuntimeException exception) {
+        Throwable cause = exception.getCause() == null ? exception : exception.getCause();
+        addError(productImport, String.format("Image upload for product %s failed, %s",
+            product.getId(), cause.getMessage()));
+      }
+    }
+    if (uploadedImages.isEmpty()) {
+      return;
+    }
+
+    Set<Integer> attached;
+    try {
+      attached = transactionTemplate.execute(status -> attachImages(uploadedImages, shard));
+    } catch (RuntimeException exception) {
+      uploadedImages.values().forEach(image -> s3Service.deleteFile(image.location()));
+      throw exception;
+    }
+    productImport.setUploadedImages(productImport.getUploadedImages() + attached.size());
+    uploadedImages.forEach((productId, image) -> {
+      if (!attached.contains(productId)) {
+        s3Service.deleteFile(image.location());
+      }
+    });
+  }
+
+  private List<Product> insert(List<ImportRow> batch, String shard) {
+    productShards.bindTransaction(shard);
+    List<Product> products = productRepository.saveAll(batch.stream()
+        .map(ImportRow::product)
+        .toList());
+    if (productIdFilter != null) {
+      products.forEach(product -> productIdFilter.add(product.getId()));
+    }
+    productStatisticsService.increment(products.size(),
+        products.stream().mapToLong(Product::getQuantity).sum(),
+        products.stream().mapToLong(product -> (long) product.getPrice() * product.getQuantity())
+            .sum());
+    productRepository.flush();
+    recordChanges(products.stream().map(Product::getId).toList(), ChangeType.CREATED);
+    return products;
+  }
+
+  /**
+   * Sets the uploaded images on the products that still have none, and returns their ids. A
+   * product deleted or given an image by an update since the insert keeps its current state.
+   */
+  private Set<Integer> attachImages(Map<Integer, UploadedImage> uploadedImages, String shard) {
+    productShards.bindTransaction(shard);
+    Set<Integer> attached = new HashSet<>();
+    for (Product product : productRepository.findAllById(uploadedImages.keySet())) {
+      if (product.getImageLocation() == null) {
+        UploadedImage image = uploadedImages.get(product.getId());
+        product.setImageLocation(image.location());
+        product.setImage(image.metadata());
+        attached.add(product.getId());
+      }
+    }
+    productRepository.flush();
+    recordChanges(uploadedImages.keySet().stream().filter(attached::contains).toList(),
+        ChangeType.UPDATED);
+    return attached;
+  }
+
+  private void recordChanges(List<Integer> productIds, ChangeType type) {
+    Instant now = Instant.now();
+    productChangeRepository.saveAll(productIds.stream()
+        .map(productId -> ProductChange.builder()
+            .productId(productId)
+            .type(type)
+            .createdAt(now)
+            .build())
+        .toList());
+  }
+
+  private ImageMetadata upload(ZipFile zipFile, ZipEntry image, String imageLocation) {
+    try (InputStream inputStream = zipFile.getInputStream(image)) {
+      InspectedImage inspectedImage = imageInspector.inspect(inputStream, image.getSize());
+      ImageMetadata metadata = inspectedImage.metadata();
+      metadata.setVersion(System.currentTimeMillis());
+      s3Service.uploadFile(imageLocation, inspectedImage.content(), metadata.getSize(),
+          metadata.getContentType());
+      return metadata;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private void rejectRow(ProductImport productImport, long line, String message) {
+    productImport.setFailedRows(productImport.getFailedRows() + 1);
+    addError(productImport, String.format("Line %s: %s", line, message));
+  }
+
+  private static void addError(ProductImport productImport, String message) {
+    if (productImport.getErrors().size() < MAX_REPORTED_ERRORS) {
+      productImport.getErrors().add(message);
+    }
+  }
+
+  private ProductImport save(ProductImport productImport) {
+    productImport.setUpdatedAt(Instant.now());
+    return productImportRepository.save(productImport);
+  }
+
+  private static ThreadPoolTaskExecutor executor(String threadNamePrefix, int threads,
+      int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(threadNamePrefix);
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setAwaitTerminationSeconds(10);
+    executor.initialize();
+    return executor;
+  }
+
+  private static void delete(Path workDirectory) {
+    try (Stream<Path> files = Files.walk(workDirectory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException exception) {
+      LOGGER.warn("Could not delete import directory {}", workDirectory, exception);
+    }
+  }
+}
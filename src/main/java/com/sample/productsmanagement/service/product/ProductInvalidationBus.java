@@ -0,0 +1,253 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.apache.logging.log4j.util.Strings;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the in-process caches of this instance in line with writes made on other instances,
+ * using the change feed as the message log: the second-level product cache, the cached query
+ * results and the image cache. Every {@code product.invalidation.poll-interval} it reads the
+ * changes after the last one it saw, coalesces them per product and evicts each product and
+ * replaced image once, and the query results once per batch. Writes of this instance are
+ * evicted a second time, which only costs one extra load.
+ *
+ * <p>Change ids are taken when a transaction inserts its change record but only become visible
+ * when it commits, so a later id can show up first. Ids skipped over are remembered and looked up
+ * again on each poll until they appear, or dropped once older than
+ * {@code product.invalidation.commit-window} as their transaction rolled back. Past
+ * {@code product.invalidation.max-pending-gaps} further skipped ids are not remembered; every
+ * cached product, query result and image is evicted on each poll instead, until the commit window
+ * of the last ids skipped that way has passed.
+ *
+ * <p>Staleness is bounded by {@code product.invalidation.max-staleness}: while the feed cannot be
+ * read for longer than that, every cached product, query result and image is evicted on each
+ * poll, so reads go to the database and the store until the bus catches up.
+ */
+@Service
+@ConditionalOnProperty(name = "product.invalidation.enabled", havingValue = "true",
+    matchIfMissing = true)
+public class ProductInvalidationBus implements MeterBinder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductInvalidationBus.class);
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private ImageCacheService imageCacheService;
+
+  @Value("${product.invalidation.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${product.invalidation.commit-window:PT30S}")
+  private Duration commitWindow;
+
+  @Value("${product.invalidation.max-staleness:PT10S}")
+  private Duration maxStaleness;
+
+  @Value("${product.invalidation.max-pending-gaps:1000}")
+  private int maxPendingGaps;
+
+  /**
+   * Skipped change ids and when they were first missed.
+   */
+  private final TreeMap<Long, Instant> gaps = new TreeMap<>();
+
+  private long cursor = -1;
+
+  /**
+   * Until when every poll evicts all cached products, for ids skipped past the pending limit.
+   */
+  private Instant evictAllUntil;
+
+  private volatile Instant caughtUpAt = Instant.now();
+
+  private volatile int pendingGaps;
+
+  private Timer lag;
+
+  private Counter changeCount;
+
+  private Counter evictionCount;
+
+  private Counter gapOverflowCount;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    lag = Timer.builder("product.invalidation.lag")
+        .description("Time from a change being written to its eviction on this instance")
+        .publishPercentiles(0.5, 0.99)
+        .register(registry);
+    changeCount = Counter.builder("product.invalidation.changes")
+        .description("Changes read from the change feed")
+        .register(registry);
+    evictionCount = Counter.builder("product.invalidation.evictions")
+        .description("Products evicted after coalescing the changes of a batch")
+        .register(registry);
+    gapOverflowCount = Counter.builder("product.invalidation.gap-overflows")
+        .description("Skipped change ids not remembered as too many were pending, with every "
+            + "cached product evicted instead")
+        .register(registry);
+    Gauge.builder("product.invalidation.staleness", this,
+            bus -> Duration.between(bus.caughtUpAt, Instant.now()).toMillis() / 1000.0)
+        .description("Seconds since the change feed was last read up to its end")
+        .baseUnit("seconds")
+        .register(registry);
+    Gauge.builder("product.invalidation.pending-gaps", this, bus -> bus.pendingGaps)
+        .description("Skipped change ids waiting for their transaction to commit")
+        .register(registry);
+  }
+
+  @Scheduled(fixedDelayString = "${product.invalidation.poll-interval:PT1S}")
+  public synchronized void poll() {
+    Instant startedAt = Instant.now();
+    try {
+      if (cursor < 0) {
+        // the caches start empty, only changes whose transaction may still be open matter
+        cursor = productChangeRepository.findLastIdCreatedBefore(startedAt.minus(commitWindow));
+      }
+      List<ProductChange> changes;
+      do {
+        changes = productChangeRepository.findByIdGreaterThanOrderByIdAsc(cursor,
+            Limit.of(batchSize));
+        skipGaps(changes, startedAt);
+        invalidate(changes);
+      } while (changes.size() == batchSize);
+      invalidate(findCommittedGaps(startedAt));
+      if (evictAllUntil != null) {
+        evictAll();
+        if (!startedAt.isBefore(evictAllUntil)) {
+          evictAllUntil = null;
+        }
+      }
+      caughtUpAt = startedAt;
+    } catch (DataAccessException exception) {
+      LOGGER.warn("Could not read the change feed for cache invalidation", exception);
+      if (Duration.between(caughtUpAt, startedAt).compareTo(maxStaleness) > 0) {
+        LOGGER.warn("Cache invalidation is more than {} behind, evicting every cached product",
+            maxStaleness);
+        evictAll();
+      }
+    } finally {
+      pendingGaps = gaps.size();
+    }
+  }
+
+  /**
+   * Moves the cursor past the changes, remembering the ids skipped over.
+   */
+  private void skipGaps(List<ProductChange> changes, Instant now) {
+    for (ProductChange change : changes) {
+      long skipped = change.getId() - cursor - 1;
+      if (skipped > 0 && gaps.size() + skipped <= maxPendingGaps) {
+        for (long id = cursor + 1; id < change.getId(); id++) {
+          gaps.put(id, now);
+        }
+      } else if (skipped > 0) {
+        LOGGER.warn("Not waiting for {} skipped change ids before {}, {} are already pending, "
+            + "evicting every cached product for {}", skipped, change.getId(), gaps.size(),
+            commitWindow);
+        evictAllUntil = now.plus(commitWindow);
+        if (gapOverflowCount != null) {
+          gapOverflowCount.increment(skipped);
+        }
+      }
+      cursor = change.getId();
+    }
+  }
+
+  /**
+   * Looks up the skipped ids, dropping those skipped longer than the commit window ago, and
+   * returns the changes that have been committed since.
+   */
+  private List<ProductChange> findCommittedGaps(Instant now) {
+    Instant expiredBefore = now.minus(commitWindow);
+    Set<Long> waiting = new HashSet<>();
+    for (Iterator<Map.Entry<Long, Instant>> entries = gaps.entrySet().iterator();
+        entries.hasNext(); ) {
+      Map.Entry<Long, Instant> gap = entries.next();
+      if (gap.getValue().isBefore(expiredBefore)) {
+        entries.remove();
+      } else {
+        waiting.add(gap.getKey());
+      }
+    }
+    if (waiting.isEmpty()) {
+      return List.of();
+    }
+
+    List<ProductChange> committed = productChangeRepository.findAllById(waiting);
+    committed.forEach(change -> gaps.remove(change.getId()));
+    return committed;
+  }
+
+  private void invalidate(List<ProductChange> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    Set<Integer> productIds = new HashSet<>();
+    Set<String> imageLocations = new HashSet<>();
+    for (ProductChange change : changes) {
+      productIds.add(change.getProductId());
+      if (Strings.isNotEmpty(change.getPreviousImageLocation())) {
+        imageLocations.add(change.getPreviousImageLocation());
+      }
+    }
+    // images first, a proxy request that reads the new image version afterwards downloads the
+    // new image rather than serving the old one as immutable under the new version
+    imageLocations.forEach(imageCacheService::evict);
+    Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    for (int productId : productIds) {
+      cache.evictEntityData(Product.class, productId);
+    }
+    cache.evictQueryRegions();
+
+    if (lag != null) {
+      Instant evictedAt = Instant.now();
+      for (ProductChange change : changes) {
+        lag.record(Duration.between(change.getCreatedAt(), evictedAt));
+      }
+      changeCount.increment(changes.size());
+      evictionCount.increment(productIds.size());
+    }
+  }
+
+  private void evictAll() {
+    imageCacheService.evictAll();
+    Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    cache.evictEntityData(Product.class);
+    cache.evictQueryRegions();
+  }
+}
@@ -0,0 +1,104 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.PurgeCandidate;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.service.s3.S3Service;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hard-deletes soft deleted products in batches. Images are removed first with multi-object
+ * deletes, so a failure part way leaves rows that are simply retried on the next run rather
+ * than rows pointing at already deleted objects. Every shard is purged in turn, by every
+ * instance, each batch by one of them. The grace period is measured by the database clock, which
+ * also sets the deletion time.
+ */
+@Service
+@ConditionalOnProperty(name = "product.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class ProductPurgeService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductPurgeService.class);
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private S3Service s3Service;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Value("${product.purge.grace-period:PT10M}")
+  private Duration gracePeriod;
+
+  @Value("${product.purge.batch-size:500}")
+  private int batchSize;
+
+  @Value("${product.purge.max-batches-per-run:20}")
+  private int maxBatchesPerRun;
+
+  @Value("${product.purge.batch-pause:PT0.2S}")
+  private Duration batchPause;
+
+  @Scheduled(fixedDelayString = "${product.purge.interval:PT1M}")
+  public void purgeDeletedProducts() {
+    int purged = 0;
+    for (String shard : productShards.names()) {
+      purged += productShards.call(shard, this::purgeShard);
+    }
+
+    if (purged > 0) {
+      LOGGER.info("Purged {} soft deleted products", purged);
+    }
+  }
+
+  private int purgeShard() {
+    int purged = 0;
+    for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+      Integer deleted = transactionTemplate.execute(status -> purgeBatch());
+      purged += deleted == null ? 0 : deleted;
+
+      if (deleted == null || deleted < batchSize || !pause()) {
+        break;
+      }
+    }
+    return purged;
+  }
+
+  /**
+   * Deletes the images and then the rows of one batch, which stays locked meanwhile so another
+   * instance purging at the same time takes the next rows instead.
+   */
+  private int purgeBatch() {
+    List<PurgeCandidate> candidates = productRepository.lockPurgeCandidates(
+        gracePeriod.toSeconds(), batchSize);
+    if (candidates.isEmpty()) {
+      return 0;
+    }
+
+    s3Service.deleteFiles(candidates.stream().map(PurgeCandidate::getImageLocation).toList());
+    return productRepository.purgeDeleted(candidates.stream().map(PurgeCandidate::getId).toList());
+  }
+
+  private boolean pause() {
+    try {
+      Thread.sleep(batchPause);
+      return true;
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
@@ -2,23 +2,67 @@ package com.sample.productsmanagement.service.product;
 
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
 import com.mysql.cj.util.StringUtils;
+import com.sample.productsmanagement.exception.ImageNotFoundException;
 import com.sample.productsmanagement.exception.InvalidFileFormatException;
 import com.sample.productsmanagement.exception.ProductNotFoundException;
 import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.model.ProductChangeSet;
+import com.sample.productsmanagement.model.ProductLookup;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
 import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.image.ImageInspector.InspectedImage;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3CallExecutor.AsyncCall;
 import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.snapshot.CatalogSnapshotService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriUtils;
 
 @Service
-public class ProductService {
+public class ProductService implements MeterBinder {
+
+  public static final String IMAGE_VERSION_PARAMETER = "v";
+
+  private final SingleFlight<Integer, Product> productLoads = new SingleFlight<>();
+
+  private final SingleFlight<String, List<Product>> productListLoads = new SingleFlight<>();
+
+  private final SingleFlight<List<Long>, ProductChangeSet> productChangeLoads =
+      new SingleFlight<>();
 
   @Autowired
   private ProductRepository productRepository;
@@ -26,76 +70,434 @@ public class ProductService {
   @Autowired
   private S3Service s3Service;
 
+  @Autowired
+  private ImageCacheService imageCacheService;
+
+  @Autowired
+  private ImageKeyLayout imageKeyLayout;
+
+  @Autowired
+  private ImageInspector imageInspector;
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private ProductStatisticsService productStatisticsService;
+
+  @Autowired(required = false)
+  private ProductIdFilter productIdFilter;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired(required = false)
+  private CatalogSnapshotService catalogSnapshot;
+
+  @Value("${product.batch.chunk-size:500}")
+  private int batchChunkSize = 500;
+
+  @Value("${product.changes.settle-time:5s}")
+  private Duration changeSettleTime;
+
+  @Value("${product.image.proxy.enabled:false}")
+  private boolean imageProxyEnabled;
+
+  @Value("${product.image.proxy.base-url:/api/v1/images}")
+  private String imageProxyBaseUrl;
 
   private Product getProductById(int id) {
-    Optional<Product> storedProduct = productRepository.findById(id);
+    if (productIdFilter != null && !productIdFilter.mightContain(id)) {
+      throw ProductNotFoundException.forId(id);
+    }
+    Optional<Product> storedProduct = productShards.call(productShards.shardFor(id),
+        () -> productRepository.findById(id));
     if (storedProduct.isEmpty()) {
-      String errorMessage = String.format("Product with id %s, not found", id);
-      throw new ProductNotFoundException(errorMessage);
+      throw ProductNotFoundException.forId(id);
     }
 
     return storedProduct.get();
   }
 
+  /**
+   * Loads the product with its row locked until the transaction ends, which keeps
+   * {@link ImageKeyMigrationService} from copying an image to the key an update uploads to.
+   */
+  private Product lockProductById(int id) {
+    if (productIdFilter != null && !productIdFilter.mightContain(id)) {
+      throw ProductNotFoundException.forId(id);
+    }
+    Optional<Product> storedProduct = productShards.call(productShards.shardFor(id),
+        () -> productRepository.findByIdForUpdate(id));
+    if (storedProduct.isEmpty()) {
+      throw ProductNotFoundException.forId(id);
+    }
+
+    return storedProduct.get();
+  }
+
+  private String getImageUrl(Product product) {
+    if (!imageProxyEnabled) {
+      return s3Service.getPreSignedUrl(product.getImageLocation());
+    }
+
+    return getImageProxyUrl(product);
+  }
+
+  /**
+   * Image proxy URL of the product image. A replaced image is uploaded to the same key, so the
+   * URL carries the version of the upload, which lets the proxy have it cached for good.
+   */
+  private String getImageProxyUrl(Product product) {
+    if (Strings.isEmpty(product.getImageLocation())) {
+      return null;
+    }
+
+    String url = String.format("%s/%s", imageProxyBaseUrl,
+        UriUtils.encodePath(product.getImageLocation(), StandardCharsets.UTF_8));
+    Long version = product.getImage() == null ? null : product.getImage().getVersion();
+    return version == null ? url : String.format("%s?%s=%d", url, IMAGE_VERSION_PARAMETER, version);
+  }
+
+  /**
+   * Returns the version of the image stored under the key, or {@code 0} for an image uploaded
+   * before versions were recorded. Only images of live products are found, not those of deleted
+   * products or objects no product refers to.
+   */
+  public long getImageVersion(String imageLocation) {
+    return productShards.scatter(shard -> productRepository.findImageVersions(imageLocation))
+        .stream()
+        .flatMap(List::stream)
+        .findFirst()
+        .orElseThrow(() -> new ImageNotFoundException(
+            String.format("Image %s, not found", imageLocation)));
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    bindLoadMetrics(registry, "detail", productLoads);
+    bindLoadMetrics(registry, "list", productListLoads);
+    bindLoadMetrics(registry, "changes", productChangeLoads);
+  }
+
+  private static void bindLoadMetrics(MeterRegistry registry, String operation,
+      SingleFlight<?, ?> loads) {
+    FunctionCounter.builder("product.reads.loads", loads, SingleFlight::loads)
+        .description("Product reads that queried the database")
+        .tag("operation", operation)
+        .register(registry);
+    FunctionCounter.builder("product.reads.coalesced", loads, SingleFlight::coalesced)
+        .description("Product reads served by joining an identical read already in flight")
+        .tag("operation", operation)
+        .register(registry);
+  }
+
+  /**
+   * Concurrent requests for the same product share one load and one presigned URL, the returned
+   * product must therefore not be modified by the caller. With the catalog snapshot enabled the
+   * product is read from the snapshot once it is built, without a query.
+   */
   public Product getProductDetail(int id) {
-    Product storedProduct = getProductById(id);
-    String preSignedUrl = s3Service.getPreSignedUrl(storedProduct.getImageLocation());
-    storedProduct.setImageLocation(preSignedUrl);
+    if (catalogSnapshot != null && catalogSnapshot.isLoaded()) {
+      Product snapshotProduct = catalogSnapshot.find(id)
+          .orElseThrow(() -> ProductNotFoundException.forId(id));
+      snapshotProduct.setImageLocation(getImageUrl(snapshotProduct));
 
-    return storedProduct;
+      return snapshotProduct;
+    }
+
+    return productLoads.execute(id, () -> {
+      Product storedProduct = getProductById(id);
+      String imageUrl = getImageUrl(storedProduct);
+      storedProduct.setImageLocation(imageUrl);
+
+      return storedProduct;
+    });
+  }
+
+  /**
+   * Drops in-flight reads once the write commits, so a request sent after the write returned
+   * starts a fresh load rather than joining one that may have read the old row.
+   */
+  private void forgetLoadsAfterCommit(int id) {
+    Runnable forget = () -> {
+      productLoads.forget(id);
+      productListLoads.forgetAll();
+    };
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      forget.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        forget.run();
+      }
+    });
   }
 
+  /**
+   * Inserts the change record, which takes its feed id and creation time. Callers flush their
+   * other writes and finish the image upload first, so this is the last statement before the
+   * commit and the change becomes visible within the settle time of taking its id.
+   */
+  private void recordChange(int productId, ChangeType type, String previousImageLocation) {
+    productChangeRepository.save(ProductChange.builder()
+        .productId(productId)
+        .type(type)
+        .createdAt(Instant.now())
+        .previousImageLocation(previousImageLocation)
+        .build());
+  }
+
+  /**
+   * Creates the product with a single insert. The id is assigned on persist, so the image upload
+   * starts before the insert and runs while the row and the statistics are written, and the
+   * change record is inserted once it has finished. A failed upload rolls the transaction back,
+   * and a rolled back transaction deletes the image once its upload has finished. The image is
+   * checked by its header before the upload starts and its metadata is stored with the row.
+   */
+  @Transactional
   public Product createProduct(Product product, MultipartFile productImage) throws IOException {
+    productShards.bindTransaction(productShards.shardForNewProduct());
     Product storedProduct = productRepository.save(product);
-    if (!productImage.isEmpty()) {
-      String filePath = String.format("%s-%s", storedProduct.getId(),
+    if (productIdFilter != null) {
+      productIdFilter.add(storedProduct.getId());
+    }
+    String filePath = null;
+    AsyncCall<String> upload = null;
+    InspectedImage image = inspectImage(productImage);
+    if (image != null) {
+      filePath = imageKeyLayout.keyFor(storedProduct.getId(),
           productImage.getOriginalFilename());
       storedProduct.setImageLocation(filePath);
-      productRepository.save(storedProduct);
+      storedProduct.setImage(image.metadata());
+      upload = s3Service.uploadFileAsync(filePath, image.content(), image.metadata().getSize(),
+          image.metadata().getContentType());
+      deleteImageOnRollback(filePath, upload);
+    }
+    productStatisticsService.applyChange(null, storedProduct);
+    forgetLoadsAfterCommit(storedProduct.getId());
+    productRepository.flush();
+
+    String preSignedUrl = upload == null ? null : awaitUpload(upload.result());
+    recordChange(storedProduct.getId(), ChangeType.CREATED, null);
+    if (upload == null) {
+      return storedProduct;
+    }
+    return storedProduct.toBuilder()
+        .imageLocation(imageProxyEnabled ? getImageProxyUrl(storedProduct) : preSignedUrl)
+        .build();
+  }
 
-      String preSignedUrl = s3Service.uploadFile(filePath, productImage);
-      storedProduct.setImageLocation(preSignedUrl);
+  private InspectedImage inspectImage(MultipartFile productImage) throws IOException {
+    if (productImage.isEmpty()) {
+      return null;
     }
 
-    return storedProduct;
+    InspectedImage image =
+        imageInspector.inspect(productImage.getInputStream(), productImage.getSize());
+    image.metadata().setVersion(System.currentTimeMillis());
+    return image;
+  }
+
+  private void deleteImageOnRollback(String imageLocation, AsyncCall<String> upload) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        if (status != STATUS_COMMITTED) {
+          // after the upload itself, which outlives a timed out result and would store it again
+          upload.finished().whenCompleteAsync(
+              (result, error) -> s3Service.deleteFile(imageLocation));
+        }
+      }
+    });
   }
 
+  private static String awaitUpload(CompletableFuture<String> upload) {
+    try {
+      return upload.join();
+    } catch (CompletionException exception) {
+      if (exception.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * Lists the products of every shard, merged in id order when there is more than one.
+   */
   public List<Product> getProducts() {
-    List<Product> productList = productRepository.findAll();
-    for (Product product : productList) {
-      String preSignedUrl = s3Service.getPreSignedUrl(product.getImageLocation());
-      product.setImageLocation(preSignedUrl);
+    return productListLoads.execute("all", () -> {
+      List<Product> productList = ProductShards.merge(
+          productShards.scatter(shard -> productRepository.findAll()),
+          Comparator.comparingInt(Product::getId), Integer.MAX_VALUE);
+      for (Product product : productList) {
+        String imageUrl = getImageUrl(product);
+        product.setImageLocation(imageUrl);
+      }
+
+      return productList;
+    });
+  }
+
+  /**
+   * Looks up the products with the given ids in the order requested, with one IN query per
+   * {@code product.batch.chunk-size} distinct ids and the image URLs signed in one pass.
+   */
+  public List<ProductLookup> getProductsByIds(List<Integer> ids) {
+    List<Integer> candidates = ids.stream()
+        .distinct()
+        .filter(id -> productIdFilter == null || productIdFilter.mightContain(id))
+        .toList();
+    List<Product> storedProducts = findAllById(candidates);
+
+    List<String> imageUrls = getImageUrls(storedProducts);
+    Map<Integer, Product> products = new HashMap<>(storedProducts.size() * 2);
+    for (int i = 0; i < storedProducts.size(); i++) {
+      Product product = storedProducts.get(i);
+      products.put(product.getId(), product.toBuilder().imageLocation(imageUrls.get(i)).build());
     }
 
-    return productList;
+    return ids.stream().map(id -> new ProductLookup(id, products.get(id))).toList();
   }
 
-  public Product updateProduct(Product product, MultipartFile productImage) throws IOException {
-    Product productToUpdate = this.getProductById(product.getId());
-    String imageLocation = productToUpdate.getImageLocation();
-    String preSignedImageUrl = null;
+  /**
+   * Loads the products from their shards, the shards in parallel and one IN query per
+   * {@code product.batch.chunk-size} ids of a shard.
+   */
+  private List<Product> findAllById(List<Integer> ids) {
+    Map<String, List<Integer>> idsByShard = productShards.groupByShard(ids);
+    List<Product> products = new ArrayList<>(ids.size());
+    productShards.scatter(shard -> {
+      List<Integer> shardIds = idsByShard.getOrDefault(shard, List.of());
+      List<Product> shardProducts = new ArrayList<>(shardIds.size());
+      for (int start = 0; start < shardIds.size(); start += batchChunkSize) {
+        shardProducts.addAll(productRepository.findAllById(
+            shardIds.subList(start, Math.min(start + batchChunkSize, shardIds.size()))));
+      }
+      return shardProducts;
+    }).forEach(products::addAll);
+    return products;
+  }
 
-    productToUpdate.updateProduct(product);
-    s3Service.deleteFile(imageLocation);
+  private List<String> getImageUrls(List<Product> products) {
+    if (!imageProxyEnabled) {
+      return s3Service.getPreSignedUrls(products.stream()
+          .map(Product::getImageLocation)
+          .toList());
+    }
 
-    if (productImage.isEmpty()) {
-      productToUpdate.setImageLocation(null);
-    } else {
-      imageLocation = String.format("%s-%s", productToUpdate.getId(),
-          productImage.getOriginalFilename());
-      preSignedImageUrl = s3Service.uploadFile(imageLocation, productImage);
-      productToUpdate.setImageLocation(imageLocation);
+    return products.stream().map(this::getImageProxyUrl).toList();
+  }
+
+  /**
+   * Returns products created, updated or deleted after the given change feed cursor. Changes
+   * younger than the settle time are held back so that a transaction which took its change id
+   * earlier but committed later is not skipped by a client that already advanced its cursor.
+   * Writes insert their change record as their last statement, so the settle time only has to
+   * cover the commit, and the relay's inserts of a batch on a sharded catalog.
+   */
+  public ProductChangeSet getProductChanges(long cursor, int limit) {
+    return productChangeLoads.execute(List.of(cursor, (long) limit),
+        () -> loadProductChanges(cursor, limit));
+  }
+
+  private ProductChangeSet loadProductChanges(long cursor, int limit) {
+    Instant settledBefore = Instant.now().minus(changeSettleTime);
+    List<ProductChange> changes = productChangeRepository
+        .findByIdGreaterThanAndCreatedAtLessThanEqualOrderByIdAsc(cursor, settledBefore,
+            Limit.of(limit));
+    if (changes.isEmpty()) {
+      return new ProductChangeSet(List.of(), List.of(), cursor, false);
     }
 
-    productRepository.save(productToUpdate);
-    productToUpdate.setImageLocation(preSignedImageUrl);
+    Map<Integer, ChangeType> latestChanges = new LinkedHashMap<>();
+    for (ProductChange change : changes) {
+      latestChanges.put(change.getProductId(), change.getType());
+    }
+    List<Integer> changedIds = latestChanges.entrySet().stream()
+        .filter(change -> change.getValue() != ChangeType.DELETED)
+        .map(Map.Entry::getKey)
+        .toList();
+    List<Product> products = findAllById(changedIds);
+    Set<Integer> existingIds = new HashSet<>();
+    for (Product product : products) {
+      existingIds.add(product.getId());
+      product.setImageLocation(getImageUrl(product));
+    }
+    List<Integer> deletedIds = latestChanges.keySet().stream()
+        .filter(productId -> !existingIds.contains(productId))
+        .toList();
+    long nextCursor = changes.get(changes.size() - 1).getId();
+
+    return new ProductChangeSet(products, deletedIds, nextCursor, changes.size() == limit);
+  }
+
+  /**
+   * Replaces the product and its image. The new image is checked before the old one is deleted,
+   * so a rejected upload leaves the product as it was. The product stays locked until the update
+   * commits.
+   */
+  @Transactional
+  public Product updateProduct(Product product, MultipartFile productImage) throws IOException {
+    productShards.bindTransaction(productShards.shardFor(product.getId()));
+    Product productToUpdate = lockProductById(product.getId());
+    InspectedImage image = inspectImage(productImage);
+    try (InputStream imageContent = image == null ? null : image.content()) {
+      String imageLocation = productToUpdate.getImageLocation();
+      String preSignedImageUrl = null;
+      Product previousProduct = productToUpdate.toBuilder().build();
 
-    return productToUpdate;
+      productToUpdate.updateProduct(product);
+      s3Service.deleteFile(imageLocation);
+      imageCacheService.evict(imageLocation);
+
+      if (image == null) {
+        productToUpdate.setImageLocation(null);
+        productToUpdate.setImage(null);
+      } else {
+        imageLocation = imageKeyLayout.keyFor(productToUpdate.getId(),
+            productImage.getOriginalFilename());
+        s3Service.uploadFile(imageLocation, imageContent, image.metadata().getSize(),
+            image.metadata().getContentType());
+        productToUpdate.setImageLocation(imageLocation);
+        productToUpdate.setImage(image.metadata());
+        preSignedImageUrl = imageProxyEnabled ? getImageProxyUrl(productToUpdate)
+            : s3Service.getPreSignedUrl(imageLocation);
+      }
+
+      productRepository.save(productToUpdate);
+      productStatisticsService.applyChange(previousProduct, productToUpdate);
+      productRepository.flush();
+      recordChange(productToUpdate.getId(), ChangeType.UPDATED,
+          previousProduct.getImageLocation());
+      forgetLoadsAfterCommit(productToUpdate.getId());
+
+      return productToUpdate.toBuilder().imageLocation(preSignedImageUrl).build();
+    }
   }
 
+  /**
+   * Soft deletes the product. The row and its image are removed later in batches by
+   * {@link ProductPurgeService}.
+   */
+  @Transactional
   public void deleteProduct(int id) throws ProductNotFoundException {
+    productShards.bindTransaction(productShards.shardFor(id));
     Product productToDelete = getProductById(id);
     productRepository.deleteById(id);
-    s3Service.deleteFile(productToDelete.getImageLocation());
+    productStatisticsService.applyChange(productToDelete, null);
+    productRepository.flush();
+    recordChange(id, ChangeType.DELETED, productToDelete.getImageLocation());
+    forgetLoadsAfterCommit(id);
+    imageCacheService.evict(productToDelete.getImageLocation());
+    if (productIdFilter != null) {
+      productIdFilter.recordDeletion();
+    }
   }
 }
@@ -0,0 +1,133 @@
+package com.sample.productsmanagement.service.product;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductStatistics;
+import com.sample.productsmanagement.model.ProductStatisticsDTO;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository.Totals;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Catalog totals kept as striped counters. Every product write adds its delta in the writer's
+ * transaction, so reading the totals only sums {@code product.statistics.slots} rows. A periodic
+ * recompute rebuilds the counters from the product table to correct any drift. When sharded,
+ * every shard counts its own products and the totals are summed over the shards.
+ */
+@Service
+public class ProductStatisticsService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProductStatisticsService.class);
+
+  @Autowired
+  private ProductStatisticsRepository productStatisticsRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Value("${product.statistics.slots:16}")
+  private int slots;
+
+  public ProductStatisticsDTO getStatistics() {
+    List<Totals> shardTotals = productShards.scatter(
+            shard -> List.of(productStatisticsRepository.sumTotals())).stream()
+        .flatMap(List::stream)
+        .toList();
+
+    return ProductStatisticsDTO.builder()
+        .totalProducts(shardTotals.stream().mapToLong(Totals::getTotalProducts).sum())
+        .totalUnits(shardTotals.stream().mapToLong(Totals::getTotalUnits).sum())
+        .totalValue(shardTotals.stream().mapToLong(Totals::getTotalValue).sum())
+        .build();
+  }
+
+  /**
+   * Applies the difference between two versions of a product, {@code null} standing for a
+   * product that does not exist before a create or after a delete.
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void applyChange(Product previous, Product current) {
+    increment((current == null ? 0 : 1) - (previous == null ? 0 : 1),
+        units(current) - units(previous), value(current) - value(previous));
+  }
+
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void increment(long products, long units, long value) {
+    if (products == 0 && units == 0 && value == 0) {
+      return;
+    }
+    productStatisticsRepository.increment(ThreadLocalRandom.current().nextInt(slots), products,
+        units, value);
+  }
+
+  @Scheduled(fixedDelayString = "${product.statistics.recompute-interval:PT1H}",
+      initialDelayString = "${product.statistics.recompute-initial-delay:PT1M}")
+  public void recompute() {
+    for (String shard : productShards.names()) {
+      productShards.run(shard, () -> transactionTemplate.execute(status -> {
+        recompute(shard);
+        return null;
+      }));
+    }
+  }
+
+  /**
+   * Locks every slot first, so writers still holding a slot finish before the product table is
+   * read and writers that have not reached their slot yet add their delta on top of the result.
+   */
+  private void recompute(String shard) {
+    List<ProductStatistics> counters = productStatisticsRepository.lockAll();
+    Totals actual = productRepository.calculateTotals();
+    ProductStatistics counted = new ProductStatistics();
+    for (ProductStatistics counter : counters) {
+      counted.setTotalProducts(counted.getTotalProducts() + counter.getTotalProducts());
+      counted.setTotalUnits(counted.getTotalUnits() + counter.getTotalUnits());
+      counted.setTotalValue(counted.getTotalValue() + counter.getTotalValue());
+      counter.setTotalProducts(0);
+      counter.setTotalUnits(0);
+      counter.setTotalValue(0);
+    }
+    if (counted.getTotalProducts() != actual.getTotalProducts()
+        || counted.getTotalUnits() != actual.getTotalUnits()
+        || counted.getTotalValue() != actual.getTotalValue()) {
+      LOGGER.warn("Product statistics of shard {} drifted, corrected {} products, {} units and "
+              + "{} value to {}, {} and {}", shard, counted.getTotalProducts(),
+          counted.getTotalUnits(), counted.getTotalValue(), actual.getTotalProducts(),
+          actual.getTotalUnits(), actual.getTotalValue());
+    }
+
+    ProductStatistics first = counters.stream()
+        .filter(counter -> counter.getSlot() == 0)
+        .findFirst()
+        .orElseGet(() -> ProductStatistics.builder().slot(0).build());
+    first.setTotalProducts(actual.getTotalProducts());
+    first.setTotalUnits(actual.getTotalUnits());
+    first.setTotalValue(actual.getTotalValue());
+    productStatisticsRepository.save(first);
+  }
+
+  private static long units(Product product) {
+    return product == null ? 0 : product.getQuantity();
+  }
+
+  private static long value(Product product) {
+    return product == null ? 0 : (long) product.getPrice() * product.getQuantity();
+  }
+}
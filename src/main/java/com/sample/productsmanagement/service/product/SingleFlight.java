@@ -0,0 +1,74 @@
+package com.sample.productsmanagement.service.product;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one load per key at a time. Callers asking for a key that is already being loaded
+ * wait for that load and get the same result, or the same exception, instead of starting their
+ * own. Results are shared between callers and must not be modified by them.
+ */
+final class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  V execute(K key, Supplier<V> loader) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+    if (existing != null) {
+      coalesced.increment();
+      return await(existing);
+    }
+
+    loads.increment();
+    try {
+      V value = loader.get();
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException | Error exception) {
+      flight.completeExceptionally(exception);
+      throw exception;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Stops later callers from joining a load of the key that started before the call, so a read
+   * that follows a committed write never gets the result of a read that overlapped the write.
+   */
+  void forget(K key) {
+    inFlight.remove(key);
+  }
+
+  void forgetAll() {
+    inFlight.clear();
+  }
+
+  long loads() {
+    return loads.sum();
+  }
+
+  long coalesced() {
+    return coalesced.sum();
+  }
+
+  private static <V> V await(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException exception) {
+      if (exception.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (exception.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw exception;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package com.sample.productsmanagement.service.s3;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Original {@code {id}-{filename}} layout. Sequential ids put all new writes in one key range,
+ * which S3 serves from a single partition until it splits it.
+ */
+@Component
+@ConditionalOnProperty(name = "product.image.keys.layout", havingValue = "flat",
+    matchIfMissing = true)
+public class FlatImageKeyLayout implements ImageKeyLayout {
+
+  @Override
+  public String keyFor(int productId, String originalFilename) {
+    return String.format("%s-%s", productId,
+        ImageKeyLayout.normalizeFilename(originalFilename));
+  }
+}
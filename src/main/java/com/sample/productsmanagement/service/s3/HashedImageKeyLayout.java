@@ -0,0 +1,33 @@
+package com.sample.productsmanagement.service.s3;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code {prefix}/{id}-{filename}} layout where the prefix is the first hex digits of a hash of
+ * the id. Consecutive products land in unrelated key ranges, so writes spread over as many S3
+ * partitions as there are prefixes instead of all hitting the newest range.
+ */
+@Component
+@ConditionalOnProperty(name = "product.image.keys.layout", havingValue = "hashed")
+public class HashedImageKeyLayout implements ImageKeyLayout {
+
+  @Value("${product.image.keys.prefix-length:4}")
+  private int prefixLength;
+
+  @Override
+  public String keyFor(int productId, String originalFilename) {
+    return String.format("%s/%s-%s", prefix(productId), productId,
+        ImageKeyLayout.normalizeFilename(originalFilename));
+  }
+
+  private String prefix(int productId) {
+    long hash = productId * 0x9E3779B97F4A7C15L;
+    hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+    hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+    hash ^= hash >>> 31;
+
+    return String.format("%016x", hash).substring(0, Math.max(1, Math.min(prefixLength, 16)));
+  }
+}
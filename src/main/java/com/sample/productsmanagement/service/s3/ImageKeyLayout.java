@@ -0,0 +1,37 @@
+package com.sample.productsmanagement.service.s3;
+
+import java.text.Normalizer;
+
+/**
+ * Decides the object key of a product image. Every layout keeps the original filename only in a
+ * normalized form: ASCII letters, digits, dots, dashes and underscores, at most
+ * {@value #MAX_FILENAME_LENGTH} characters with the extension preserved.
+ */
+public interface ImageKeyLayout {
+
+  int MAX_FILENAME_LENGTH = 100;
+
+  String DEFAULT_FILENAME = "image";
+
+  String keyFor(int productId, String originalFilename);
+
+  static String normalizeFilename(String originalFilename) {
+    if (originalFilename == null) {
+      return DEFAULT_FILENAME;
+    }
+    String name = originalFilename.substring(Math.max(originalFilename.lastIndexOf('/'),
+        originalFilename.lastIndexOf('\\')) + 1);
+    name = Normalizer.normalize(name, Normalizer.Form.NFKD)
+        .replaceAll("\\p{M}+", "")
+        .replaceAll("[^A-Za-z0-9._-]+", "-")
+        .replaceAll("^[-.]+|-+$", "");
+    if (name.length() > MAX_FILENAME_LENGTH) {
+      int extension = name.lastIndexOf('.');
+      String suffix = extension > 0 && name.length() - extension <= 16
+          ? name.substring(extension) : "";
+      name = name.substring(0, MAX_FILENAME_LENGTH - suffix.length()) + suffix;
+    }
+
+    return name.isEmpty() ? DEFAULT_FILENAME : name;
+  }
+}
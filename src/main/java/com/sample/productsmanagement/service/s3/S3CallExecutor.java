@@ -0,0 +1,132 @@
+package com.sample.productsmanagement.service.s3;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs S3 network calls on a dedicated bounded pool, guarded by a time limit and a circuit
+ * breaker, so a slow S3 endpoint cannot exhaust the request threads.
+ */
+@Component
+public class S3CallExecutor {
+
+  private final CircuitBreaker circuitBreaker;
+  private final ThreadPoolBulkhead bulkhead;
+  private final TimeLimiter timeLimiter;
+
+  @Autowired
+  public S3CallExecutor(CircuitBreaker circuitBreaker, ThreadPoolBulkhead bulkhead,
+      TimeLimiter timeLimiter) {
+    this.circuitBreaker = circuitBreaker;
+    this.bulkhead = bulkhead;
+    this.timeLimiter = timeLimiter;
+  }
+
+  /**
+   * Whether calls are currently allowed through; reads use this to skip S3 work while the
+   * breaker is open instead of waiting for a rejection.
+   */
+  public boolean isAvailable() {
+    CircuitBreaker.State state = circuitBreaker.getState();
+    return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+  }
+
+  public <T> T execute(Supplier<T> call) {
+    try {
+      return circuitBreaker.executeCallable(() -> timeLimiter.executeFutureSupplier(
+          () -> submit(call)));
+    } catch (CallNotPermittedException exception) {
+      throw new StorageUnavailableException("S3 circuit breaker is open", exception);
+    } catch (BulkheadFullException exception) {
+      throw new StorageUnavailableException("Too many concurrent S3 calls", exception);
+    } catch (TimeoutException exception) {
+      throw new StorageUnavailableException("S3 call timed out", exception);
+    } catch (RuntimeException exception) {
+      throw exception;
+    } catch (Exception exception) {
+      throw new StorageUnavailableException("S3 call failed", exception);
+    }
+  }
+
+  public void execute(Runnable call) {
+    execute(() -> {
+      call.run();
+      return null;
+    });
+  }
+
+  /**
+   * A call started by {@link #executeAsync}. The result completes within the time limit, while
+   * the call itself keeps running past it, since a blocking S3 call cannot be interrupted.
+   * {@code finished} completes once the call has returned, so that work undoing its effect,
+   * such as deleting an uploaded object, cannot run before the call has had it.
+   */
+  public record AsyncCall<T>(CompletableFuture<T> result, CompletableFuture<Void> finished) {
+  }
+
+  /**
+   * Starts the call on the bulkhead pool and returns straight away, so the caller can do other
+   * work while it runs. The outcome is recorded on the circuit breaker like {@link #execute}
+   * does, and failures complete the result with the same {@link StorageUnavailableException}s.
+   */
+  public <T> AsyncCall<T> executeAsync(Supplier<T> call) {
+    try {
+      circuitBreaker.acquirePermission();
+    } catch (CallNotPermittedException exception) {
+      return rejected(new StorageUnavailableException("S3 circuit breaker is open", exception));
+    }
+
+    long start = System.nanoTime();
+    CompletableFuture<T> future;
+    try {
+      future = submit(call);
+    } catch (BulkheadFullException exception) {
+      circuitBreaker.releasePermission();
+      return rejected(new StorageUnavailableException("Too many concurrent S3 calls", exception));
+    }
+
+    // the time limit applies to a copy, timing out the call itself would complete finished too
+    CompletableFuture<T> limited = future.copy()
+        .orTimeout(timeLimiter.getTimeLimiterConfig().getTimeoutDuration().toNanos(),
+            TimeUnit.NANOSECONDS)
+        .handle((result, error) -> {
+          long duration = System.nanoTime() - start;
+          if (error == null) {
+            circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+            return result;
+          }
+
+          Throwable cause = error instanceof CompletionException && error.getCause() != null
+              ? error.getCause() : error;
+          circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, cause);
+          if (cause instanceof TimeoutException) {
+            throw new StorageUnavailableException("S3 call timed out", cause);
+          }
+          if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+          }
+          throw new StorageUnavailableException("S3 call failed", cause);
+        });
+    return new AsyncCall<>(limited, future.handle((value, error) -> null));
+  }
+
+  private static <T> AsyncCall<T> rejected(StorageUnavailableException exception) {
+    return new AsyncCall<>(CompletableFuture.failedFuture(exception),
+        CompletableFuture.completedFuture(null));
+  }
+
+  private <T> CompletableFuture<T> submit(Supplier<T> call) {
+    return bulkhead.executeSupplier(call).toCompletableFuture();
+  }
+}
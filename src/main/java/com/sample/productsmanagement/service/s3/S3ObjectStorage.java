@@ -0,0 +1,118 @@
+package com.sample.productsmanagement.service.s3;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import com.sample.productsmanagement.service.storage.ObjectSummary;
+import com.sample.productsmanagement.service.storage.StoredObject;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link ObjectStorage} backed by S3, the production backend. URLs are presigned locally by
+ * {@link S3PreSigner} without a call to S3.
+ */
+public class S3ObjectStorage implements ObjectStorage {
+
+  private static final int MAX_KEYS_PER_DELETE = 1000;
+
+  private final AmazonS3 s3Client;
+  private final S3PreSigner s3PreSigner;
+
+  public S3ObjectStorage(AmazonS3 s3Client, S3PreSigner s3PreSigner) {
+    this.s3Client = s3Client;
+    this.s3PreSigner = s3PreSigner;
+  }
+
+  @Override
+  public void put(String bucket, String key, InputStream content, long size,
+      String contentType) {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(size);
+    metadata.setContentType(contentType);
+    s3Client.putObject(bucket, key, content, metadata);
+  }
+
+  @Override
+  public Optional<StoredObject> download(String bucket, String key, Path target) {
+    try {
+      ObjectMetadata metadata = s3Client.getObject(new GetObjectRequest(bucket, key),
+          target.toFile());
+      return Optional.of(new StoredObject(metadata.getContentLength(),
+          metadata.getContentType(), metadata.getETag(),
+          metadata.getLastModified() == null ? null : metadata.getLastModified().toInstant()));
+    } catch (AmazonS3Exception exception) {
+      if (exception.getStatusCode() == 404) {
+        return Optional.empty();
+      }
+      throw exception;
+    }
+  }
+
+  @Override
+  public boolean exists(String bucket, String key) {
+    return s3Client.doesObjectExist(bucket, key);
+  }
+
+  @Override
+  public void copy(String sourceBucket, String sourceKey, String targetBucket,
+      String targetKey) {
+    s3Client.copyObject(sourceBucket, sourceKey, targetBucket, targetKey);
+  }
+
+  @Override
+  public ObjectListing list(String bucket, String startAfter, String continuationToken,
+      int maxKeys) {
+    ListObjectsV2Request request = new ListObjectsV2Request()
+        .withBucketName(bucket)
+        .withMaxKeys(maxKeys);
+    if (continuationToken != null) {
+      request.setContinuationToken(continuationToken);
+    } else if (startAfter != null) {
+      request.setStartAfter(startAfter);
+    }
+    ListObjectsV2Result result = s3Client.listObjectsV2(request);
+    List<ObjectSummary> objects = result.getObjectSummaries().stream()
+        .map(summary -> new ObjectSummary(bucket, summary.getKey(), summary.getSize(),
+            summary.getLastModified() == null ? null : summary.getLastModified().toInstant()))
+        .toList();
+    return new ObjectListing(objects,
+        result.isTruncated() ? result.getNextContinuationToken() : null);
+  }
+
+  @Override
+  public void delete(String bucket, String key) {
+    s3Client.deleteObject(bucket, key);
+  }
+
+  /**
+   * Deletes the objects with multi-object delete requests of at most
+   * {@value #MAX_KEYS_PER_DELETE} keys each.
+   */
+  @Override
+  public void delete(String bucket, List<String> keys) {
+    List<KeyVersion> versions = keys.stream().map(KeyVersion::new).toList();
+    for (int start = 0; start < versions.size(); start += MAX_KEYS_PER_DELETE) {
+      s3Client.deleteObjects(new DeleteObjectsRequest(bucket)
+          .withKeys(versions.subList(start, Math.min(start + MAX_KEYS_PER_DELETE,
+              versions.size())))
+          .withQuiet(true));
+    }
+  }
+
+  @Override
+  public String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn) {
+    return s3PreSigner.presignGet(bucket, key, signedAt, expiresIn);
+  }
+}
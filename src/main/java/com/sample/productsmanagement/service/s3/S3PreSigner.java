@@ -0,0 +1,273 @@
+package com.sample.productsmanagement.service.s3;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds SigV4 query-string presigned GET URLs without going through the SDK request pipeline.
+ * The output matches {@code AmazonS3#generatePresignedUrl} for the same instant and expiry.
+ *
+ * <p>The derived signing key only changes once a day, so it is cached per date/region/service.
+ * {@link Mac}, {@link MessageDigest} and the string buffers are reused per thread.
+ */
+@Component
+@ConditionalOnProperty(name = "product.storage.type", havingValue = "s3", matchIfMissing = true)
+public class S3PreSigner {
+
+  private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+  private static final String SERVICE = "s3";
+  private static final String TERMINATOR = "aws4_request";
+  private static final String HMAC_SHA256 = "HmacSHA256";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter
+      .ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+  private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(S3PreSigner::newMac);
+  private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (GeneralSecurityException exception) {
+      throw new IllegalStateException(exception);
+    }
+  });
+  private static final ThreadLocal<StringBuilder> CANONICAL = ThreadLocal.withInitial(
+      () -> new StringBuilder(512));
+  private static final ThreadLocal<StringBuilder> OUTPUT = ThreadLocal.withInitial(
+      () -> new StringBuilder(512));
+  private static final ThreadLocal<byte[]> BYTES = ThreadLocal.withInitial(() -> new byte[512]);
+  private static final ThreadLocal<Signer> SIGNER = ThreadLocal.withInitial(Signer::new);
+
+  private final String accessKey;
+  private final byte[] secretKey;
+  private final String region;
+  private final String scheme;
+  private final String endpointHost;
+  private final String endpointAuthority;
+  private final boolean ipEndpoint;
+  private final Clock clock;
+
+  private volatile SigningKey signingKey;
+
+  private record SigningKey(String date, byte[] key) {
+  }
+
+  /**
+   * Per-thread {@link Mac} that stays initialised with the current signing key, so the common
+   * case only pays for the final HMAC and not for re-keying.
+   */
+  private static final class Signer {
+    private final Mac mac = newMac();
+    private byte[] key;
+
+    byte[] sign(byte[] signingKey, byte[] data, int length) {
+      if (key != signingKey) {
+        init(mac, signingKey);
+        key = signingKey;
+      }
+      mac.update(data, 0, length);
+      return mac.doFinal();
+    }
+  }
+
+  @Autowired
+  public S3PreSigner(@Value("${aws.access.key}") String accessKey,
+      @Value("${aws.secret.key}") String secretKey,
+      @Value("${aws.s3.region}") String region,
+      @Value("${aws.s3.endpoint}") String endpoint) {
+    this(accessKey, secretKey, region, endpoint, Clock.systemUTC());
+  }
+
+  public S3PreSigner(String accessKey, String secretKey, String region, String endpoint,
+      Clock clock) {
+    URI endpointUri = URI.create(endpoint.contains("://") ? endpoint : "https://" + endpoint);
+    this.accessKey = accessKey;
+    this.secretKey = ("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8);
+    this.region = region;
+    this.scheme = endpointUri.getScheme();
+    this.endpointHost = endpointUri.getHost();
+    this.endpointAuthority = endpointUri.getPort() == -1 || isDefaultPort(endpointUri)
+        ? endpointHost : endpointHost + ":" + endpointUri.getPort();
+    this.ipEndpoint = endpointHost.chars().allMatch(c -> c == '.' || (c >= '0' && c <= '9'));
+    this.clock = clock;
+  }
+
+  public String presignGet(String bucket, String key, Duration expiresIn) {
+    return presignGet(bucket, key, clock.instant(), expiresIn);
+  }
+
+  public String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn) {
+    String amzDate = AMZ_DATE.format(signedAt);
+    String date = amzDate.substring(0, 8);
+    boolean virtualHosted = !ipEndpoint && isDnsCompatible(bucket);
+    String host = virtualHosted ? bucket + "." + endpointAuthority : endpointAuthority;
+    long expires = expiresIn.getSeconds();
+
+    StringBuilder canonical = CANONICAL.get();
+    canonical.setLength(0);
+    canonical.append("GET\n");
+    int pathStart = canonical.length();
+    canonical.append('/');
+    if (!virtualHosted) {
+      appendEncoded(canonical, bucket, true).append('/');
+    }
+    appendEncoded(canonical, key, true);
+    int pathEnd = canonical.length();
+    canonical.append('\n');
+    canonical.append("X-Amz-Algorithm=").append(ALGORITHM).append("&X-Amz-Credential=");
+    int credentialStart = canonical.length();
+    appendCredential(canonical, date);
+    int credentialEnd = canonical.length();
+    canonical.append("&X-Amz-Date=").append(amzDate)
+        .append("&X-Amz-Expires=").append(expires)
+        .append("&X-Amz-SignedHeaders=host\n")
+        .append("host:").append(host).append("\n\nhost\nUNSIGNED-PAYLOAD");
+
+    MessageDigest digest = SHA256.get();
+    digest.update(ascii(canonical), 0, canonical.length());
+    byte[] canonicalHash = digest.digest();
+
+    StringBuilder output = OUTPUT.get();
+    output.setLength(0);
+    output.append(ALGORITHM).append('\n').append(amzDate).append('\n')
+        .append(date).append('/').append(region).append('/').append(SERVICE).append('/')
+        .append(TERMINATOR).append('\n');
+    appendHex(output, canonicalHash);
+    Signer signer = SIGNER.get();
+    byte[] signature = signer.sign(signingKey(date), ascii(output), output.length());
+
+    output.setLength(0);
+    output.append(scheme).append("://").append(host)
+        .append(canonical, pathStart, pathEnd)
+        .append("?X-Amz-Algorithm=").append(ALGORITHM)
+        .append("&X-Amz-Date=").append(amzDate)
+        .append("&X-Amz-SignedHeaders=host")
+        .append("&X-Amz-Expires=").append(expires)
+        .append("&X-Amz-Credential=").append(canonical, credentialStart, credentialEnd)
+        .append("&X-Amz-Signature=");
+    appendHex(output, signature);
+
+    return output.toString();
+  }
+
+  private byte[] signingKey(String date) {
+    SigningKey cached = signingKey;
+    if (cached != null && cached.date().equals(date)) {
+      return cached.key();
+    }
+
+    byte[] key = hmac(secretKey, date.getBytes(StandardCharsets.UTF_8));
+    key = hmac(key, region.getBytes(StandardCharsets.UTF_8));
+    key = hmac(key, SERVICE.getBytes(StandardCharsets.UTF_8));
+    key = hmac(key, TERMINATOR.getBytes(StandardCharsets.UTF_8));
+    signingKey = new SigningKey(date, key);
+
+    return key;
+  }
+
+  private void appendCredential(StringBuilder builder, String date) {
+    appendEncoded(builder, accessKey, false).append("%2F").append(date)
+        .append("%2F").append(region).append("%2F").append(SERVICE)
+        .append("%2F").append(TERMINATOR);
+  }
+
+  private static byte[] hmac(byte[] key, byte[] data) {
+    Mac mac = MAC.get();
+    init(mac, key);
+    return mac.doFinal(data);
+  }
+
+  private static Mac newMac() {
+    try {
+      return Mac.getInstance(HMAC_SHA256);
+    } catch (GeneralSecurityException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static void init(Mac mac, byte[] key) {
+    try {
+      mac.init(new SecretKeySpec(key, HMAC_SHA256));
+    } catch (GeneralSecurityException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  /**
+   * Copies an ASCII-only buffer into the per-thread byte scratch array. Everything that goes
+   * into the canonical request and string to sign is percent-encoded, so this is lossless.
+   */
+  private static byte[] ascii(StringBuilder value) {
+    byte[] bytes = BYTES.get();
+    if (bytes.length < value.length()) {
+      bytes = new byte[Math.max(value.length(), bytes.length * 2)];
+      BYTES.set(bytes);
+    }
+    for (int i = 0; i < value.length(); i++) {
+      bytes[i] = (byte) value.charAt(i);
+    }
+    return bytes;
+  }
+
+  private static void appendHex(StringBuilder builder, byte[] bytes) {
+    for (byte value : bytes) {
+      builder.append(HEX[(value >> 4) & 0xF]).append(HEX[value & 0xF]);
+    }
+  }
+
+  private static StringBuilder appendEncoded(StringBuilder builder, String value,
+      boolean keepSlash) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (isUnreserved(c) || (keepSlash && c == '/')) {
+        builder.append(c);
+      } else if (c < 0x80) {
+        appendPercent(builder, c);
+      } else {
+        int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+        for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+          appendPercent(builder, b);
+        }
+        i = end - 1;
+      }
+    }
+    return builder;
+  }
+
+  private static void appendPercent(StringBuilder builder, int value) {
+    builder.append('%')
+        .append(Character.toUpperCase(HEX[(value >> 4) & 0xF]))
+        .append(Character.toUpperCase(HEX[value & 0xF]));
+  }
+
+  private static boolean isUnreserved(char c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '_' || c == '.' || c == '~';
+  }
+
+  private static boolean isDefaultPort(URI uri) {
+    return ("https".equals(uri.getScheme()) && uri.getPort() == 443)
+        || ("http".equals(uri.getScheme()) && uri.getPort() == 80);
+  }
+
+  private static boolean isDnsCompatible(String bucket) {
+    if (bucket.length() < 3 || bucket.length() > 63 || bucket.contains("..")
+        || bucket.contains(".-") || bucket.contains("-.") || bucket.endsWith("-")) {
+      return false;
+    }
+    return bucket.chars().allMatch(c -> (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+        || c == '.' || c == '-');
+  }
+}
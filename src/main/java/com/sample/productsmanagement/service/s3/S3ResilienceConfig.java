@@ -0,0 +1,90 @@
+package com.sample.productsmanagement.service.s3;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedThreadPoolBulkheadMetrics;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class S3ResilienceConfig {
+
+  private static final String NAME = "s3";
+
+  @Value("${aws.s3.bulkhead.max-threads:16}")
+  private int maxThreads;
+
+  @Value("${aws.s3.bulkhead.queue-capacity:64}")
+  private int queueCapacity;
+
+  @Value("${aws.s3.timeout:5s}")
+  private Duration timeout;
+
+  @Value("${aws.s3.circuit-breaker.failure-rate-threshold:50}")
+  private float failureRateThreshold;
+
+  @Value("${aws.s3.circuit-breaker.slow-call-threshold:2s}")
+  private Duration slowCallThreshold;
+
+  @Value("${aws.s3.circuit-breaker.wait-in-open-state:30s}")
+  private Duration waitInOpenState;
+
+  @Value("${aws.s3.circuit-breaker.sliding-window-size:20}")
+  private int slidingWindowSize;
+
+  @Bean
+  public CircuitBreaker s3CircuitBreaker(MeterRegistry meterRegistry) {
+    CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+        .failureRateThreshold(failureRateThreshold)
+        .slowCallRateThreshold(failureRateThreshold)
+        .slowCallDurationThreshold(slowCallThreshold)
+        .slidingWindowSize(slidingWindowSize)
+        .minimumNumberOfCalls(Math.min(slidingWindowSize, 10))
+        .waitDurationInOpenState(waitInOpenState)
+        .ignoreExceptions(BulkheadFullException.class)
+        .build();
+    CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+
+    return registry.circuitBreaker(NAME);
+  }
+
+  @Bean(destroyMethod = "close")
+  public ThreadPoolBulkhead s3Bulkhead(MeterRegistry meterRegistry) {
+    ThreadPoolBulkheadConfig config = ThreadPoolBulkheadConfig.custom()
+        .coreThreadPoolSize(Math.max(1, maxThreads / 2))
+        .maxThreadPoolSize(maxThreads)
+        .queueCapacity(queueCapacity)
+        .build();
+    ThreadPoolBulkheadRegistry registry = ThreadPoolBulkheadRegistry.of(config);
+    TaggedThreadPoolBulkheadMetrics.ofThreadPoolBulkheadRegistry(registry).bindTo(meterRegistry);
+    ThreadPoolBulkhead bulkhead = registry.bulkhead(NAME);
+
+    Counter rejected = Counter.builder("s3.bulkhead.rejected")
+        .description("S3 calls rejected because the bulkhead queue was full")
+        .register(meterRegistry);
+    bulkhead.getEventPublisher().onCallRejected(event -> rejected.increment());
+
+    return bulkhead;
+  }
+
+  @Bean
+  public TimeLimiter s3TimeLimiter() {
+    return TimeLimiter.of(NAME, TimeLimiterConfig.custom()
+        .timeoutDuration(timeout)
+        .cancelRunningFuture(true)
+        .build());
+  }
+}
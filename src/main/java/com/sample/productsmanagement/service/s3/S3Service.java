@@ -1,48 +1,201 @@
 package com.sample.productsmanagement.service.s3;
 
-import com.amazonaws.HttpMethod;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import java.io.ByteArrayInputStream;
+import com.sample.productsmanagement.service.s3.S3CallExecutor.AsyncCall;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import com.sample.productsmanagement.service.storage.StoredObject;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+/**
+ * Stores product images in the configured {@link ObjectStorage}, S3 unless
+ * {@code product.storage.type} selects a local backend. Spreads keys over the image buckets and
+ * runs every storage call through {@link S3CallExecutor}, so timeouts and the circuit breaker
+ * apply whatever the backend.
+ */
 @Service
 public class S3Service {
 
+  private static final Duration PRE_SIGNED_URL_EXPIRATION = Duration.ofMinutes(10);
+  private static final int MAX_KEYS_PER_DELETE = 1000;
+
+  @Autowired
+  private ObjectStorage objectStorage;
+
   @Autowired
-  private AmazonS3 s3Client;
+  private S3CallExecutor s3CallExecutor;
 
   @Value("${aws.s3.bucket}")
   private String bucketName;
 
+  @Value("${aws.s3.buckets:}")
+  private List<String> buckets = List.of();
+
+  /**
+   * Buckets images are spread over, {@code aws.s3.buckets} when set and otherwise only
+   * {@code aws.s3.bucket}.
+   */
+  public List<String> getBuckets() {
+    return buckets == null || buckets.isEmpty() ? List.of(bucketName) : buckets;
+  }
+
+  /**
+   * Bucket holding the given key. The choice depends on the key alone, so every instance finds
+   * an object without storing its bucket, and changing {@code aws.s3.buckets} requires running
+   * the image key migration.
+   */
+  public String bucketFor(String key) {
+    List<String> targets = getBuckets();
+    return targets.size() == 1 ? targets.get(0)
+        : targets.get(Math.floorMod(key.hashCode() * 0x9E3779B9, targets.size()));
+  }
+
   public String uploadFile(String filename, MultipartFile file) throws IOException {
-    ByteArrayInputStream inputStream = new ByteArrayInputStream(file.getBytes());
-    s3Client.putObject(bucketName, filename, inputStream, null);
+    try (InputStream inputStream = file.getInputStream()) {
+      uploadFile(filename, inputStream, file.getSize(), file.getContentType());
+    }
     return this.getPreSignedUrl(filename);
   }
 
+  /**
+   * Starts uploading the file and returns without waiting for the storage, completing with the
+   * presigned URL of the object once it is stored.
+   */
+  public AsyncCall<String> uploadFileAsync(String filename, MultipartFile file)
+      throws IOException {
+    return uploadFileAsync(filename, file.getInputStream(), file.getSize(),
+        file.getContentType());
+  }
+
+  /**
+   * Streams an object of known size to the storage without buffering it in memory first.
+   */
+  public void uploadFile(String filename, InputStream inputStream, long size,
+      String contentType) {
+    s3CallExecutor.execute(() -> objectStorage.put(bucketFor(filename), filename, inputStream,
+        size, contentType));
+  }
+
+  /**
+   * Streams an object of known size like {@link #uploadFile(String, InputStream, long,
+   * String)} without waiting for it, and closes the stream once the upload has finished, which
+   * may be after its result timed out.
+   */
+  public AsyncCall<String> uploadFileAsync(String filename, InputStream inputStream,
+      long size, String contentType) {
+    AsyncCall<Void> upload = s3CallExecutor.executeAsync(() -> {
+      objectStorage.put(bucketFor(filename), filename, inputStream, size, contentType);
+      return null;
+    });
+    upload.finished().whenComplete((result, error) -> closeQuietly(inputStream));
+    return new AsyncCall<>(upload.result().thenApply(result -> this.getPreSignedUrl(filename)),
+        upload.finished());
+  }
+
+  private static void closeQuietly(InputStream inputStream) {
+    try {
+      inputStream.close();
+    } catch (IOException exception) {
+      // the upload outcome is already decided
+    }
+  }
+
   public String getPreSignedUrl(String filename) {
-    if (Strings.isEmpty(filename)) {
+    if (Strings.isEmpty(filename) || !s3CallExecutor.isAvailable()) {
       return null;
     }
 
-    Date expirationDate = Date.from(Instant.now().plus(Duration.ofMinutes(10)));
-    return s3Client.generatePresignedUrl(bucketName, filename, expirationDate, HttpMethod.GET)
-        .toString();
+    return objectStorage.presignGet(bucketFor(filename), filename, Instant.now(),
+        PRE_SIGNED_URL_EXPIRATION);
+  }
+
+  /**
+   * Presigns all keys with one availability check and one signing time. The URLs are returned in
+   * the order of the keys, {@code null} for empty keys or when S3 is unavailable.
+   */
+  public List<String> getPreSignedUrls(List<String> filenames) {
+    List<String> urls = new ArrayList<>(filenames.size());
+    boolean available = s3CallExecutor.isAvailable();
+    Instant signedAt = Instant.now();
+    for (String filename : filenames) {
+      urls.add(Strings.isEmpty(filename) || !available ? null : objectStorage.presignGet(
+          bucketFor(filename), filename, signedAt, PRE_SIGNED_URL_EXPIRATION));
+    }
+    return urls;
+  }
+
+  /**
+   * Downloads the object into the target file, or returns empty when there is no object with
+   * the key.
+   */
+  public Optional<StoredObject> downloadFile(String fileName, Path target) {
+    return s3CallExecutor.execute(() -> objectStorage.download(bucketFor(fileName), fileName,
+        target));
+  }
+
+  public boolean fileExists(String fileName) {
+    return s3CallExecutor.execute(() -> objectStorage.exists(bucketFor(fileName), fileName));
+  }
+
+  /**
+   * Copies an object to the given key, in the bucket that key routes to.
+   */
+  public void copyFile(String sourceBucket, String sourceKey, String targetKey) {
+    s3CallExecutor.execute(() -> objectStorage.copy(sourceBucket, sourceKey,
+        bucketFor(targetKey), targetKey));
+  }
+
+  /**
+   * Lists one page of objects of the bucket in key order, starting after {@code startAfter} for
+   * the first page and continuing from {@code continuationToken} for the following ones.
+   */
+  public ObjectListing listFiles(String bucket, String startAfter, String continuationToken,
+      int maxKeys) {
+    return s3CallExecutor.execute(() -> objectStorage.list(bucket, startAfter,
+        continuationToken, maxKeys));
   }
 
   public void deleteFile(String fileName) {
     if (Strings.isNotEmpty(fileName)) {
-      s3Client.deleteObject(bucketName, fileName);
+      s3CallExecutor.execute(() -> objectStorage.delete(bucketFor(fileName), fileName));
+    }
+  }
+
+  /**
+   * Deletes the given objects in batches of at most {@value #MAX_KEYS_PER_DELETE} keys, one
+   * multi-object delete request each on S3. Missing keys are not an error.
+   */
+  public void deleteFiles(List<String> fileNames) {
+    fileNames.stream()
+        .filter(Strings::isNotEmpty)
+        .collect(Collectors.groupingBy(this::bucketFor))
+        .forEach(this::deleteFiles);
+  }
+
+  /**
+   * Deletes the given objects from one bucket, whichever bucket their keys route to.
+   */
+  public void deleteFiles(String bucket, List<String> fileNames) {
+    List<String> keys = fileNames.stream()
+        .filter(Strings::isNotEmpty)
+        .toList();
+    for (int start = 0; start < keys.size(); start += MAX_KEYS_PER_DELETE) {
+      List<String> batch = keys.subList(start, Math.min(start + MAX_KEYS_PER_DELETE,
+          keys.size()));
+      s3CallExecutor.execute(() -> objectStorage.delete(bucket, batch));
     }
   }
 }
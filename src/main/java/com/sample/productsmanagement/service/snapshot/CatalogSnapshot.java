@@ -0,0 +1,262 @@
+package com.sample.productsmanagement.service.snapshot;
+
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.model.Product;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only products file, mapped into memory and read without copying it onto the heap. The
+ * layout is fixed so a product is found by position alone:
+ *
+ * <pre>
+ * header   magic, version, product count, padding, change cursor     24 bytes
+ * ids      product ids in ascending order                            4 bytes each
+ * records  price, quantity, string refs, image fields               56 bytes each
+ * strings  UTF-8 names, image locations and formats
+ * </pre>
+ *
+ * <p>The record of the id at index {@code i} is the {@code i}-th one, so looking up a product is
+ * a binary search over the ids and one read of its record and strings. Absent strings and image
+ * fields are stored as {@code -1}. A file is limited to 2 GB, the size of one mapping.
+ */
+final class CatalogSnapshot {
+
+  private static final int MAGIC = 0x50534e50;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 24;
+  private static final int RECORD_SIZE = 56;
+
+  private final Path file;
+  private final ByteBuffer buffer;
+  private final int count;
+  private final long changeCursor;
+  private final int recordsOffset;
+  private final int stringsOffset;
+
+  private CatalogSnapshot(Path file, ByteBuffer buffer) {
+    this.file = file;
+    this.buffer = buffer;
+    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      throw new IllegalStateException(String.format("%s is not a catalog snapshot", file));
+    }
+    this.count = buffer.getInt(8);
+    this.changeCursor = buffer.getLong(16);
+    this.recordsOffset = recordsOffset(count);
+    this.stringsOffset = recordsOffset + count * RECORD_SIZE;
+  }
+
+  static CatalogSnapshot open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new CatalogSnapshot(file, buffer);
+    }
+  }
+
+  private static int recordsOffset(int count) {
+    // records start on an 8 byte boundary so the image size and version never straddle one
+    return (HEADER_SIZE + count * Integer.BYTES + 7) & ~7;
+  }
+
+  Path file() {
+    return file;
+  }
+
+  int size() {
+    return count;
+  }
+
+  /**
+   * Id of the last change applied to the products in this file.
+   */
+  long changeCursor() {
+    return changeCursor;
+  }
+
+  /**
+   * Reads the product into a new, detached instance, or returns {@code null} if the file has no
+   * product with the id.
+   */
+  Product find(int id) {
+    int low = 0;
+    int high = count - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int middleId = buffer.getInt(HEADER_SIZE + middle * Integer.BYTES);
+      if (middleId < id) {
+        low = middle + 1;
+      } else if (middleId > id) {
+        high = middle - 1;
+      } else {
+        return read(id, recordsOffset + middle * RECORD_SIZE);
+      }
+    }
+    return null;
+  }
+
+  private Product read(int id, int record) {
+    ImageMetadata image = null;
+    String format = string(record + 24);
+    if (format != null) {
+      int width = buffer.getInt(record + 32);
+      int height = buffer.getInt(record + 36);
+      long size = buffer.getLong(record + 40);
+      long version = buffer.getLong(record + 48);
+      image = new ImageMetadata(format, width < 0 ? null : width, height < 0 ? null : height,
+          size < 0 ? null : size, version < 0 ? null : version);
+    }
+    return new Product(id, string(record + 8), buffer.getInt(record),
+        buffer.getInt(record + 4), string(record + 16), image, false, null);
+  }
+
+  private String string(int reference) {
+    int offset = buffer.getInt(reference);
+    if (offset < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[buffer.getInt(reference + 4)];
+    buffer.get(stringsOffset + offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes a snapshot from products added in ascending id order. Ids, records and strings are
+   * streamed to separate part files next to the target, which are joined into the target once
+   * the count is known, so writing holds no product in memory.
+   */
+  static final class Writer implements Closeable {
+
+    private final Path target;
+    private final Path ids;
+    private final Path records;
+    private final Path strings;
+    private final DataOutputStream idsOutput;
+    private final DataOutputStream recordsOutput;
+    private final DataOutputStream stringsOutput;
+    private int count;
+    private long stringsSize;
+    private int lastId = Integer.MIN_VALUE;
+
+    Writer(Path target) throws IOException {
+      this.target = target;
+      this.ids = part(".ids");
+      this.records = part(".records");
+      this.strings = part(".strings");
+      this.idsOutput = output(ids);
+      this.recordsOutput = output(records);
+      this.stringsOutput = output(strings);
+    }
+
+    private Path part(String suffix) {
+      return target.resolveSibling(target.getFileName() + suffix);
+    }
+
+    private static DataOutputStream output(Path part) throws IOException {
+      return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(part)));
+    }
+
+    void add(Product product) throws IOException {
+      if (product.getId() <= lastId) {
+        throw new IllegalStateException(String.format(
+            "Product %s added after product %s, products must be added in ascending id order",
+            product.getId(), lastId));
+      }
+      lastId = product.getId();
+
+      ImageMetadata image = product.getImage();
+      boolean hasImage = image != null && image.getFormat() != null;
+      idsOutput.writeInt(product.getId());
+      recordsOutput.writeInt(product.getPrice());
+      recordsOutput.writeInt(product.getQuantity());
+      writeString(product.getName());
+      writeString(product.getImageLocation());
+      writeString(hasImage ? image.getFormat() : null);
+      recordsOutput.writeInt(hasImage && image.getWidth() != null ? image.getWidth() : -1);
+      recordsOutput.writeInt(hasImage && image.getHeight() != null ? image.getHeight() : -1);
+      recordsOutput.writeLong(hasImage && image.getSize() != null ? image.getSize() : -1);
+      recordsOutput.writeLong(hasImage && image.getVersion() != null ? image.getVersion() : -1);
+      count++;
+
+      if ((long) recordsOffset(count) + (long) count * RECORD_SIZE + stringsSize
+          > Integer.MAX_VALUE) {
+        throw new IllegalStateException(String.format(
+            "Catalog snapshot exceeds 2 GB after %s products", count));
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      if (value == null) {
+        recordsOutput.writeInt(-1);
+        recordsOutput.writeInt(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      recordsOutput.writeInt((int) stringsSize);
+      recordsOutput.writeInt(bytes.length);
+      stringsOutput.write(bytes);
+      stringsSize += bytes.length;
+    }
+
+    /**
+     * Joins the parts into the target, moved into place only once complete, and maps it.
+     */
+    CatalogSnapshot finish(long changeCursor) throws IOException {
+      idsOutput.close();
+      recordsOutput.close();
+      stringsOutput.close();
+
+      Path temporary = part(".tmp");
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+            .putInt(MAGIC)
+            .putInt(VERSION)
+            .putInt(count)
+            .putInt(0)
+            .putLong(changeCursor)
+            .flip();
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        append(channel, ids);
+        channel.position(recordsOffset(count));
+        append(channel, records);
+        append(channel, strings);
+        channel.force(true);
+      }
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return open(target);
+    }
+
+    private static void append(FileChannel channel, Path part) throws IOException {
+      try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+        long position = 0;
+        while (position < source.size()) {
+          position += source.transferTo(position, source.size() - position, channel);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      idsOutput.close();
+      recordsOutput.close();
+      stringsOutput.close();
+      Files.deleteIfExists(ids);
+      Files.deleteIfExists(records);
+      Files.deleteIfExists(strings);
+      Files.deleteIfExists(part(".tmp"));
+    }
+  }
+}
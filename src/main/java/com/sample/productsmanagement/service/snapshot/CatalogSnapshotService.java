@@ -0,0 +1,251 @@
+package com.sample.productsmanagement.service.snapshot;
+
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.ProductRow;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves product details from a memory-mapped snapshot of every product, for read-heavy nodes
+ * that should not query the database on a lookup. Enabled with {@code product.snapshot.enabled}.
+ *
+ * <p>The snapshot is rebuilt every {@code product.snapshot.rebuild-interval} into a new file
+ * while the current one keeps serving, and swapped in once complete. In between, products
+ * changed according to the change feed are reloaded every {@code product.snapshot.refresh-interval}
+ * into a small overlay that lookups check first, with deletes kept as tombstones. Like the id
+ * filter, the feed cursor only moves past changes older than the commit window, so a change
+ * whose transaction was still open on one refresh is read again on the next. A rebuild is
+ * brought forward once the overlay grows past {@code product.snapshot.max-overlay-size}.
+ */
+@Service
+@ConditionalOnProperty(name = "product.snapshot.enabled", havingValue = "true")
+public class CatalogSnapshotService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+  private static final String FILE_PREFIX = "catalog-";
+
+  private static final Product DELETED = new Product();
+
+  /**
+   * Snapshot file and the products changed since it was written, swapped together.
+   */
+  private record View(CatalogSnapshot snapshot, Map<Integer, Product> overlay) {
+  }
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private ProductChangeRepository productChangeRepository;
+
+  @Autowired
+  private ProductShards productShards;
+
+  @Value("${product.snapshot.directory:${java.io.tmpdir}/product-snapshot}")
+  private Path directory;
+
+  @Value("${product.snapshot.page-size:1000}")
+  private int pageSize;
+
+  @Value("${product.snapshot.commit-window:PT30S}")
+  private Duration commitWindow;
+
+  @Value("${product.snapshot.max-overlay-size:10000}")
+  private int maxOverlaySize;
+
+  private volatile View view;
+
+  private long changeCursor;
+
+  @PostConstruct
+  void init() throws IOException {
+    Files.createDirectories(directory);
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.toList()) {
+        if (file.getFileName().toString().startsWith(FILE_PREFIX)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether the first snapshot has been built. Until then lookups go to the database.
+   */
+  public boolean isLoaded() {
+    return view != null;
+  }
+
+  /**
+   * Looks the product up without querying the database. Every call returns a new instance, which
+   * the caller may modify.
+   */
+  public Optional<Product> find(int id) {
+    View current = view;
+    if (current == null) {
+      throw new IllegalStateException("The catalog snapshot has not been built yet");
+    }
+    Product changed = current.overlay().get(id);
+    if (changed == DELETED) {
+      return Optional.empty();
+    }
+    if (changed != null) {
+      return Optional.of(changed.toBuilder().build());
+    }
+    return Optional.ofNullable(current.snapshot().find(id));
+  }
+
+  /**
+   * Writes a new snapshot file from the product table and swaps it in once the changes made
+   * during the scan have been applied to its overlay.
+   */
+  @Scheduled(fixedDelayString = "${product.snapshot.rebuild-interval:PT1H}",
+      initialDelayString = "${product.snapshot.rebuild-initial-delay:PT0S}")
+  public synchronized void rebuild() {
+    long cursor = productChangeRepository.findLastIdCreatedBefore(
+        Instant.now().minus(commitWindow));
+    Path file = directory.resolve(FILE_PREFIX + System.currentTimeMillis());
+    CatalogSnapshot snapshot;
+    try (CatalogSnapshot.Writer writer = new CatalogSnapshot.Writer(file)) {
+      int lastId = 0;
+      List<ProductRow> rows;
+      do {
+        int after = lastId;
+        rows = ProductShards.merge(productShards.scatter(
+                shard -> productRepository.findRowsAfter(after, pageSize)),
+            Comparator.comparingInt(ProductRow::getId), pageSize);
+        for (ProductRow row : rows) {
+          writer.add(toProduct(row));
+        }
+        if (!rows.isEmpty()) {
+          lastId = rows.get(rows.size() - 1).getId();
+        }
+      } while (rows.size() == pageSize);
+      snapshot = writer.finish(cursor);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+
+    View next = new View(snapshot, new ConcurrentHashMap<>());
+    changeCursor = cursor;
+    try {
+      catchUp(next);
+    } catch (RuntimeException exception) {
+      delete(file);
+      throw exception;
+    }
+    View previous = view;
+    view = next;
+    if (previous != null) {
+      delete(previous.snapshot().file());
+    }
+    LOGGER.info("Rebuilt catalog snapshot with {} products as of change {}", snapshot.size(),
+        snapshot.changeCursor());
+  }
+
+  @Scheduled(fixedDelayString = "${product.snapshot.refresh-interval:PT1S}")
+  public synchronized void refresh() {
+    View current = view;
+    if (current == null) {
+      return;
+    }
+    if (current.overlay().size() > maxOverlaySize) {
+      rebuild();
+      return;
+    }
+    catchUp(current);
+  }
+
+  /**
+   * Reloads the products changed since the change cursor into the overlay, or marks them deleted
+   * when they no longer exist.
+   */
+  private void catchUp(View target) {
+    Instant settledBefore = Instant.now().minus(commitWindow);
+    long readCursor = changeCursor;
+    boolean settled = true;
+    List<ProductChange> changes;
+    do {
+      changes = productChangeRepository.findByIdGreaterThanOrderByIdAsc(readCursor,
+          Limit.of(pageSize));
+      if (changes.isEmpty()) {
+        break;
+      }
+      Set<Integer> changedIds = changes.stream()
+          .map(ProductChange::getProductId)
+          .collect(Collectors.toSet());
+      Set<Integer> existingIds = new HashSet<>();
+      for (ProductRow row : findRowsById(changedIds)) {
+        target.overlay().put(row.getId(), toProduct(row));
+        existingIds.add(row.getId());
+      }
+      for (int productId : changedIds) {
+        if (!existingIds.contains(productId)) {
+          target.overlay().put(productId, DELETED);
+        }
+      }
+
+      for (ProductChange change : changes) {
+        readCursor = change.getId();
+        settled = settled && !change.getCreatedAt().isAfter(settledBefore);
+        if (settled) {
+          changeCursor = change.getId();
+        }
+      }
+    } while (changes.size() == pageSize);
+  }
+
+  private List<ProductRow> findRowsById(Set<Integer> ids) {
+    Map<String, List<Integer>> idsByShard = productShards.groupByShard(ids);
+    return productShards.scatter(shard -> {
+      List<Integer> shardIds = idsByShard.getOrDefault(shard, List.of());
+      return shardIds.isEmpty() ? List.<ProductRow>of()
+          : productRepository.findRowsById(shardIds);
+    }).stream().flatMap(List::stream).toList();
+  }
+
+  private static Product toProduct(ProductRow row) {
+    ImageMetadata image = row.getImageFormat() == null ? null
+        : new ImageMetadata(row.getImageFormat(), row.getImageWidth(), row.getImageHeight(),
+            row.getImageSize(), row.getImageVersion());
+    return new Product(row.getId(), row.getName(), row.getPrice(), row.getQuantity(),
+        row.getImageLocation(), image, false, null);
+  }
+
+  private static void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException exception) {
+      // the mapping stays valid after the delete, a leftover file is removed on the next start
+      LOGGER.warn("Could not delete the previous catalog snapshot {}", file, exception);
+    }
+  }
+}
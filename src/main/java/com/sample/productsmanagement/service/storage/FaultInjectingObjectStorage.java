@@ -0,0 +1,106 @@
+package com.sample.productsmanagement.service.storage;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Delays every call to the wrapped storage by the configured latency plus a random jitter, and
+ * fails the given fraction of them with {@link StorageUnavailableException} before they reach
+ * it, to measure the rest of the application against a realistic or degraded object store.
+ * Presigning is local work in every backend and is left alone.
+ */
+public class FaultInjectingObjectStorage implements ObjectStorage {
+
+  private final ObjectStorage delegate;
+  private final Duration latency;
+  private final Duration latencyJitter;
+  private final double failureRate;
+
+  public FaultInjectingObjectStorage(ObjectStorage delegate, Duration latency,
+      Duration latencyJitter, double failureRate) {
+    if (failureRate < 0 || failureRate > 1) {
+      throw new IllegalArgumentException(String.format(
+          "Failure rate must be between 0 and 1, was %s", failureRate));
+    }
+    this.delegate = delegate;
+    this.latency = latency;
+    this.latencyJitter = latencyJitter;
+    this.failureRate = failureRate;
+  }
+
+  private <T> T inject(String operation, Supplier<T> call) {
+    long delayNanos = latency.toNanos() + (latencyJitter.isZero() ? 0
+        : ThreadLocalRandom.current().nextLong(latencyJitter.toNanos() + 1));
+    if (delayNanos > 0) {
+      try {
+        Thread.sleep(Duration.ofNanos(delayNanos));
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+        throw new StorageUnavailableException(String.format("Storage %s interrupted",
+            operation), exception);
+      }
+    }
+    if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+      throw new StorageUnavailableException(String.format("Injected storage %s failure",
+          operation), null);
+    }
+    return call.get();
+  }
+
+  private void inject(String operation, Runnable call) {
+    inject(operation, () -> {
+      call.run();
+      return null;
+    });
+  }
+
+  @Override
+  public void put(String bucket, String key, InputStream content, long size,
+      String contentType) {
+    inject("put", () -> delegate.put(bucket, key, content, size, contentType));
+  }
+
+  @Override
+  public Optional<StoredObject> download(String bucket, String key, Path target) {
+    return inject("download", () -> delegate.download(bucket, key, target));
+  }
+
+  @Override
+  public boolean exists(String bucket, String key) {
+    return inject("exists", () -> delegate.exists(bucket, key));
+  }
+
+  @Override
+  public void copy(String sourceBucket, String sourceKey, String targetBucket,
+      String targetKey) {
+    inject("copy", () -> delegate.copy(sourceBucket, sourceKey, targetBucket, targetKey));
+  }
+
+  @Override
+  public ObjectListing list(String bucket, String startAfter, String continuationToken,
+      int maxKeys) {
+    return inject("list", () -> delegate.list(bucket, startAfter, continuationToken, maxKeys));
+  }
+
+  @Override
+  public void delete(String bucket, String key) {
+    inject("delete", () -> delegate.delete(bucket, key));
+  }
+
+  @Override
+  public void delete(String bucket, List<String> keys) {
+    inject("delete", () -> delegate.delete(bucket, keys));
+  }
+
+  @Override
+  public String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn) {
+    return delegate.presignGet(bucket, key, signedAt, expiresIn);
+  }
+}
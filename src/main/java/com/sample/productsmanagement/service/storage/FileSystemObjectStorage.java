@@ -0,0 +1,355 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * {@link ObjectStorage} on a local directory, for single-node deployments without S3. Each
+ * bucket is a subdirectory and each key a file under it, with {@code /} in keys creating
+ * subdirectories, so a key cannot also be the prefix of another one.
+ *
+ * <p>Writes go to a temporary file that is moved into place once complete, so readers never see
+ * a partial object. Uploads arrive as streams and are copied into the file through a buffer,
+ * while downloads and copies go file to file, which the kernel does without passing the content
+ * through the heap. The content type is derived from the key's extension and the ETag from the
+ * modification time and size. URLs point at the image proxy.
+ */
+public class FileSystemObjectStorage implements ObjectStorage {
+
+  private static final String UPLOADS = ".uploads";
+  private static final Duration LISTING_REUSE = Duration.ofMinutes(5);
+  private static final int MAX_LISTINGS = 64;
+
+  private final Path directory;
+  private final Path uploads;
+  private final String imageProxyBaseUrl;
+  private final Map<Path, DirectoryListing> listings = Collections.synchronizedMap(
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, DirectoryListing> eldest) {
+          return size() > MAX_LISTINGS;
+        }
+      });
+
+  /**
+   * Directory entry, sorted by its name with a {@code /} appended to directories, which puts it
+   * where its keys are in key order.
+   */
+  private record Entry(String name, boolean directory) {
+    String sortKey() {
+      return directory ? name + "/" : name;
+    }
+  }
+
+  private record DirectoryListing(List<Entry> entries, Instant readAt) {
+  }
+
+  public FileSystemObjectStorage(Path directory, String imageProxyBaseUrl) {
+    this.directory = directory.toAbsolutePath().normalize();
+    this.uploads = this.directory.resolve(UPLOADS);
+    this.imageProxyBaseUrl = imageProxyBaseUrl;
+    try {
+      Files.createDirectories(uploads);
+      try (Stream<Path> files = Files.list(uploads)) {
+        for (Path file : files.toList()) {
+          Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private Path bucketDirectory(String bucket) {
+    if (bucket == null || bucket.isEmpty() || bucket.startsWith(".") || bucket.contains("/")
+        || bucket.contains("\\")) {
+      throw new IllegalArgumentException(String.format("Invalid bucket name %s", bucket));
+    }
+    return directory.resolve(bucket);
+  }
+
+  /**
+   * File of the key, rejecting keys that would resolve outside of the bucket directory.
+   */
+  private Path file(String bucket, String key) {
+    if (!isValidKey(key)) {
+      throw new IllegalArgumentException(String.format("Invalid object key %s", key));
+    }
+    return bucketDirectory(bucket).resolve(key);
+  }
+
+  private static boolean isValidKey(String key) {
+    if (key == null || key.isEmpty() || key.contains("\\")) {
+      return false;
+    }
+    for (String segment : key.split("/", -1)) {
+      if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String keyOf(Path bucketDirectory, Path file) {
+    return bucketDirectory.relativize(file).toString()
+        .replace(file.getFileSystem().getSeparator(), "/");
+  }
+
+  @Override
+  public void put(String bucket, String key, InputStream content, long size,
+      String contentType) {
+    Path target = file(bucket, key);
+    try {
+      Path temporary = Files.createTempFile(uploads, null, null);
+      try {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+          ReadableByteChannel source = Channels.newChannel(content);
+          long position = 0;
+          while (position < size) {
+            long transferred = channel.transferFrom(source, position, size - position);
+            if (transferred == 0) {
+              throw new EOFException(String.format("Object %s ended after %s of %s bytes", key,
+                  position, size));
+            }
+            position += transferred;
+          }
+          channel.force(false);
+        }
+        Files.createDirectories(target.getParent());
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @Override
+  public Optional<StoredObject> download(String bucket, String key, Path target) {
+    if (!isValidKey(key)) {
+      return Optional.empty();
+    }
+    Path source = file(bucket, key);
+    if (!Files.isRegularFile(source)) {
+      return Optional.empty();
+    }
+    try (FileChannel input = FileChannel.open(source, StandardOpenOption.READ)) {
+      BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+      try (FileChannel output = FileChannel.open(target, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+        long size = input.size();
+        long position = 0;
+        while (position < size) {
+          position += input.transferTo(position, size - position, output);
+        }
+      }
+      return Optional.of(storedObject(key, input.size(), attributes));
+    } catch (NoSuchFileException exception) {
+      return Optional.empty();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  private static StoredObject storedObject(String key, long size,
+      BasicFileAttributes attributes) {
+    Instant lastModified = attributes.lastModifiedTime().toInstant();
+    String contentType = MediaTypeFactory.getMediaType(key)
+        .orElse(MediaType.APPLICATION_OCTET_STREAM)
+        .toString();
+    return new StoredObject(size, contentType,
+        Long.toHexString(lastModified.toEpochMilli()) + "-" + Long.toHexString(size),
+        lastModified);
+  }
+
+  @Override
+  public boolean exists(String bucket, String key) {
+    return isValidKey(key) && Files.isRegularFile(file(bucket, key));
+  }
+
+  @Override
+  public void copy(String sourceBucket, String sourceKey, String targetBucket,
+      String targetKey) {
+    Path source = file(sourceBucket, sourceKey);
+    Path target = file(targetBucket, targetKey);
+    try {
+      Path temporary = Files.createTempFile(uploads, null, null);
+      try {
+        Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+        Files.createDirectories(target.getParent());
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  /**
+   * Walks the bucket directory in key order, descending only into the directories that hold keys
+   * after the one to start after, so a page costs about its own size plus the directories on its
+   * path. The continuation token is the last key of the page. Pages after the first reuse the
+   * sorted directory entries read by the previous ones for a few minutes, so a large directory is
+   * read once per listing rather than once per page; objects written in the meantime may be left
+   * out of the listing, as with any listing that starts before they are written.
+   */
+  @Override
+  public ObjectListing list(String bucket, String startAfter, String continuationToken,
+      int maxKeys) {
+    Path bucketDirectory = bucketDirectory(bucket);
+    String after = continuationToken != null ? continuationToken : startAfter;
+    List<ObjectSummary> objects = new ArrayList<>(maxKeys + 1);
+    try {
+      collect(bucket, bucketDirectory, "", after, maxKeys + 1, continuationToken != null,
+          objects);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+
+    if (objects.size() <= maxKeys) {
+      return new ObjectListing(objects, null);
+    }
+    objects = objects.subList(0, maxKeys);
+    return new ObjectListing(objects, objects.get(maxKeys - 1).key());
+  }
+
+  /**
+   * Adds the objects of the directory with keys after {@code after} in key order until there are
+   * {@code limit}.
+   */
+  private void collect(String bucket, Path directory, String prefix, String after, int limit,
+      boolean continuing, List<ObjectSummary> objects) throws IOException {
+    List<Entry> entries = entries(directory, continuing);
+    for (int i = firstEntryAfter(entries, prefix, after);
+        i < entries.size() && objects.size() < limit; i++) {
+      Entry entry = entries.get(i);
+      String key = prefix + entry.sortKey();
+      if (entry.directory()) {
+        collect(bucket, directory.resolve(entry.name()), key, after, limit, continuing, objects);
+      } else if (after == null || ObjectStorage.compareKeys(key, after) > 0) {
+        ObjectSummary summary = summary(bucket, key, directory.resolve(entry.name()));
+        if (summary != null) {
+          objects.add(summary);
+        }
+      }
+    }
+  }
+
+  /**
+   * Index of the first entry that can hold a key after {@code after}: the first one sorting at or
+   * after it, or the directory before that when {@code after} is one of its keys.
+   */
+  private static int firstEntryAfter(List<Entry> entries, String prefix, String after) {
+    if (after == null) {
+      return 0;
+    }
+    int low = 0;
+    int high = entries.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (ObjectStorage.compareKeys(prefix + entries.get(middle).sortKey(), after) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    if (low > 0 && entries.get(low - 1).directory()
+        && after.startsWith(prefix + entries.get(low - 1).sortKey())) {
+      return low - 1;
+    }
+    return low;
+  }
+
+  /**
+   * Entries of the directory in key order, reused from an earlier page of the same listing while
+   * recent.
+   */
+  private List<Entry> entries(Path directory, boolean continuing) throws IOException {
+    Instant now = Instant.now();
+    DirectoryListing listing = listings.get(directory);
+    if (continuing && listing != null && listing.readAt().plus(LISTING_REUSE).isAfter(now)) {
+      return listing.entries();
+    }
+
+    List<Entry> entries;
+    try (Stream<Path> children = Files.list(directory)) {
+      entries = children
+          .map(child -> new Entry(child.getFileName().toString(), Files.isDirectory(child)))
+          .sorted(Comparator.comparing(Entry::sortKey, ObjectStorage::compareKeys))
+          .toList();
+    } catch (NoSuchFileException | NotDirectoryException exception) {
+      entries = List.of();
+    }
+    listings.put(directory, new DirectoryListing(entries, now));
+    return entries;
+  }
+
+  /**
+   * Summary of the file, or {@code null} when it was deleted since the directory was read or is
+   * not a regular file.
+   */
+  private static ObjectSummary summary(String bucket, String key, Path file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      if (!attributes.isRegularFile()) {
+        return null;
+      }
+      return new ObjectSummary(bucket, key, attributes.size(),
+          attributes.lastModifiedTime().toInstant());
+    } catch (NoSuchFileException exception) {
+      return null;
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @Override
+  public void delete(String bucket, String key) {
+    try {
+      Files.deleteIfExists(file(bucket, key));
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  @Override
+  public void delete(String bucket, List<String> keys) {
+    keys.forEach(key -> delete(bucket, key));
+  }
+
+  @Override
+  public String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn) {
+    return String.format("%s/%s", imageProxyBaseUrl,
+        UriUtils.encodePath(key, StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,137 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import org.springframework.web.util.UriUtils;
+
+/**
+ * {@link ObjectStorage} keeping every object on the heap, for tests, benchmarks and demos.
+ * Buckets are created on the first write and everything is lost on restart. The ETag is the MD5
+ * of the content like for a single-part S3 upload, and URLs point at the image proxy.
+ */
+public class InMemoryObjectStorage implements ObjectStorage {
+
+  private record Entry(byte[] content, String contentType, String eTag, Instant lastModified) {
+  }
+
+  private final Map<String, NavigableMap<String, Entry>> buckets = new ConcurrentHashMap<>();
+  private final String imageProxyBaseUrl;
+
+  public InMemoryObjectStorage(String imageProxyBaseUrl) {
+    this.imageProxyBaseUrl = imageProxyBaseUrl;
+  }
+
+  private NavigableMap<String, Entry> bucket(String bucket) {
+    return buckets.computeIfAbsent(bucket,
+        name -> new ConcurrentSkipListMap<>(ObjectStorage::compareKeys));
+  }
+
+  @Override
+  public void put(String bucket, String key, InputStream content, long size,
+      String contentType) {
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException(String.format(
+          "Object %s of %s bytes is too large to keep in memory", key, size));
+    }
+    byte[] bytes;
+    try {
+      bytes = content.readNBytes((int) size);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    if (bytes.length != size) {
+      throw new IllegalArgumentException(String.format(
+          "Object %s ended after %s of %s bytes", key, bytes.length, size));
+    }
+    bucket(bucket).put(key, new Entry(bytes, contentType, md5(bytes), Instant.now()));
+  }
+
+  @Override
+  public Optional<StoredObject> download(String bucket, String key, Path target) {
+    Entry entry = bucket(bucket).get(key);
+    if (entry == null) {
+      return Optional.empty();
+    }
+    try {
+      Files.write(target, entry.content());
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    return Optional.of(new StoredObject(entry.content().length, entry.contentType(),
+        entry.eTag(), entry.lastModified()));
+  }
+
+  @Override
+  public boolean exists(String bucket, String key) {
+    return bucket(bucket).containsKey(key);
+  }
+
+  @Override
+  public void copy(String sourceBucket, String sourceKey, String targetBucket,
+      String targetKey) {
+    Entry entry = bucket(sourceBucket).get(sourceKey);
+    if (entry == null) {
+      throw new IllegalArgumentException(String.format("Object %s/%s does not exist",
+          sourceBucket, sourceKey));
+    }
+    bucket(targetBucket).put(targetKey, new Entry(entry.content(), entry.contentType(),
+        entry.eTag(), Instant.now()));
+  }
+
+  @Override
+  public ObjectListing list(String bucket, String startAfter, String continuationToken,
+      int maxKeys) {
+    String after = continuationToken != null ? continuationToken : startAfter;
+    NavigableMap<String, Entry> entries = after == null ? bucket(bucket)
+        : bucket(bucket).tailMap(after, false);
+    List<ObjectSummary> objects = new ArrayList<>(Math.min(maxKeys, entries.size()));
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      if (objects.size() == maxKeys) {
+        return new ObjectListing(objects, objects.get(objects.size() - 1).key());
+      }
+      objects.add(new ObjectSummary(bucket, entry.getKey(), entry.getValue().content().length,
+          entry.getValue().lastModified()));
+    }
+    return new ObjectListing(objects, null);
+  }
+
+  @Override
+  public void delete(String bucket, String key) {
+    bucket(bucket).remove(key);
+  }
+
+  @Override
+  public void delete(String bucket, List<String> keys) {
+    keys.forEach(bucket(bucket)::remove);
+  }
+
+  @Override
+  public String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn) {
+    return String.format("%s/%s", imageProxyBaseUrl,
+        UriUtils.encodePath(key, StandardCharsets.UTF_8));
+  }
+
+  private static String md5(byte[] content) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+    } catch (NoSuchAlgorithmException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+}
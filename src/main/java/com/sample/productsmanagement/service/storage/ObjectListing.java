@@ -0,0 +1,13 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.util.List;
+
+/**
+ * One page of a listing, with the token to continue from or {@code null} on the last page.
+ */
+public record ObjectListing(List<ObjectSummary> objects, String nextContinuationToken) {
+
+  public boolean isTruncated() {
+    return nextContinuationToken != null;
+  }
+}
@@ -0,0 +1,75 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Object store holding the product images, selected with {@code product.storage.type}: S3 in
+ * production, a local directory for single-node deployments and memory for tests and benchmarks.
+ * Keys are opaque strings within a bucket, listed in the order of their code points like S3 lists
+ * them by their UTF-8 bytes. Calls block and are not guarded, {@code S3Service} adds timeouts and
+ * the circuit breaker on top.
+ */
+public interface ObjectStorage {
+
+  /**
+   * Stores {@code size} bytes read from the stream under the key, replacing any previous object.
+   * The stream is not closed.
+   */
+  void put(String bucket, String key, InputStream content, long size, String contentType);
+
+  /**
+   * Writes the object to the target file, or returns empty without touching it when there is no
+   * object with the key.
+   */
+  Optional<StoredObject> download(String bucket, String key, Path target);
+
+  boolean exists(String bucket, String key);
+
+  void copy(String sourceBucket, String sourceKey, String targetBucket, String targetKey);
+
+  /**
+   * Lists one page of at most {@code maxKeys} objects in key order, starting after
+   * {@code startAfter} for the first page and continuing from {@code continuationToken} for the
+   * following ones.
+   */
+  ObjectListing list(String bucket, String startAfter, String continuationToken, int maxKeys);
+
+  /**
+   * Deletes the object, missing keys are not an error.
+   */
+  void delete(String bucket, String key);
+
+  /**
+   * Deletes the objects, missing keys are not an error.
+   */
+  void delete(String bucket, List<String> keys);
+
+  /**
+   * URL a client can read the object from without credentials until it expires.
+   */
+  String presignGet(String bucket, String key, Instant signedAt, Duration expiresIn);
+
+  /**
+   * Compares keys by Unicode code point, which is the UTF-8 byte order S3 lists keys in.
+   * {@link String#compareTo} compares UTF-16 units and differs for supplementary characters.
+   */
+  static int compareKeys(String first, String second) {
+    int i = 0;
+    int j = 0;
+    while (i < first.length() && j < second.length()) {
+      int a = first.codePointAt(i);
+      int b = second.codePointAt(j);
+      if (a != b) {
+        return Integer.compare(a, b);
+      }
+      i += Character.charCount(a);
+      j += Character.charCount(b);
+    }
+    return Integer.compare(first.length() - i, second.length() - j);
+  }
+}
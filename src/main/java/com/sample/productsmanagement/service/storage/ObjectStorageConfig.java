@@ -0,0 +1,61 @@
+package com.sample.productsmanagement.service.storage;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.sample.productsmanagement.service.s3.S3ObjectStorage;
+import com.sample.productsmanagement.service.s3.S3PreSigner;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the {@link ObjectStorage} named by {@code product.storage.type}: {@code s3} (default),
+ * {@code filesystem} or {@code memory}. Any of them is wrapped with
+ * {@link FaultInjectingObjectStorage} when {@code product.storage.faults.*} asks for latency or
+ * failures.
+ */
+@Configuration
+public class ObjectStorageConfig {
+
+  @Value("${product.storage.faults.latency:0ms}")
+  private Duration latency;
+
+  @Value("${product.storage.faults.latency-jitter:0ms}")
+  private Duration latencyJitter;
+
+  @Value("${product.storage.faults.failure-rate:0}")
+  private double failureRate;
+
+  @Value("${product.image.proxy.base-url:/api/v1/images}")
+  private String imageProxyBaseUrl;
+
+  @Bean
+  @ConditionalOnProperty(name = "product.storage.type", havingValue = "s3",
+      matchIfMissing = true)
+  public ObjectStorage s3ObjectStorage(AmazonS3 s3Client, S3PreSigner s3PreSigner) {
+    return withFaults(new S3ObjectStorage(s3Client, s3PreSigner));
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "product.storage.type", havingValue = "filesystem")
+  public ObjectStorage fileSystemObjectStorage(
+      @Value("${product.storage.filesystem.directory:${java.io.tmpdir}/product-storage}")
+      Path directory) {
+    return withFaults(new FileSystemObjectStorage(directory, imageProxyBaseUrl));
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "product.storage.type", havingValue = "memory")
+  public ObjectStorage inMemoryObjectStorage() {
+    return withFaults(new InMemoryObjectStorage(imageProxyBaseUrl));
+  }
+
+  private ObjectStorage withFaults(ObjectStorage storage) {
+    if (latency.isZero() && latencyJitter.isZero() && failureRate == 0) {
+      return storage;
+    }
+    return new FaultInjectingObjectStorage(storage, latency, latencyJitter, failureRate);
+  }
+}
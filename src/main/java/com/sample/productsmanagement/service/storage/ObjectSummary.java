@@ -0,0 +1,9 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.time.Instant;
+
+/**
+ * Object as listed, without its content type.
+ */
+public record ObjectSummary(String bucket, String key, long size, Instant lastModified) {
+}
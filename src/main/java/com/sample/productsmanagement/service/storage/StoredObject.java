@@ -0,0 +1,10 @@
+package com.sample.productsmanagement.service.storage;
+
+import java.time.Instant;
+
+/**
+ * Metadata of a downloaded object. The ETag is unquoted and the last modification time is
+ * {@code null} when the storage does not know it.
+ */
+public record StoredObject(long size, String contentType, String eTag, Instant lastModified) {
+}
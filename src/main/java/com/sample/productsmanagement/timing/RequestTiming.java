@@ -0,0 +1,128 @@
+package com.sample.productsmanagement.timing;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent in each phase of the request bound to the current thread. Phases nest, and time is
+ * only charged to the innermost one, so a presign inside an S3 call counts as signing and the
+ * phases never add up to more than the request took. Work completing on other threads, like
+ * asynchronous uploads, is recorded separately since it overlaps the request's own phases.
+ */
+final class RequestTiming {
+
+  enum Phase {
+    DB("db"),
+    S3("s3"),
+    SIGN("sign"),
+    SERIALIZE("serialize");
+
+    private final String metric;
+
+    Phase(String metric) {
+      this.metric = metric;
+    }
+  }
+
+  private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+  private static final Phase[] PHASES = Phase.values();
+
+  private final long startedAt = System.nanoTime();
+  private final long[] durations = new long[PHASES.length];
+  private final int[] calls = new int[PHASES.length];
+  private final AtomicLongArray asyncDurations = new AtomicLongArray(PHASES.length);
+  private final AtomicIntegerArray asyncCalls = new AtomicIntegerArray(PHASES.length);
+  private Phase[] stack = new Phase[4];
+  private int depth;
+  private long resumedAt;
+
+  private RequestTiming() {
+  }
+
+  static RequestTiming current() {
+    return CURRENT.get();
+  }
+
+  static RequestTiming begin() {
+    RequestTiming timing = new RequestTiming();
+    CURRENT.set(timing);
+    return timing;
+  }
+
+  void end() {
+    CURRENT.remove();
+  }
+
+  void enter(Phase phase) {
+    long now = System.nanoTime();
+    if (depth > 0) {
+      durations[stack[depth - 1].ordinal()] += now - resumedAt;
+    }
+    if (depth == 0 || stack[depth - 1] != phase) {
+      calls[phase.ordinal()]++;
+    }
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+    }
+    stack[depth++] = phase;
+    resumedAt = now;
+  }
+
+  void exit() {
+    long now = System.nanoTime();
+    durations[stack[--depth].ordinal()] += now - resumedAt;
+    resumedAt = now;
+  }
+
+  void recordAsync(Phase phase, long nanos) {
+    asyncDurations.addAndGet(phase.ordinal(), nanos);
+    asyncCalls.incrementAndGet(phase.ordinal());
+  }
+
+  long elapsedNanos() {
+    return System.nanoTime() - startedAt;
+  }
+
+  /**
+   * Formats the phases as a {@code Server-Timing} header value. A phase still running is counted
+   * up to now; {@code app} is the time outside every phase.
+   */
+  String toHeader() {
+    long now = System.nanoTime();
+    long total = now - startedAt;
+    long accounted = 0;
+    StringBuilder header = new StringBuilder(128);
+    for (Phase phase : PHASES) {
+      long duration = durations[phase.ordinal()];
+      if (depth > 0 && stack[depth - 1] == phase) {
+        duration += now - resumedAt;
+      }
+      accounted += duration;
+      if (calls[phase.ordinal()] > 0) {
+        append(header, phase.metric, duration, calls[phase.ordinal()]);
+      }
+    }
+    for (Phase phase : PHASES) {
+      if (asyncCalls.get(phase.ordinal()) > 0) {
+        append(header, phase.metric + "-async", asyncDurations.get(phase.ordinal()),
+            asyncCalls.get(phase.ordinal()));
+      }
+    }
+    append(header, "app", Math.max(0, total - accounted), 0);
+    append(header, "total", total, 0);
+    return header.toString();
+  }
+
+  private static void append(StringBuilder header, String metric, long nanos, int count) {
+    if (!header.isEmpty()) {
+      header.append(", ");
+    }
+    header.append(metric).append(";dur=")
+        .append(String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0));
+    if (count > 0) {
+      header.append(";desc=\"").append(count).append(count == 1 ? " call\"" : " calls\"");
+    }
+  }
+}
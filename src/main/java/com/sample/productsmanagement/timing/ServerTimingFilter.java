@@ -0,0 +1,229 @@
+package com.sample.productsmanagement.timing;
+
+import com.sample.productsmanagement.timing.RequestTiming.Phase;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Reports where a request spent its time in a {@code Server-Timing} header, split into the
+ * database, S3, presigning and response serialization phases. The header is added right before
+ * the response is committed: for bodies that fit the response buffer that is after
+ * serialization, for larger ones serialization is counted up to the first flush.
+ *
+ * <p>Requests slower than {@code product.server-timing.slow-threshold} are logged with their
+ * phases, at most {@code product.server-timing.max-slow-logs-per-second} per second.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "product.server-timing.enabled", havingValue = "true")
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  static final String SERVER_TIMING = "Server-Timing";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+  @Value("${product.server-timing.slow-threshold:1s}")
+  private Duration slowThreshold = Duration.ofSeconds(1);
+
+  @Value("${product.server-timing.max-slow-logs-per-second:10}")
+  private int maxSlowLogsPerSecond = 10;
+
+  private final AtomicLong slowLogSecond = new AtomicLong();
+  private final AtomicInteger slowLogCount = new AtomicInteger();
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    RequestTiming timing = RequestTiming.begin();
+    TimingResponse timingResponse = new TimingResponse(response, timing);
+    try {
+      filterChain.doFilter(request, timingResponse);
+    } finally {
+      timingResponse.endSerialization();
+      timingResponse.addTimingHeader();
+      timing.end();
+      logIfSlow(request, response, timing);
+    }
+  }
+
+  private void logIfSlow(HttpServletRequest request, HttpServletResponse response,
+      RequestTiming timing) {
+    long elapsedNanos = timing.elapsedNanos();
+    if (elapsedNanos < slowThreshold.toNanos() || !tryAcquireSlowLog()) {
+      return;
+    }
+
+    String phases = timing.toHeader();
+    LOGGER.atWarn()
+        .addKeyValue("method", request.getMethod())
+        .addKeyValue("path", request.getRequestURI())
+        .addKeyValue("status", response.getStatus())
+        .addKeyValue("durationMillis", elapsedNanos / 1_000_000)
+        .addKeyValue("serverTiming", phases)
+        .log("Slow request {} {} returned {} after {} ms: {}", request.getMethod(),
+            request.getRequestURI(), response.getStatus(), elapsedNanos / 1_000_000, phases);
+  }
+
+  private boolean tryAcquireSlowLog() {
+    long second = System.currentTimeMillis() / 1000;
+    long current = slowLogSecond.get();
+    if (current != second && slowLogSecond.compareAndSet(current, second)) {
+      slowLogCount.set(0);
+    }
+    return slowLogCount.incrementAndGet() <= maxSlowLogsPerSecond;
+  }
+
+  /**
+   * Starts the serialization phase when the body is first written and adds the header before
+   * anything commits the response.
+   */
+  private static final class TimingResponse extends HttpServletResponseWrapper {
+
+    private final RequestTiming timing;
+    private TimingOutputStream outputStream;
+    private boolean serializing;
+    private boolean headerAdded;
+
+    TimingResponse(HttpServletResponse response, RequestTiming timing) {
+      super(response);
+      this.timing = timing;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new TimingOutputStream(super.getOutputStream(), this);
+        startSerialization();
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      addTimingHeader();
+      return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      addTimingHeader();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      addTimingHeader();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      addTimingHeader();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      addTimingHeader();
+      super.sendRedirect(location);
+    }
+
+    private void startSerialization() {
+      if (!serializing && RequestTiming.current() == timing) {
+        serializing = true;
+        timing.enter(Phase.SERIALIZE);
+      }
+    }
+
+    void endSerialization() {
+      if (serializing) {
+        serializing = false;
+        timing.exit();
+      }
+    }
+
+    void addTimingHeader() {
+      if (!headerAdded && !isCommitted()) {
+        headerAdded = true;
+        setHeader(SERVER_TIMING, timing.toHeader());
+      }
+    }
+  }
+
+  /**
+   * Adds the header on flush, or before a write that would overflow the response buffer and
+   * commit the response.
+   */
+  private static final class TimingOutputStream extends ServletOutputStream {
+
+    private final ServletOutputStream delegate;
+    private final TimingResponse response;
+    private long written;
+
+    TimingOutputStream(ServletOutputStream delegate, TimingResponse response) {
+      this.delegate = delegate;
+      this.response = response;
+    }
+
+    private void beforeWrite(int length) {
+      written += length;
+      if (written >= response.getBufferSize()) {
+        response.addTimingHeader();
+      }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      beforeWrite(1);
+      delegate.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      beforeWrite(len);
+      delegate.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      response.endSerialization();
+      response.addTimingHeader();
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      response.endSerialization();
+      response.addTimingHeader();
+      delegate.close();
+    }
+
+    @Override
+    public boolean isReady() {
+      return delegate.isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      delegate.setWriteListener(writeListener);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.sample.productsmanagement.timing;
+
+import com.sample.productsmanagement.service.s3.S3PreSigner;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.timing.RequestTiming.Phase;
+import java.util.concurrent.CompletableFuture;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Charges calls to the repositories, {@link S3Service} and {@link S3PreSigner} to the phases of
+ * the current request. Only exists when {@code product.server-timing.enabled} is set, otherwise
+ * the beans are not proxied at all.
+ */
+@Component
+@ConditionalOnProperty(name = "product.server-timing.enabled", havingValue = "true")
+public class ServerTimingPostProcessor implements BeanPostProcessor {
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    Phase phase = phaseOf(bean);
+    if (phase == null) {
+      return bean;
+    }
+
+    PhaseInterceptor interceptor = new PhaseInterceptor(phase);
+    if (bean instanceof Advised advised && !advised.isFrozen()) {
+      advised.addAdvice(0, interceptor);
+      return bean;
+    }
+    ProxyFactory proxyFactory = new ProxyFactory(bean);
+    proxyFactory.addAdvice(interceptor);
+    return proxyFactory.getProxy(bean.getClass().getClassLoader());
+  }
+
+  private static Phase phaseOf(Object bean) {
+    if (bean instanceof Repository<?, ?>) {
+      return Phase.DB;
+    }
+    if (bean instanceof S3Service) {
+      return Phase.S3;
+    }
+    if (bean instanceof S3PreSigner) {
+      return Phase.SIGN;
+    }
+    return null;
+  }
+
+  private record PhaseInterceptor(Phase phase) implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      RequestTiming timing = RequestTiming.current();
+      if (timing == null) {
+        return invocation.proceed();
+      }
+
+      long startedAt = System.nanoTime();
+      timing.enter(phase);
+      Object result;
+      try {
+        result = invocation.proceed();
+      } finally {
+        timing.exit();
+      }
+      if (result instanceof CompletableFuture<?> future && !future.isDone()) {
+        future.whenComplete((value, error) ->
+            timing.recordAsync(phase, System.nanoTime() - startedAt));
+      }
+      return result;
+    }
+  }
+}
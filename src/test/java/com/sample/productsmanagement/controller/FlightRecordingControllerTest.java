@@ -0,0 +1,67 @@
+package com.sample.productsmanagement.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.sample.productsmanagement.profiling.FlightRecordingService;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(controllers = FlightRecordingController.class,
+    properties = "product.profiling.dump-token=secret-token")
+class FlightRecordingControllerTest {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @MockBean
+  private FlightRecordingService flightRecordingService;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  @DisplayName("Dump flight recording expect the dump streamed and deleted when token matches")
+  void dumpFlightRecording_expectDumpStreamed() throws Exception {
+    Path dump = Files.writeString(directory.resolve("dump.jfr"), "recording",
+        StandardCharsets.UTF_8);
+    when(flightRecordingService.dump(Duration.ofMinutes(10))).thenReturn(dump);
+
+    mockMvc.perform(get("/api/v1/management/flight-recording?minutes=10")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer secret-token"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/octet-stream"))
+        .andExpect(content().string("recording"));
+    Assertions.assertFalse(Files.exists(dump));
+  }
+
+  @Test
+  @DisplayName("Dump flight recording expect unauthorized without a matching token")
+  void dumpFlightRecording_expectUnauthorizedWithoutToken() throws Exception {
+    mockMvc.perform(get("/api/v1/management/flight-recording"))
+        .andExpect(status().isUnauthorized())
+        .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer"));
+    mockMvc.perform(get("/api/v1/management/flight-recording")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer secret-tokem"))
+        .andExpect(status().isUnauthorized());
+
+    verify(flightRecordingService, never()).dump(any());
+  }
+}
@@ -0,0 +1,173 @@
+package com.sample.productsmanagement.controller;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.sample.productsmanagement.exception.ImageNotFoundException;
+import com.sample.productsmanagement.service.image.CachedImage;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.product.ProductService;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+@WebMvcTest(ImageController.class)
+class ImageControllerTest {
+
+  private static final String CONTENT = "0123456789";
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @MockBean
+  private ImageCacheService imageCacheService;
+
+  @MockBean
+  private ProductService productService;
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  void setup() throws Exception {
+    Path file = Files.writeString(directory.resolve("image"), CONTENT, StandardCharsets.UTF_8);
+    when(imageCacheService.get("1-image.png")).thenReturn(
+        new CachedImage("1-image.png", file, CONTENT.length(), "\"etag\"", "image/png", 0));
+    when(productService.getImageVersion(anyString())).thenReturn(1700000000000L);
+  }
+
+  @Test
+  @DisplayName("Get image expect full content with cache headers")
+  void getImage_expectFullContentWithCacheHeaders() throws Exception {
+    mockMvc.perform(get("/api/v1/images/1-image.png"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"etag\""))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"))
+        .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+        .andExpect(content().string(CONTENT));
+  }
+
+  @Test
+  @DisplayName("Get image expect cached for good when requested with the current version")
+  void getImage_expectImmutableForCurrentVersion() throws Exception {
+    mockMvc.perform(get("/api/v1/images/1-image.png").param("v", "1700000000000"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL,
+            "max-age=31536000, public, immutable"))
+        .andExpect(content().string(CONTENT));
+
+    mockMvc.perform(get("/api/v1/images/1-image.png").param("v", "1600000000000"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"));
+  }
+
+  @Test
+  @DisplayName("Get image expect large image handed to the container to send from the file")
+  void getImage_expectSendfileWhenSupported() throws Exception {
+    Path file = Files.write(directory.resolve("large"), new byte[64 * 1024]);
+    when(imageCacheService.get("2-image.png")).thenReturn(
+        new CachedImage("2-image.png", file, 64 * 1024, "\"large\"", "image/png", 0));
+
+    mockMvc.perform(get("/api/v1/images/2-image.png")
+            .requestAttr("org.apache.tomcat.sendfile.support", true)
+            .header(HttpHeaders.RANGE, "bytes=1024-"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 63 * 1024))
+        .andExpect(request().attribute("org.apache.tomcat.sendfile.filename",
+            file.toAbsolutePath().toString()))
+        .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 1024L))
+        .andExpect(request().attribute("org.apache.tomcat.sendfile.end", 64 * 1024L))
+        .andExpect(content().bytes(new byte[0]));
+  }
+
+  @Test
+  @DisplayName("Get image expect partial content when range requested")
+  void getImage_expectPartialContentForRange() throws Exception {
+    mockMvc.perform(get("/api/v1/images/1-image.png").header(HttpHeaders.RANGE, "bytes=2-5"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+        .andExpect(content().string("2345"));
+  }
+
+  @Test
+  @DisplayName("Get image expect range not satisfiable when range starts after content")
+  void getImage_expectRangeNotSatisfiable() throws Exception {
+    mockMvc.perform(get("/api/v1/images/1-image.png").header(HttpHeaders.RANGE, "bytes=20-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+  }
+
+  @Test
+  @DisplayName("Get image expect not modified when etag matches")
+  void getImage_expectNotModifiedWhenEtagMatches() throws Exception {
+    mockMvc.perform(get("/api/v1/images/1-image.png").header(HttpHeaders.IF_NONE_MATCH, "\"etag\""))
+        .andExpect(status().isNotModified());
+  }
+
+  @Test
+  @DisplayName("Get image expect image looked up again when its file was evicted before opening")
+  void getImage_expectLookedUpAgainWhenEvicted() throws Exception {
+    Path file = Files.writeString(directory.resolve("downloaded-again"), "new",
+        StandardCharsets.UTF_8);
+    when(imageCacheService.get("2-image.png"))
+        .thenReturn(new CachedImage("2-image.png", directory.resolve("evicted"), 3, "\"old\"",
+            "image/png", 0))
+        .thenReturn(new CachedImage("2-image.png", file, 3, "\"new\"", "image/png", 0));
+
+    mockMvc.perform(get("/api/v1/images/2-image.png"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"new\""))
+        .andExpect(content().string("new"));
+  }
+
+  @Test
+  @DisplayName("Get image expect service unavailable when its file keeps being evicted")
+  void getImage_expectUnavailableWhenEvictedEveryAttempt() throws Exception {
+    when(imageCacheService.get("2-image.png")).thenReturn(new CachedImage("2-image.png",
+        directory.resolve("evicted"), 3, "\"old\"", "image/png", 0));
+
+    mockMvc.perform(get("/api/v1/images/2-image.png"))
+        .andExpect(status().isServiceUnavailable());
+    verify(imageCacheService, times(3)).get("2-image.png");
+  }
+
+  @Test
+  @DisplayName("Get image expect not found when no live product refers to it")
+  void getImage_expectNotFoundWithoutLiveProduct() throws Exception {
+    when(productService.getImageVersion("deleted.png")).thenThrow(
+        new ImageNotFoundException("Image deleted.png, not found"));
+
+    mockMvc.perform(get("/api/v1/images/deleted.png"))
+        .andExpect(status().isNotFound());
+    verify(imageCacheService, never()).get(anyString());
+  }
+
+  @Test
+  @DisplayName("Get image expect not found when image does not exist")
+  void getImage_expectNotFound() throws Exception {
+    when(imageCacheService.get("missing.png")).thenThrow(
+        new ImageNotFoundException("Image missing.png, not found"));
+
+    mockMvc.perform(get("/api/v1/images/missing.png"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().json("{\"message\":\"Image missing.png, not found\"}", true));
+  }
+}
@@ -1,8 +1,11 @@
 package com.sample.productsmanagement.controller;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -12,10 +15,15 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.sample.productsmanagement.exception.ProductNotFoundException;
 import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChangeSet;
+import com.sample.productsmanagement.model.ProductLookup;
+import com.sample.productsmanagement.model.ProductStatisticsDTO;
 import com.sample.productsmanagement.service.product.ProductService;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -43,6 +51,9 @@ class ProductControllerTest {
   @MockBean
   private ProductService productService;
 
+  @MockBean
+  private ProductStatisticsService productStatisticsService;
+
   @Value("classpath:/product-fixture/product-response-list.json")
   private Resource responseSample;
 
@@ -280,4 +291,68 @@ class ProductControllerTest {
         .andExpect(status().isNotFound())
         .andExpect(content().json(expectedResponseMessage, true));
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("Get product changes expect changed products, deleted ids and next cursor")
+  void getProductChanges_ExpectChangeSet() throws Exception {
+    Product product = new Product(1, "test product 1", 1, 0, null);
+    when(productService.getProductChanges(10, 2)).thenReturn(
+        new ProductChangeSet(List.of(product), List.of(2), 12, true));
+    String expectedResponse = "{\"products\":[{\"id\":1,\"name\":\"test product 1\",\"price\":1,"
+        + "\"quantity\":0,\"imageUrl\":null}],\"deletedIds\":[2],\"cursor\":12,\"hasMore\":true}";
+
+    mockMvc.perform(get("/api/v1/products/changes").param("cursor", "10").param("limit", "2"))
+        .andExpect(status().isOk())
+        .andExpect(content().json(expectedResponse, true));
+  }
+
+  @Test
+  @DisplayName("Get products by ids expect results in requested order with not found markers")
+  void getProductsByIds_ExpectOrderedLookups() throws Exception {
+    when(productService.getProductsByIds(List.of(2, 99))).thenReturn(List.of(
+        new ProductLookup(2, new Product(2, "test product 2", 1, 0, null)),
+        new ProductLookup(99, null)));
+    String expectedResponse = "[{\"id\":2,\"found\":true,\"product\":{\"id\":2,"
+        + "\"name\":\"test product 2\",\"price\":1,\"quantity\":0,\"imageUrl\":null}},"
+        + "{\"id\":99,\"found\":false}]";
+
+    mockMvc.perform(get("/api/v1/products/batch").param("ids", "2,99"))
+        .andExpect(status().isOk())
+        .andExpect(content().json(expectedResponse, true));
+  }
+
+  @Test
+  @DisplayName("Get products by ids got bad request when more ids than allowed are requested")
+  void getProductsByIds_ExpectBadRequestForTooManyIds() throws Exception {
+    String ids = String.join(",", Collections.nCopies(1001, "1"));
+    String expectedResponse = "{\"message\":\"At most 1000 product ids can be looked up at once\"}";
+
+    mockMvc.perform(get("/api/v1/products/batch").param("ids", ids))
+        .andExpect(status().isBadRequest())
+        .andExpect(content().json(expectedResponse, true));
+  }
+
+  @Test
+  @DisplayName("Get products by ids got bad request when an id is empty or not positive")
+  void getProductsByIds_ExpectBadRequestForInvalidIds() throws Exception {
+    String expectedResponse = "{\"message\":\"Product ids should be positive numbers\"}";
+
+    for (String ids : List.of("1,,2", "1,0", "-3")) {
+      mockMvc.perform(get("/api/v1/products/batch").param("ids", ids))
+          .andExpect(status().isBadRequest())
+          .andExpect(content().json(expectedResponse, true));
+    }
+    verify(productService, never()).getProductsByIds(any());
+  }
+
+  @Test
+  @DisplayName("Get product statistics expect totals from the statistics counters")
+  void getProductStatistics_ExpectTotals() throws Exception {
+    when(productStatisticsService.getStatistics()).thenReturn(new ProductStatisticsDTO(2, 15, 1500));
+    String expectedResponse = "{\"totalProducts\":2,\"totalUnits\":15,\"totalValue\":1500}";
+
+    mockMvc.perform(get("/api/v1/products/statistics"))
+        .andExpect(status().isOk())
+        .andExpect(content().json(expectedResponse, true));
+  }
+}
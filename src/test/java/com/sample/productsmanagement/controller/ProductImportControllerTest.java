@@ -0,0 +1,105 @@
+package com.sample.productsmanagement.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.sample.productsmanagement.exception.ImportQueueFullException;
+import com.sample.productsmanagement.exception.ProductImportNotFoundException;
+import com.sample.productsmanagement.model.ProductImport;
+import com.sample.productsmanagement.model.ProductImport.Status;
+import com.sample.productsmanagement.service.product.ProductImportService;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.multipart.MultipartFile;
+
+@WebMvcTest(ProductImportController.class)
+class ProductImportControllerTest {
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @MockBean
+  private ProductImportService productImportService;
+
+  @Test
+  @DisplayName("Import products expect accepted with location of the import status")
+  void importProducts_ExpectAccepted() throws Exception {
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        "name,price,quantity\n".getBytes());
+    ProductImport productImport = ProductImport.builder()
+        .id(5)
+        .status(Status.QUEUED)
+        .createdAt(Instant.parse("2024-03-01T10:00:00Z"))
+        .build();
+    when(productImportService.startImport(any(MultipartFile.class), isNull()))
+        .thenReturn(productImport);
+    String expectedResponse = "{\"id\":5,\"status\":\"QUEUED\",\"processedRows\":0,"
+        + "\"importedRows\":0,\"failedRows\":0,\"uploadedImages\":0,\"errors\":[],"
+        + "\"createdAt\":\"2024-03-01T10:00:00Z\",\"finishedAt\":null}";
+
+    mockMvc.perform(multipart("/api/v1/products/imports").file(products))
+        .andExpect(status().isAccepted())
+        .andExpect(header().string("Location", "/api/v1/products/imports/5"))
+        .andExpect(content().json(expectedResponse, true));
+  }
+
+  @Test
+  @DisplayName("Import products expect service unavailable when the import queue is full")
+  void importProducts_ExpectServiceUnavailable() throws Exception {
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        "name,price,quantity\n".getBytes());
+    when(productImportService.startImport(any(MultipartFile.class), isNull())).thenThrow(
+        new ImportQueueFullException("Too many product imports in progress, at most 10 can wait"));
+
+    mockMvc.perform(multipart("/api/v1/products/imports").file(products))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().string("Retry-After", "60"))
+        .andExpect(content().json(
+            "{\"message\":\"Too many product imports in progress, at most 10 can wait\"}", true));
+  }
+
+  @Test
+  @DisplayName("Get import expect progress of the import")
+  void getImport_ExpectProgress() throws Exception {
+    ProductImport productImport = ProductImport.builder()
+        .id(5)
+        .status(Status.RUNNING)
+        .processedRows(1000)
+        .importedRows(998)
+        .failedRows(2)
+        .errors(List.of("Line 3: Minimum product name length is 5"))
+        .build();
+    when(productImportService.getImport(eq(5L))).thenReturn(productImport);
+
+    mockMvc.perform(get("/api/v1/products/imports/5"))
+        .andExpect(status().isOk())
+        .andExpect(content().json("{\"status\":\"RUNNING\",\"processedRows\":1000,"
+            + "\"importedRows\":998,\"failedRows\":2,"
+            + "\"errors\":[\"Line 3: Minimum product name length is 5\"]}"));
+  }
+
+  @Test
+  @DisplayName("Get import expect not found when import does not exist")
+  void getImport_ExpectNotFound() throws Exception {
+    when(productImportService.getImport(eq(99L))).thenThrow(
+        new ProductImportNotFoundException("Product import with id 99, not found"));
+
+    mockMvc.perform(get("/api/v1/products/imports/99"))
+        .andExpect(status().isNotFound())
+        .andExpect(content().json("{\"message\":\"Product import with id 99, not found\"}", true));
+  }
+}
@@ -0,0 +1,157 @@
+package com.sample.productsmanagement.integrationTest;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.service.product.ProductService;
+import jakarta.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+
+@SpringBootTest(properties = "product.id-filter.enabled=false")
+public class ProductCacheIT {
+
+  static MySQLContainer mySQLContainer = new MySQLContainer("mysql:latest");
+
+  @BeforeAll
+  static void beforeAll() {
+    mySQLContainer.start();
+  }
+
+  @AfterAll
+  static void afterAll() {
+    mySQLContainer.stop();
+  }
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", mySQLContainer::getJdbcUrl);
+    registry.add("spring.datasource.username", mySQLContainer::getUsername);
+    registry.add("spring.datasource.password", mySQLContainer::getPassword);
+    registry.add("aws.access.key", () -> "test");
+    registry.add("aws.secret.key", () -> "test");
+    registry.add("aws.s3.endpoint", () -> "http://127.0.0.1:4566");
+    registry.add("aws.s3.region", () -> "us-east-1");
+    registry.add("aws.s3.bucket", () -> "test");
+  }
+
+  @Autowired
+  ProductRepository productRepository;
+
+  @Autowired
+  ProductService productService;
+
+  @Autowired
+  EntityManagerFactory entityManagerFactory;
+
+  private Statistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    productRepository.deleteAll();
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  private MockMultipartFile emptyImage() {
+    return new MockMultipartFile("file", new byte[0]);
+  }
+
+  @Test
+  @DisplayName("Find by id expect second read served from second level cache")
+  public void findById_expectSecondLevelCacheHit() {
+    Product product = productRepository.save(
+        Product.builder().name("test 1").price(1).quantity(1).build());
+
+    productRepository.findById(product.getId());
+    productRepository.findById(product.getId());
+
+    Assertions.assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+  }
+
+  @Test
+  @DisplayName("Find all by id expect second read served from query cache")
+  public void findAllById_expectQueryCacheHit() {
+    Product product = productRepository.save(
+        Product.builder().name("test 1").price(1).quantity(1).build());
+
+    productRepository.findAllById(List.of(product.getId()));
+    productRepository.findAllById(List.of(product.getId()));
+
+    Assertions.assertTrue(statistics.getQueryCacheHitCount() > 0);
+  }
+
+  @Test
+  @DisplayName("Find all expect not query cached")
+  public void findAll_expectNotQueryCached() {
+    productRepository.save(Product.builder().name("test 1").price(1).quantity(1).build());
+
+    productRepository.findAll();
+    productRepository.findAll();
+
+    Assertions.assertEquals(0, statistics.getQueryCachePutCount());
+  }
+
+  @Test
+  @DisplayName("Update product expect cached reads return updated values")
+  public void updateProduct_expectNoStaleRead() throws IOException {
+    Product product = productRepository.save(
+        Product.builder().name("test 1").price(1).quantity(1).build());
+    productRepository.findById(product.getId());
+    productRepository.findAll();
+    productRepository.findAllById(List.of(product.getId()));
+
+    productService.updateProduct(Product.builder().id(product.getId()).name("updated")
+        .price(5).quantity(7).build(), emptyImage());
+
+    Product cached = productRepository.findById(product.getId()).get();
+    Assertions.assertEquals("updated", cached.getName());
+    Assertions.assertEquals(5, cached.getPrice());
+    List<Product> products = productRepository.findAll();
+    Assertions.assertEquals(1, products.size());
+    Assertions.assertEquals("updated", products.get(0).getName());
+    Assertions.assertEquals("updated",
+        productRepository.findAllById(List.of(product.getId())).get(0).getName());
+  }
+
+  @Test
+  @DisplayName("Delete product expect cached reads no longer return deleted product")
+  public void deleteProduct_expectNoStaleRead() {
+    Product product = productRepository.save(
+        Product.builder().name("test 1").price(1).quantity(1).build());
+    productRepository.findById(product.getId());
+    productRepository.findAll();
+    productRepository.findAllById(List.of(product.getId()));
+
+    productService.deleteProduct(product.getId());
+
+    Assertions.assertTrue(productRepository.findById(product.getId()).isEmpty());
+    Assertions.assertTrue(productRepository.findAll().isEmpty());
+    Assertions.assertTrue(productRepository.findAllById(List.of(product.getId())).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Create product expect cached list includes new product")
+  public void createProduct_expectQueryCacheInvalidated() throws IOException {
+    productRepository.save(Product.builder().name("test 1").price(1).quantity(1).build());
+    productRepository.findAll();
+
+    productService.createProduct(Product.builder().name("test 2").price(1).quantity(1).build(),
+        emptyImage());
+
+    Assertions.assertEquals(2, productRepository.findAll().size());
+  }
+}
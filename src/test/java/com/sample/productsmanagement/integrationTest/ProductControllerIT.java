@@ -6,6 +6,7 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.sample.productsmanagement.model.Product;
 import com.sample.productsmanagement.model.ProductDTO;
 import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.service.product.ProductPurgeService;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
@@ -41,7 +42,8 @@ import org.testcontainers.containers.MySQLContainer;
 import org.testcontainers.containers.localstack.LocalStackContainer;
 import org.testcontainers.utility.DockerImageName;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "product.id-filter.enabled=false")
 public class ProductControllerIT {
 
   @LocalServerPort
@@ -81,6 +83,7 @@ public class ProductControllerIT {
     registry.add("aws.s3.endpoint", localStackContainer::getEndpoint);
     registry.add("aws.s3.region", localStackContainer::getRegion);
     registry.add("aws.s3.bucket", () -> BUCKET_NAME);
+    registry.add("product.purge.grace-period", () -> "PT0S");
   }
 
   @Autowired
@@ -89,6 +92,9 @@ public class ProductControllerIT {
   @Autowired
   AmazonS3 s3Client;
 
+  @Autowired
+  ProductPurgeService productPurgeService;
+
   @BeforeEach
   void setUp() {
     BASE_URL = String.format("http://localhost:%s/api/v1/products", port);
@@ -215,7 +221,7 @@ public class ProductControllerIT {
   }
 
   @Test
-  @DisplayName("Delete product should be delete record on db and remove file on S3 when delete success")
+  @DisplayName("Delete product should hide record on db and remove file on S3 after purge when delete success")
   public void deleteProductById_expectDeleteDBRecordAndS3FileForRelatedId() throws IOException {
     String fileName = String.format("%s-%s", "1", "test.png");
     s3Client.putObject(BUCKET_NAME, fileName, testImage.getFile());
@@ -227,9 +233,12 @@ public class ProductControllerIT {
         .build();
     Product savedProduct = productRepository.save(product);
 
-    restTemplate.delete(BASE_URL + "/1");
+    restTemplate.delete(BASE_URL + "/" + savedProduct.getId());
 
     Assertions.assertTrue(productRepository.findById(savedProduct.getId()).isEmpty());
+    Assertions.assertNotNull(s3Client.getObject(BUCKET_NAME, savedProduct.getImageLocation()));
+
+    productPurgeService.purgeDeletedProducts();
     AmazonS3Exception exception = Assertions.assertThrows(AmazonS3Exception.class,
         () -> s3Client.getObject(BUCKET_NAME, savedProduct.getImageLocation()));
     Assertions.assertEquals(404, exception.getStatusCode());
@@ -0,0 +1,213 @@
+package com.sample.productsmanagement.integrationTest;
+
+import static com.sample.productsmanagement.model.Product.ID_GENERATOR_TABLE;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChangeSet;
+import com.sample.productsmanagement.repository.shard.ProductResharder;
+import com.sample.productsmanagement.repository.shard.RangeProductShards;
+import com.sample.productsmanagement.service.product.ProductChangeRelay;
+import com.sample.productsmanagement.service.product.ProductService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+
+/**
+ * Runs the catalog on two MySQL shards: {@code a} allocates ids below 1,000,000 and {@code b}
+ * above, and ids 1 to 99 are being moved from {@code a} to {@code b}.
+ */
+@SpringBootTest(properties = {"product.id-filter.enabled=false", "product.storage.type=memory",
+    "product.changes.settle-time=0s"})
+public class ProductShardingIT {
+
+  private static final int MOVE_START = 1;
+  private static final int MOVE_END = 100;
+  private static final int SHARD_B_START = 1_000_000;
+
+  static MySQLContainer shardA = new MySQLContainer("mysql:latest");
+
+  static MySQLContainer shardB = new MySQLContainer("mysql:latest");
+
+  @BeforeAll
+  static void beforeAll() {
+    shardA.start();
+    shardB.start();
+  }
+
+  @AfterAll
+  static void afterAll() {
+    shardA.stop();
+    shardB.stop();
+  }
+
+  @DynamicPropertySource
+  static void configureProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", shardA::getJdbcUrl);
+    registry.add("spring.datasource.username", shardA::getUsername);
+    registry.add("spring.datasource.password", shardA::getPassword);
+    registry.add("product.sharding.enabled", () -> "true");
+    registry.add("product.sharding.shards[0].name", () -> "a");
+    registry.add("product.sharding.shards[0].url", shardA::getJdbcUrl);
+    registry.add("product.sharding.shards[0].username", shardA::getUsername);
+    registry.add("product.sharding.shards[0].password", shardA::getPassword);
+    registry.add("product.sharding.shards[0].id-start", () -> "1");
+    registry.add("product.sharding.shards[0].id-end", () -> "" + SHARD_B_START);
+    registry.add("product.sharding.shards[1].name", () -> "b");
+    registry.add("product.sharding.shards[1].url", shardB::getJdbcUrl);
+    registry.add("product.sharding.shards[1].username", shardB::getUsername);
+    registry.add("product.sharding.shards[1].password", shardB::getPassword);
+    registry.add("product.sharding.shards[1].id-start", () -> "" + SHARD_B_START);
+    registry.add("product.sharding.shards[1].id-end", () -> "2000000");
+    registry.add("product.sharding.moves[0].id-start", () -> "" + MOVE_START);
+    registry.add("product.sharding.moves[0].id-end", () -> "" + MOVE_END);
+    registry.add("product.sharding.moves[0].to", () -> "b");
+    registry.add("aws.s3.bucket", () -> "test");
+  }
+
+  @Autowired
+  ProductService productService;
+
+  @Autowired
+  ProductChangeRelay productChangeRelay;
+
+  @Autowired
+  RangeProductShards productShards;
+
+  private JdbcTemplate jdbcA;
+
+  private JdbcTemplate jdbcB;
+
+  @BeforeEach
+  void setUp() {
+    jdbcA = jdbcTemplate(shardA);
+    jdbcB = jdbcTemplate(shardB);
+    jdbcA.update("delete from product where id >= ?", MOVE_END);
+    jdbcB.update("delete from product");
+  }
+
+  private static JdbcTemplate jdbcTemplate(MySQLContainer container) {
+    return new JdbcTemplate(new DriverManagerDataSource(container.getJdbcUrl(),
+        container.getUsername(), container.getPassword()));
+  }
+
+  private MockMultipartFile emptyImage() {
+    return new MockMultipartFile("file", new byte[0]);
+  }
+
+  private List<Product> createProducts(int count) throws IOException {
+    List<Product> products = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      products.add(productService.createProduct(
+          Product.builder().name("product " + i).price(1).quantity(1).build(), emptyImage()));
+    }
+    return products;
+  }
+
+  private static boolean hasProduct(JdbcTemplate jdbcTemplate, int id) {
+    return jdbcTemplate.queryForObject("select count(*) from product where id = ?",
+        Integer.class, id) > 0;
+  }
+
+  @Test
+  @DisplayName("Create product expect row written to the shard of its id and found by get and list")
+  public void createProduct_expectRowOnShardOfItsId() throws IOException {
+    List<Product> products = createProducts(4);
+
+    for (Product product : products) {
+      boolean onB = product.getId() >= SHARD_B_START;
+      Assertions.assertTrue(product.getId() >= MOVE_END);
+      Assertions.assertEquals(!onB, hasProduct(jdbcA, product.getId()));
+      Assertions.assertEquals(onB, hasProduct(jdbcB, product.getId()));
+      Assertions.assertEquals(product.getName(),
+          productService.getProductDetail(product.getId()).getName());
+    }
+    Assertions.assertTrue(products.stream().anyMatch(product -> product.getId() < SHARD_B_START));
+    Assertions.assertTrue(products.stream().anyMatch(product -> product.getId() >= SHARD_B_START));
+    Set<Integer> listed = productService.getProducts().stream()
+        .map(Product::getId)
+        .collect(Collectors.toSet());
+    Assertions.assertTrue(listed.containsAll(products.stream().map(Product::getId).toList()));
+  }
+
+  @Test
+  @DisplayName("Reshard expect rows of the moved range copied to the new shard and written there")
+  public void reshard_expectMovedRowsServedFromNewShard() throws IOException {
+    jdbcA.update("insert into product (id, name, price, quantity, deleted) "
+        + "values (10, 'moved 10', 1, 1, false), (11, 'moved 11', 1, 1, false)");
+    // the first shard skips the moved ids and allocates past them before the range can move
+    jdbcA.update(String.format("update %s set next_val = greatest(next_val, ?)",
+        ID_GENERATOR_TABLE), 1000);
+
+    Assertions.assertEquals("moved 10", productService.getProductDetail(10).getName());
+
+    new ProductResharder(productShards).reshard();
+
+    Assertions.assertFalse(hasProduct(jdbcA, 10));
+    Assertions.assertFalse(hasProduct(jdbcA, 11));
+    Assertions.assertEquals("moved 11",
+        jdbcB.queryForObject("select name from product where id = 11", String.class));
+
+    Product product = productService.getProductDetail(10);
+    product.setName("updated 10");
+    productService.updateProduct(product, emptyImage());
+
+    Assertions.assertFalse(hasProduct(jdbcA, 10));
+    Assertions.assertEquals("updated 10",
+        jdbcB.queryForObject("select name from product where id = 10", String.class));
+    Assertions.assertEquals("updated 10", productService.getProductDetail(10).getName());
+  }
+
+  @Test
+  @DisplayName("Relay expect changes of every shard in the feed of the first shard")
+  public void relay_expectChangesOfEveryShardInFeed() throws IOException {
+    List<Integer> ids = createProducts(4).stream().map(Product::getId).toList();
+
+    productChangeRelay.relay();
+
+    Assertions.assertEquals(0,
+        jdbcB.queryForObject("select count(*) from product_change", Integer.class));
+    ProductChangeSet changes = productService.getProductChanges(0, 1000);
+    Set<Integer> changedIds = changes.products().stream()
+        .map(Product::getId)
+        .collect(Collectors.toSet());
+    Assertions.assertTrue(changedIds.containsAll(ids));
+    Assertions.assertTrue(ids.stream().anyMatch(id -> id >= SHARD_B_START));
+  }
+
+  @Test
+  @DisplayName("Relay expect each change copied once when instances relay at the same time")
+  public void relay_expectEachChangeCopiedOnceWhenConcurrent() throws Exception {
+    List<Integer> ids = createProducts(6).stream()
+        .map(Product::getId)
+        .filter(id -> id >= SHARD_B_START)
+        .toList();
+
+    CompletableFuture<Void> first = CompletableFuture.runAsync(productChangeRelay::relay);
+    CompletableFuture<Void> second = CompletableFuture.runAsync(productChangeRelay::relay);
+    CompletableFuture.allOf(first, second).get(30, TimeUnit.SECONDS);
+
+    Assertions.assertFalse(ids.isEmpty());
+    for (int id : ids) {
+      Assertions.assertEquals(1, jdbcA.queryForObject(
+          "select count(*) from product_change where product_id = ?", Integer.class, id));
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.sample.productsmanagement.integrationTest;
+
+import com.amazonaws.HttpMethod;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sample.productsmanagement.service.s3.S3PreSigner;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.localstack.LocalStackContainer;
+import org.testcontainers.utility.DockerImageName;
+
+public class S3PreSignerIT {
+
+  static final String BUCKET_NAME = UUID.randomUUID().toString();
+  static final String KEY = "1-sample image.jpeg";
+  static final String CONTENT = "sample image content";
+
+  static LocalStackContainer localStackContainer = new LocalStackContainer(
+      DockerImageName.parse("localstack/localstack:3.0")
+  ).withEnv("S3_SKIP_SIGNATURE_VALIDATION", "0");
+
+  static AmazonS3 s3Client;
+  static S3PreSigner preSigner;
+
+  @BeforeAll
+  static void beforeAll() {
+    localStackContainer.start();
+    String endpoint = localStackContainer.getEndpoint().toString();
+    s3Client = AmazonS3ClientBuilder.standard()
+        .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials(
+            localStackContainer.getAccessKey(), localStackContainer.getSecretKey())))
+        .withEndpointConfiguration(new EndpointConfiguration(endpoint,
+            localStackContainer.getRegion()))
+        .build();
+    s3Client.createBucket(BUCKET_NAME);
+    s3Client.putObject(BUCKET_NAME, KEY, CONTENT);
+    preSigner = new S3PreSigner(localStackContainer.getAccessKey(),
+        localStackContainer.getSecretKey(), localStackContainer.getRegion(), endpoint,
+        Clock.systemUTC());
+  }
+
+  @AfterAll
+  static void afterAll() {
+    localStackContainer.stop();
+  }
+
+  private HttpResponse<String> download(String url) throws IOException, InterruptedException {
+    return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(url)).build(),
+        HttpResponse.BodyHandlers.ofString());
+  }
+
+  @Test
+  @DisplayName("Presigned url expect downloadable object when signed by pre signer")
+  public void presignGet_expectObjectDownloadable() throws Exception {
+    HttpResponse<String> response = download(
+        preSigner.presignGet(BUCKET_NAME, KEY, Duration.ofMinutes(10)));
+
+    Assertions.assertEquals(200, response.statusCode());
+    Assertions.assertEquals(CONTENT, response.body());
+  }
+
+  @Test
+  @DisplayName("Presigned url expect byte for byte equal to SDK url for same instant")
+  public void presignGet_expectSameUrlAsSdk() {
+    Instant now = Instant.now();
+    String sdkUrl = s3Client.generatePresignedUrl(BUCKET_NAME, KEY,
+        Date.from(now.plus(Duration.ofMinutes(10))), HttpMethod.GET).toString();
+    String amzDate = sdkUrl.replaceAll(".*X-Amz-Date=([0-9TZ]+).*", "$1");
+    long expires = Long.parseLong(sdkUrl.replaceAll(".*X-Amz-Expires=([0-9]+).*", "$1"));
+    Instant signedAt = Instant.parse(amzDate.replaceAll(
+        "(\\d{4})(\\d{2})(\\d{2})T(\\d{2})(\\d{2})(\\d{2})Z", "$1-$2-$3T$4:$5:$6Z"));
+
+    Assertions.assertEquals(sdkUrl,
+        preSigner.presignGet(BUCKET_NAME, KEY, signedAt, Duration.ofSeconds(expires)));
+  }
+
+  @Test
+  @DisplayName("Presigned url expect rejected when signature is tampered")
+  public void presignGet_expectTamperedSignatureRejected() throws Exception {
+    String url = preSigner.presignGet(BUCKET_NAME, KEY, Duration.ofMinutes(10));
+    String tampered = url.substring(0, url.length() - 1)
+        + (url.endsWith("0") ? "1" : "0");
+
+    Assertions.assertEquals(403, download(tampered).statusCode());
+  }
+}
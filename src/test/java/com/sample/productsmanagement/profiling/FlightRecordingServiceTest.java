@@ -0,0 +1,125 @@
+package com.sample.productsmanagement.profiling;
+
+import com.sample.productsmanagement.service.s3.S3CallExecutor;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.InMemoryObjectStorage;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+class FlightRecordingServiceTest {
+
+  private FlightRecordingService flightRecordingService;
+
+  private ThreadPoolBulkhead bulkhead;
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  void setup() throws Exception {
+    flightRecordingService = new FlightRecordingService();
+    ReflectionTestUtils.setField(flightRecordingService, "settings", "default");
+    ReflectionTestUtils.setField(flightRecordingService, "maxAge", Duration.ofMinutes(30));
+    ReflectionTestUtils.setField(flightRecordingService, "maxSize", DataSize.ofMegabytes(64));
+    ReflectionTestUtils.setField(flightRecordingService, "eventThreshold", Duration.ZERO);
+    ReflectionTestUtils.setField(flightRecordingService, "dumpDirectory", directory);
+    ReflectionTestUtils.setField(flightRecordingService, "maxDumps", 1);
+    ReflectionTestUtils.setField(flightRecordingService, "sloLatency", Duration.ofMillis(100));
+    ReflectionTestUtils.setField(flightRecordingService, "sloDumpWindow", Duration.ofMinutes(1));
+    ReflectionTestUtils.setField(flightRecordingService, "minDumpInterval",
+        Duration.ofMinutes(15));
+    flightRecordingService.start();
+    bulkhead = ThreadPoolBulkhead.ofDefaults("s3");
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    flightRecordingService.stop();
+    bulkhead.close();
+  }
+
+  private S3Service recordedS3Service() {
+    S3Service s3Service = new S3Service();
+    ReflectionTestUtils.setField(s3Service, "objectStorage", new InMemoryObjectStorage(""));
+    ReflectionTestUtils.setField(s3Service, "s3CallExecutor", new S3CallExecutor(
+        CircuitBreaker.ofDefaults("s3"), bulkhead, TimeLimiter.ofDefaults("s3")));
+    ReflectionTestUtils.setField(s3Service, "bucketName", "images");
+    StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+    beanFactory.addBean("flightRecordingService", flightRecordingService);
+    return (S3Service) new FlightRecordingPostProcessor(
+        beanFactory.getBeanProvider(FlightRecordingService.class))
+        .postProcessAfterInitialization(s3Service, "s3Service");
+  }
+
+  @Test
+  @DisplayName("Dump expect product operations of the window with their phase and bytes")
+  void dump_expectProductOperationsRecorded() throws Exception {
+    S3Service s3Service = recordedS3Service();
+    s3Service.uploadFile("1-image.png", new ByteArrayInputStream(new byte[42]), 42,
+        "image/png");
+    s3Service.downloadFile("1-image.png", directory.resolve("download"));
+
+    Path dump = flightRecordingService.dump(Duration.ofMinutes(1));
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+    List<RecordedEvent> operations = events.stream()
+        .filter(event -> event.getEventType().getName()
+            .equals("com.sample.products.ProductOperation"))
+        .toList();
+    Assertions.assertEquals(List.of("s3Service.uploadFile", "s3Service.downloadFile"),
+        operations.stream().map(event -> event.getString("operation")).toList());
+    operations.forEach(event -> {
+      Assertions.assertEquals("storage", event.getString("phase"));
+      Assertions.assertEquals(42, event.getLong("bytes"));
+      Assertions.assertFalse(event.getBoolean("failed"));
+    });
+    Assertions.assertTrue(events.stream().noneMatch(event -> event.getEventType().getName()
+        .equals("jdk.InitialEnvironmentVariable")));
+  }
+
+  @Test
+  @DisplayName("Check latency expect one dump per interval when the SLO is breached")
+  void checkLatency_expectDumpOnSloBreach() throws Exception {
+    flightRecordingService.checkLatency("productService.getProductDetail",
+        Duration.ofMillis(50));
+    flightRecordingService.checkLatency("productService.getProductDetail",
+        Duration.ofMillis(500));
+    flightRecordingService.checkLatency("productService.getProductDetail",
+        Duration.ofMillis(500));
+
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    List<Path> dumps = sloDumps();
+    while (dumps.isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(50);
+      dumps = sloDumps();
+    }
+    Thread.sleep(200);
+    Assertions.assertEquals(1, sloDumps().size());
+  }
+
+  private List<Path> sloDumps() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("slo-")
+              && Files.isRegularFile(file))
+          .toList();
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com.sample.productsmanagement.repository.shard;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.sample.productsmanagement.repository.shard.ProductShards.IdRange;
+import com.sample.productsmanagement.repository.shard.ShardingProperties.MoveProperties;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RangeProductShardsTest {
+
+  private static Shard shard(String name, int idStart, int idEnd, boolean acceptsNewProducts) {
+    return new Shard(name, mock(DataSource.class), new IdRange(idStart, idEnd),
+        acceptsNewProducts, List.of());
+  }
+
+  private static List<Shard> shards() {
+    return List.of(shard("a", 1, 1000, true), shard("b", 1000, 2000, true),
+        shard("c", 2000, 3000, false));
+  }
+
+  @Test
+  @DisplayName("Shard for expect the shard whose range holds the id and the first one otherwise")
+  void shardFor_expectRangeOwner() {
+    RangeProductShards productShards = new RangeProductShards(shards(), List.of(), 1);
+
+    Assertions.assertEquals(List.of("a", "b", "c"), productShards.names());
+    Assertions.assertEquals("a", productShards.shardFor(1));
+    Assertions.assertEquals("a", productShards.shardFor(999));
+    Assertions.assertEquals("b", productShards.shardFor(1000));
+    Assertions.assertEquals("c", productShards.shardFor(2999));
+    Assertions.assertEquals("a", productShards.shardFor(3000));
+    Assertions.assertTrue(productShards.pendingMoves().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Shard for new product expect round robin over the shards accepting new products")
+  void shardForNewProduct_expectRoundRobin() {
+    RangeProductShards productShards = new RangeProductShards(shards(), List.of(), 1);
+
+    Assertions.assertEquals(List.of("a", "b", "a", "b"), List.of(
+        productShards.shardForNewProduct(), productShards.shardForNewProduct(),
+        productShards.shardForNewProduct(), productShards.shardForNewProduct()));
+  }
+
+  @Test
+  @DisplayName("Shard for expect a moved row found on its previous shard until it was moved")
+  void shardFor_expectPreviousOwnerWhileMoving() {
+    RangeProductShards productShards = spy(new RangeProductShards(shards(),
+        List.of(new MoveProperties(500, 1000, "c", false)), 1));
+    doReturn(true).when(productShards).hasRows("a", new IdRange(500, 1000));
+    doReturn(true).when(productShards).contains("a", 600);
+    doReturn(false).when(productShards).contains("a", 700);
+
+    Assertions.assertEquals("a", productShards.shardFor(600));
+    Assertions.assertEquals("c", productShards.shardFor(700));
+    Assertions.assertEquals("a", productShards.shardFor(499));
+    verify(productShards, never()).contains("a", 499);
+    Assertions.assertEquals(List.of(new RangeProductShards.Segment(new IdRange(500, 1000), "c",
+        "a")), productShards.pendingMoves());
+
+    Assertions.assertEquals("a", productShards.shardFor(600));
+    Assertions.assertEquals("c", productShards.shardFor(700));
+    verify(productShards, times(2)).contains("a", 600);
+    verify(productShards, times(1)).contains("a", 700);
+  }
+
+  @Test
+  @DisplayName("Shard for expect no lookup on the previous shard once it has no row of the range")
+  void shardFor_expectNoLookupOnceDrained() {
+    RangeProductShards productShards = spy(new RangeProductShards(shards(),
+        List.of(new MoveProperties(500, 1000, "c", false)), 1));
+    doReturn(false).when(productShards).hasRows("a", new IdRange(500, 1000));
+
+    Assertions.assertEquals("c", productShards.shardFor(600));
+    Assertions.assertEquals("c", productShards.shardFor(700));
+    verify(productShards, never()).contains(eq("a"), anyInt());
+    verify(productShards, times(1)).hasRows("a", new IdRange(500, 1000));
+  }
+
+  @Test
+  @DisplayName("Group by shard expect ids of a moving range looked up in one query")
+  void groupByShard_expectOneLookupPerMovingRange() {
+    RangeProductShards productShards = spy(new RangeProductShards(shards(),
+        List.of(new MoveProperties(500, 1000, "c", false)), 1));
+    doReturn(true).when(productShards).hasRows("a", new IdRange(500, 1000));
+    doReturn(Set.of(600)).when(productShards).containing("a", List.of(600, 700));
+
+    Assertions.assertEquals(Map.of("a", List.of(1, 600), "b", List.of(1500), "c", List.of(700)),
+        productShards.groupByShard(List.of(1, 600, 1500, 700)));
+    verify(productShards, never()).contains(anyString(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Moves expect moved ranges no longer allocated by their previous shard")
+  void moves_expectMovedRangesNotAllocated() {
+    RangeProductShards productShards = spy(new RangeProductShards(shards(),
+        List.of(new MoveProperties(500, 1500, "c", true)), 1));
+
+    Shard a = productShards.shard("a");
+    Assertions.assertTrue(a.allocates(499));
+    Assertions.assertFalse(a.allocates(500));
+    Assertions.assertFalse(productShards.shard("b").allocates(1499));
+    Assertions.assertTrue(productShards.shard("b").allocates(1500));
+    Assertions.assertTrue(productShards.shard("c").allocates(2000));
+    Assertions.assertEquals("c", productShards.shardFor(1200));
+    verify(productShards, never()).contains("b", 1200);
+    Assertions.assertTrue(productShards.pendingMoves().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Constructor expect overlapping ranges and duplicate names rejected")
+  void constructor_expectInvalidShardsRejected() {
+    Assertions.assertThrows(IllegalStateException.class, () -> new RangeProductShards(
+        List.of(shard("a", 1, 1000, true), shard("b", 999, 2000, true)), List.of(), 1));
+    Assertions.assertThrows(IllegalStateException.class, () -> new RangeProductShards(
+        List.of(shard("a", 1, 1000, true), shard("a", 1000, 2000, true)), List.of(), 1));
+    Assertions.assertThrows(IllegalStateException.class, () -> new RangeProductShards(
+        List.of(shard("a", 1, 1000, true)), List.of(new MoveProperties(1, 10, "x", false)), 1));
+  }
+
+  @Test
+  @DisplayName("Merge expect the shards' results ordered, deduplicated and cut to the limit")
+  void merge_expectOrderedResults() {
+    Comparator<Integer> order = Comparator.naturalOrder();
+
+    Assertions.assertEquals(List.of(1, 2, 3, 5),
+        ProductShards.merge(List.of(List.of(1, 3, 5, 7), List.of(2, 3)), order, 4));
+    Assertions.assertEquals(List.of(4, 8),
+        ProductShards.merge(List.of(List.of(4, 8, 9)), order, 2));
+    Assertions.assertEquals(List.of(),
+        ProductShards.merge(List.of(List.of(), List.of()), order, 10));
+  }
+}
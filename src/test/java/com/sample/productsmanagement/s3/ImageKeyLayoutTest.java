@@ -0,0 +1,53 @@
+package com.sample.productsmanagement.s3;
+
+import com.sample.productsmanagement.service.s3.FlatImageKeyLayout;
+import com.sample.productsmanagement.service.s3.HashedImageKeyLayout;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ImageKeyLayoutTest {
+
+  @Test
+  @DisplayName("Normalize filename expect path, accents and unsafe characters removed")
+  void normalizeFilename_expectSafeName() {
+    Assertions.assertEquals("test.png", ImageKeyLayout.normalizeFilename("test.png"));
+    Assertions.assertEquals("Cafe-creme-1-.jpg",
+        ImageKeyLayout.normalizeFilename("C:\\photos\\Café crème (1).jpg"));
+    Assertions.assertEquals("passwd", ImageKeyLayout.normalizeFilename("../../etc/passwd"));
+    Assertions.assertEquals("image", ImageKeyLayout.normalizeFilename("画像"));
+    Assertions.assertEquals("image", ImageKeyLayout.normalizeFilename(null));
+  }
+
+  @Test
+  @DisplayName("Normalize filename expect long names cut to the limit keeping the extension")
+  void normalizeFilename_expectBoundedLength() {
+    String name = ImageKeyLayout.normalizeFilename("a".repeat(500) + ".jpeg");
+
+    Assertions.assertEquals(ImageKeyLayout.MAX_FILENAME_LENGTH, name.length());
+    Assertions.assertTrue(name.endsWith("a.jpeg"));
+  }
+
+  @Test
+  @DisplayName("Key for expect flat layout keep id prefix and hashed layout spread ids")
+  void keyFor_expectLayoutKeys() {
+    HashedImageKeyLayout hashed = new HashedImageKeyLayout();
+    ReflectionTestUtils.setField(hashed, "prefixLength", 2);
+
+    Assertions.assertEquals("7-my-image.png",
+        new FlatImageKeyLayout().keyFor(7, "my image.png"));
+    Assertions.assertTrue(hashed.keyFor(7, "my image.png")
+        .matches("[0-9a-f]{2}/7-my-image\\.png"));
+    Assertions.assertEquals(hashed.keyFor(7, "a.png").substring(0, 3),
+        hashed.keyFor(7, "b.png").substring(0, 3));
+    Set<String> prefixes = new HashSet<>();
+    for (int id = 1; id <= 5000; id++) {
+      prefixes.add(hashed.keyFor(id, "a.png").substring(0, 2));
+    }
+    Assertions.assertEquals(256, prefixes.size());
+  }
+}
@@ -0,0 +1,165 @@
+package com.sample.productsmanagement.s3;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.service.s3.S3CallExecutor;
+import com.sample.productsmanagement.service.s3.S3CallExecutor.AsyncCall;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class S3CallExecutorTest {
+
+  private static final Duration LATENCY = Duration.ofMillis(500);
+
+  @Mock
+  private ObjectStorage objectStorage;
+
+  private S3Service s3Service;
+  private CircuitBreaker circuitBreaker;
+  private ThreadPoolBulkhead bulkhead;
+
+  @BeforeEach
+  void setup() {
+    circuitBreaker = CircuitBreaker.of("s3", CircuitBreakerConfig.custom()
+        .slidingWindowSize(2)
+        .minimumNumberOfCalls(2)
+        .waitDurationInOpenState(Duration.ofMinutes(1))
+        .build());
+    bulkhead = ThreadPoolBulkhead.of("s3", ThreadPoolBulkheadConfig.custom()
+        .coreThreadPoolSize(1)
+        .maxThreadPoolSize(1)
+        .queueCapacity(1)
+        .build());
+    TimeLimiter timeLimiter = TimeLimiter.of(TimeLimiterConfig.custom()
+        .timeoutDuration(Duration.ofMillis(100))
+        .build());
+
+    s3Service = new S3Service();
+    ReflectionTestUtils.setField(s3Service, "objectStorage", objectStorage);
+    ReflectionTestUtils.setField(s3Service, "bucketName", "testBucket");
+    ReflectionTestUtils.setField(s3Service, "s3CallExecutor",
+        new S3CallExecutor(circuitBreaker, bulkhead, timeLimiter));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    bulkhead.close();
+  }
+
+  private void injectLatency() {
+    doAnswer(invocation -> {
+      Thread.sleep(LATENCY.toMillis());
+      return null;
+    }).when(objectStorage).delete(eq("testBucket"), anyString());
+  }
+
+  @Test
+  @DisplayName("Delete file expect fail fast with storage unavailable when S3 is slower than timeout")
+  void deleteFile_expectTimeoutWhenS3IsSlow() {
+    injectLatency();
+    long start = System.nanoTime();
+
+    Assertions.assertThrows(StorageUnavailableException.class, () -> s3Service.deleteFile("test"));
+    Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(LATENCY) < 0);
+  }
+
+  @Test
+  @DisplayName("Get PreSigned Url expect return null without calling S3 when circuit is open")
+  void getPreSignedUrl_expectNullWhenCircuitOpen() {
+    injectLatency();
+    Assertions.assertThrows(StorageUnavailableException.class, () -> s3Service.deleteFile("a"));
+    Assertions.assertThrows(StorageUnavailableException.class, () -> s3Service.deleteFile("b"));
+
+    Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    Assertions.assertNull(s3Service.getPreSignedUrl("1-image.png"));
+  }
+
+  @Test
+  @DisplayName("Upload file expect rejected immediately when circuit is open")
+  void uploadFile_expectRejectedWhenCircuitOpen() {
+    circuitBreaker.transitionToOpenState();
+    MockMultipartFile file = new MockMultipartFile("example", "test".getBytes());
+
+    StorageUnavailableException exception = Assertions.assertThrows(
+        StorageUnavailableException.class, () -> s3Service.uploadFile("test", file));
+    Assertions.assertEquals("S3 circuit breaker is open", exception.getMessage());
+    verify(objectStorage, never()).put(anyString(), anyString(), any(), anyLong(), any());
+  }
+
+  @Test
+  @DisplayName("Upload file async expect storage unavailable and failure recorded when S3 is slower than timeout")
+  void uploadFileAsync_expectTimeoutWhenS3IsSlow() throws Exception {
+    doAnswer(invocation -> {
+      Thread.sleep(LATENCY.toMillis());
+      return null;
+    }).when(objectStorage).put(eq("testBucket"), eq("test"), any(), anyLong(), any());
+    MockMultipartFile file = new MockMultipartFile("example", "test".getBytes());
+
+    AsyncCall<String> upload = s3Service.uploadFileAsync("test", file);
+
+    Assertions.assertFalse(upload.result().isDone());
+    CompletionException exception = Assertions.assertThrows(CompletionException.class,
+        upload.result()::join);
+    Assertions.assertInstanceOf(StorageUnavailableException.class, exception.getCause());
+    Assertions.assertEquals(1, circuitBreaker.getMetrics().getNumberOfFailedCalls());
+  }
+
+  @Test
+  @DisplayName("Upload file async expect finished and stream closed only once the timed out upload returns")
+  void uploadFileAsync_expectFinishedWhenTimedOutUploadReturns() throws Exception {
+    CountDownLatch putReturns = new CountDownLatch(1);
+    AtomicBoolean closedDuringPut = new AtomicBoolean();
+    AtomicBoolean closed = new AtomicBoolean();
+    InputStream inputStream = new ByteArrayInputStream("test".getBytes()) {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+    doAnswer(invocation -> {
+      putReturns.await();
+      closedDuringPut.set(closed.get());
+      return null;
+    }).when(objectStorage).put(eq("testBucket"), eq("test"), any(), anyLong(), any());
+
+    AsyncCall<String> upload = s3Service.uploadFileAsync("test", inputStream, 4, "text/plain");
+
+    Assertions.assertThrows(CompletionException.class, upload.result()::join);
+    Assertions.assertFalse(upload.finished().isDone());
+    putReturns.countDown();
+    upload.finished().get(1, TimeUnit.SECONDS);
+    Assertions.assertFalse(closedDuringPut.get());
+    Assertions.assertTrue(closed.get());
+  }
+}
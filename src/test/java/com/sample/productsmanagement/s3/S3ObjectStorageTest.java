@@ -0,0 +1,105 @@
+package com.sample.productsmanagement.s3;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.sample.productsmanagement.service.s3.S3ObjectStorage;
+import com.sample.productsmanagement.service.s3.S3PreSigner;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class S3ObjectStorageTest {
+
+  @Mock
+  private AmazonS3 s3Client;
+
+  @Mock
+  private S3PreSigner s3PreSigner;
+
+  private S3ObjectStorage objectStorage;
+
+  @BeforeEach
+  void setup() {
+    objectStorage = new S3ObjectStorage(s3Client, s3PreSigner);
+  }
+
+  @Test
+  @DisplayName("Download expect empty when S3 answers not found")
+  void download_expectEmptyWhenNotFound() {
+    AmazonS3Exception notFound = new AmazonS3Exception("Not Found");
+    notFound.setStatusCode(404);
+    when(s3Client.getObject(any(GetObjectRequest.class), any(File.class))).thenThrow(notFound);
+
+    Assertions.assertEquals(Optional.empty(),
+        objectStorage.download("images", "1-image.png", Path.of("target")));
+  }
+
+  @Test
+  @DisplayName("Delete expect keys split into multi-object requests of at most 1000 keys")
+  void delete_expectRequestsOfAtMostThousandKeys() {
+    List<String> keys = IntStream.range(0, 2500).mapToObj(id -> id + "-test.png").toList();
+
+    objectStorage.delete("images", keys);
+
+    ArgumentCaptor<DeleteObjectsRequest> requests =
+        ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    verify(s3Client, times(3)).deleteObjects(requests.capture());
+    Assertions.assertEquals(List.of(1000, 1000, 500), requests.getAllValues().stream()
+        .map(request -> request.getKeys().size())
+        .toList());
+    requests.getAllValues().forEach(request -> {
+      Assertions.assertEquals("images", request.getBucketName());
+      Assertions.assertTrue(request.getQuiet());
+    });
+  }
+
+  @Test
+  @DisplayName("List expect summaries of the page and a token only while truncated")
+  void list_expectSummariesAndToken() {
+    S3ObjectSummary summary = new S3ObjectSummary();
+    summary.setKey("1-image.png");
+    summary.setSize(42);
+    summary.setLastModified(Date.from(Instant.ofEpochSecond(1000)));
+    ListObjectsV2Result result = new ListObjectsV2Result();
+    result.getObjectSummaries().add(summary);
+    result.setNextContinuationToken("ignored");
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(result);
+
+    ObjectListing listing = objectStorage.list("images", "0-image.png", null, 10);
+
+    ArgumentCaptor<ListObjectsV2Request> request =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    verify(s3Client).listObjectsV2(request.capture());
+    Assertions.assertEquals("0-image.png", request.getValue().getStartAfter());
+    Assertions.assertEquals(10, request.getValue().getMaxKeys());
+    Assertions.assertEquals(1, listing.objects().size());
+    Assertions.assertEquals("images", listing.objects().get(0).bucket());
+    Assertions.assertEquals(42, listing.objects().get(0).size());
+    Assertions.assertEquals(Instant.ofEpochSecond(1000), listing.objects().get(0).lastModified());
+    Assertions.assertFalse(listing.isTruncated());
+  }
+}
@@ -6,16 +6,23 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import com.amazonaws.HttpMethod;
-import com.amazonaws.services.s3.AmazonS3;
+import com.sample.productsmanagement.service.s3.S3CallExecutor;
 import com.sample.productsmanagement.service.s3.S3Service;
-import java.net.URI;
-import java.net.URL;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -29,21 +36,26 @@ class S3ServiceTest {
   private S3Service s3Service;
 
   @Mock
-  private AmazonS3 s3Client;
+  private ObjectStorage objectStorage;
 
   @BeforeEach
   public void setup(){
     ReflectionTestUtils.setField(s3Service, "bucketName", "testBucket");
+    ReflectionTestUtils.setField(s3Service, "s3CallExecutor", new S3CallExecutor(
+        CircuitBreaker.ofDefaults("s3"), ThreadPoolBulkhead.ofDefaults("s3"),
+        TimeLimiter.ofDefaults("s3")));
   }
 
   @Test
   @DisplayName("Upload file expect return pre signed url when success upload file to s3")
   public void uploadFile_expectReturnUrl() throws Exception {
-    URL url = new URI("https://test.example.com").toURL();
     MockMultipartFile mockMultipartFile = new MockMultipartFile("example", "".getBytes());
-    when(s3Client.generatePresignedUrl(eq("testBucket"), eq("test"), any(), eq(HttpMethod.GET))).thenReturn(url);
+    when(objectStorage.presignGet(eq("testBucket"), eq("test"), any(Instant.class),
+        any(Duration.class))).thenReturn("https://test.example.com");
 
     Assertions.assertEquals("https://test.example.com", s3Service.uploadFile("test", mockMultipartFile));
+    verify(objectStorage, times(1)).put(eq("testBucket"), eq("test"), any(InputStream.class),
+        eq(0L), any());
   }
 
   @Test
@@ -57,6 +69,26 @@ class S3ServiceTest {
   public void deleteFile_expectCallS3DeleteObject(){
     s3Service.deleteFile("test");
 
-    verify(s3Client, times(1)).deleteObject("testBucket", "test");
+    verify(objectStorage, times(1)).delete("testBucket", "test");
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("Delete files expect keys grouped by the bucket they route to when buckets set")
+  public void deleteFiles_expectOneRequestPerBucket() {
+    ReflectionTestUtils.setField(s3Service, "buckets", List.of("images-a", "images-b"));
+    List<String> keys = IntStream.range(0, 20).mapToObj(id -> id + "-test.png").toList();
+
+    s3Service.deleteFiles(keys);
+
+    ArgumentCaptor<String> buckets = ArgumentCaptor.forClass(String.class);
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<String>> batches = ArgumentCaptor.forClass(List.class);
+    verify(objectStorage, times(2)).delete(buckets.capture(), batches.capture());
+    for (int i = 0; i < 2; i++) {
+      String bucket = buckets.getAllValues().get(i);
+      Assertions.assertFalse(batches.getAllValues().get(i).isEmpty());
+      batches.getAllValues().get(i).forEach(key -> Assertions.assertEquals(bucket,
+          s3Service.bucketFor(key)));
+    }
+  }
+}
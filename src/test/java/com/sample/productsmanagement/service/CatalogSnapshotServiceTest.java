@@ -0,0 +1,192 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.ProductRow;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.snapshot.CatalogSnapshotService;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogSnapshotServiceTest {
+
+  @InjectMocks
+  private CatalogSnapshotService catalogSnapshotService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private ProductChangeRepository productChangeRepository;
+
+  @TempDir
+  private Path directory;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(catalogSnapshotService, "directory", directory);
+    ReflectionTestUtils.setField(catalogSnapshotService, "pageSize", 2);
+    ReflectionTestUtils.setField(catalogSnapshotService, "commitWindow", Duration.ofSeconds(30));
+    ReflectionTestUtils.setField(catalogSnapshotService, "maxOverlaySize", 10);
+  }
+
+  private ProductRow row(int id, String name, String imageLocation, ImageMetadata image) {
+    return new ProductRow() {
+      @Override
+      public int getId() {
+        return id;
+      }
+
+      @Override
+      public String getName() {
+        return name;
+      }
+
+      @Override
+      public int getPrice() {
+        return id * 10;
+      }
+
+      @Override
+      public int getQuantity() {
+        return id;
+      }
+
+      @Override
+      public String getImageLocation() {
+        return imageLocation;
+      }
+
+      @Override
+      public String getImageFormat() {
+        return image == null ? null : image.getFormat();
+      }
+
+      @Override
+      public Integer getImageWidth() {
+        return image == null ? null : image.getWidth();
+      }
+
+      @Override
+      public Integer getImageHeight() {
+        return image == null ? null : image.getHeight();
+      }
+
+      @Override
+      public Long getImageSize() {
+        return image == null ? null : image.getSize();
+      }
+
+      @Override
+      public Long getImageVersion() {
+        return image == null ? null : image.getVersion();
+      }
+    };
+  }
+
+  private ProductChange change(long id, int productId, ChangeType type) {
+    return new ProductChange(id, productId, type, Instant.now().minus(Duration.ofMinutes(1)));
+  }
+
+  private void buildSnapshot() {
+    when(productChangeRepository.findLastIdCreatedBefore(any())).thenReturn(5L);
+    when(productRepository.findRowsAfter(0, 2)).thenReturn(List.of(
+        row(1, "first product", "1-image.png", new ImageMetadata("png", 2, 3, 33L, 1700000000000L)),
+        row(2, "second product", null, null)));
+    when(productRepository.findRowsAfter(2, 2)).thenReturn(List.of(
+        row(3, "third produit élevé", "3-image.webp", new ImageMetadata("webp", null, null, 9L))));
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(5L), any(Limit.class)))
+        .thenReturn(List.of());
+
+    catalogSnapshotService.rebuild();
+  }
+
+  @Test
+  @DisplayName("Rebuild expect every product read back from the snapshot file")
+  void rebuild_expectProductsReadFromSnapshot() throws IOException {
+    buildSnapshot();
+
+    Assertions.assertTrue(catalogSnapshotService.isLoaded());
+    Assertions.assertEquals(Optional.of(new Product(1, "first product", 10, 1, "1-image.png",
+            new ImageMetadata("png", 2, 3, 33L, 1700000000000L), false, null)),
+        catalogSnapshotService.find(1));
+    Assertions.assertEquals(Optional.of(new Product(2, "second product", 20, 2, null)),
+        catalogSnapshotService.find(2));
+    Assertions.assertEquals(Optional.of(new Product(3, "third produit élevé", 30, 3,
+            "3-image.webp", new ImageMetadata("webp", null, null, 9L), false, null)),
+        catalogSnapshotService.find(3));
+    Assertions.assertEquals(Optional.empty(), catalogSnapshotService.find(0));
+    Assertions.assertEquals(Optional.empty(), catalogSnapshotService.find(4));
+
+    catalogSnapshotService.rebuild();
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertEquals(1, files.count());
+    }
+  }
+
+  @Test
+  @DisplayName("Refresh expect changed products overlaid and deleted products hidden")
+  void refresh_expectChangesApplied() {
+    buildSnapshot();
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(5L), any(Limit.class)))
+        .thenReturn(List.of(change(6, 2, ChangeType.UPDATED), change(7, 3, ChangeType.DELETED)))
+        .thenReturn(List.of());
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(7L), any(Limit.class)))
+        .thenReturn(List.of(change(8, 9, ChangeType.CREATED)));
+    when(productRepository.findRowsById(anyCollection()))
+        .thenReturn(List.of(row(2, "renamed product", null, null)))
+        .thenReturn(List.of(row(9, "new product", null, null)));
+
+    catalogSnapshotService.refresh();
+
+    Assertions.assertEquals("renamed product",
+        catalogSnapshotService.find(2).orElseThrow().getName());
+    Assertions.assertEquals(Optional.empty(), catalogSnapshotService.find(3));
+    Assertions.assertEquals("new product",
+        catalogSnapshotService.find(9).orElseThrow().getName());
+    Assertions.assertEquals("first product",
+        catalogSnapshotService.find(1).orElseThrow().getName());
+
+    catalogSnapshotService.find(2).orElseThrow().setName("modified by caller");
+    Assertions.assertEquals("renamed product",
+        catalogSnapshotService.find(2).orElseThrow().getName());
+
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(8L), any(Limit.class)))
+        .thenReturn(List.of());
+    catalogSnapshotService.refresh();
+    verify(productChangeRepository).findByIdGreaterThanOrderByIdAsc(eq(8L), any(Limit.class));
+  }
+}
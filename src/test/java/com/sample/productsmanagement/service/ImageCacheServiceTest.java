@@ -0,0 +1,119 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.service.image.CachedImage;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.StoredObject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+@ExtendWith(MockitoExtension.class)
+class ImageCacheServiceTest {
+
+  @InjectMocks
+  private ImageCacheService imageCacheService;
+
+  @Mock
+  private S3Service s3Service;
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(imageCacheService, "directory", directory);
+    ReflectionTestUtils.setField(imageCacheService, "maxSize", DataSize.ofBytes(10));
+    ReflectionTestUtils.setField(imageCacheService, "retention", Duration.ZERO);
+    when(s3Service.downloadFile(anyString(), any(Path.class))).thenAnswer(invocation -> {
+      Files.write(invocation.getArgument(1), new byte[4]);
+      return Optional.of(new StoredObject(4, "image/png", "etag-" + invocation.getArgument(0),
+          null));
+    });
+  }
+
+  @Test
+  @DisplayName("Get expect download once and serve following reads from disk")
+  void get_expectDownloadOnce() {
+    CachedImage first = imageCacheService.get("1-image.png");
+    CachedImage second = imageCacheService.get("1-image.png");
+
+    Assertions.assertSame(first, second);
+    Assertions.assertEquals("\"etag-1-image.png\"", first.eTag());
+    Assertions.assertTrue(Files.exists(first.path()));
+    verify(s3Service, times(1)).downloadFile(anyString(), any(Path.class));
+  }
+
+  @Test
+  @DisplayName("Get expect least recently used image removed when cache exceeds max size")
+  void get_expectLeastRecentlyUsedEvicted() {
+    CachedImage first = imageCacheService.get("1-image.png");
+    imageCacheService.get("2-image.png");
+    imageCacheService.get("1-image.png");
+    CachedImage third = imageCacheService.get("3-image.png");
+
+    Assertions.assertTrue(Files.exists(first.path()));
+    Assertions.assertTrue(Files.exists(third.path()));
+    imageCacheService.get("2-image.png");
+    verify(s3Service, times(2)).downloadFile(eq("2-image.png"), any(Path.class));
+  }
+
+  @Test
+  @DisplayName("Evict expect cached file removed and next read downloaded again")
+  void evict_expectDownloadAgain() {
+    CachedImage image = imageCacheService.get("1-image.png");
+    imageCacheService.evict("1-image.png");
+
+    Assertions.assertFalse(Files.exists(image.path()));
+    imageCacheService.get("1-image.png");
+    verify(s3Service, times(2)).downloadFile(eq("1-image.png"), any(Path.class));
+  }
+
+  @Test
+  @DisplayName("Evict expect file kept for the retention and next read downloaded again")
+  void evict_expectFileKeptForRetention() {
+    ReflectionTestUtils.setField(imageCacheService, "retention", Duration.ofMinutes(1));
+    CachedImage image = imageCacheService.get("1-image.png");
+    imageCacheService.evict("1-image.png");
+    CachedImage downloadedAgain = imageCacheService.get("1-image.png");
+
+    Assertions.assertTrue(Files.exists(image.path()));
+    Assertions.assertNotEquals(image.path(), downloadedAgain.path());
+  }
+
+  @Test
+  @DisplayName("Evict expect an opened file still readable and the next download in a new file")
+  void evict_expectOpenedFileReadable() throws IOException {
+    CachedImage image = imageCacheService.get("1-image.png");
+    try (FileChannel channel = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+      imageCacheService.evict("1-image.png");
+      CachedImage downloadedAgain = imageCacheService.get("1-image.png");
+
+      Assertions.assertNotEquals(image.path(), downloadedAgain.path());
+      Assertions.assertEquals(4, channel.read(ByteBuffer.allocate(8), 0));
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.sample.productsmanagement.service;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.sample.productsmanagement.exception.InvalidFileFormatException;
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.image.ImageInspector.InspectedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+class ImageInspectorTest {
+
+  private final ImageInspector imageInspector = new ImageInspector();
+
+  static byte[] png(int width, int height) {
+    return ByteBuffer.allocate(33)
+        .put(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13})
+        .put("IHDR".getBytes(StandardCharsets.US_ASCII))
+        .putInt(width)
+        .putInt(height)
+        .put(new byte[] {8, 6, 0, 0, 0})
+        .array();
+  }
+
+  private static byte[] jpeg(int metadataLength, int width, int height) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    output.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xD8});
+    output.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xE1, (byte) (metadataLength >> 8),
+        (byte) metadataLength});
+    output.writeBytes(new byte[metadataLength - 2]);
+    output.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xC0, 0, 17, 8, (byte) (height >> 8),
+        (byte) height, (byte) (width >> 8), (byte) width, 3});
+    output.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xD9});
+    return output.toByteArray();
+  }
+
+  private ImageMetadata inspect(byte[] bytes) throws IOException {
+    InspectedImage image = imageInspector.inspect(new ByteArrayInputStream(bytes), bytes.length);
+    Assertions.assertArrayEquals(bytes, image.content().readAllBytes());
+    return image.metadata();
+  }
+
+  @Test
+  @DisplayName("Inspect expect format and dimensions read and content replayed from the start")
+  void inspect_expectMetadataAndFullContent() throws IOException {
+    byte[] gif = {'G', 'I', 'F', '8', '9', 'a', 0x40, 0x01, (byte) 0xF0, 0x00};
+    byte[] jpeg = jpeg(20000, 1920, 1080);
+
+    Assertions.assertEquals(new ImageMetadata("png", 640, 480, 33L), inspect(png(640, 480)));
+    Assertions.assertEquals(new ImageMetadata("gif", 320, 240, 10L), inspect(gif));
+    Assertions.assertEquals(new ImageMetadata("jpeg", 1920, 1080, (long) jpeg.length),
+        inspect(jpeg));
+  }
+
+  @Test
+  @DisplayName("Inspect expect JPEG accepted without dimensions when frame header is past the limit")
+  void inspect_expectJpegWithoutDimensionsBeyondLimit() throws IOException {
+    ReflectionTestUtils.setField(imageInspector, "maxHeaderSize", DataSize.ofKilobytes(16));
+    byte[] jpeg = jpeg(20000, 1920, 1080);
+
+    Assertions.assertEquals(new ImageMetadata("jpeg", null, null, (long) jpeg.length),
+        inspect(jpeg));
+  }
+
+  @Test
+  @DisplayName("Inspect expect invalid file format for unknown, truncated and oversized images")
+  void inspect_expectInvalidImagesRejected() {
+    ReflectionTestUtils.setField(imageInspector, "maxPixels", 1_000_000L);
+
+    Assertions.assertEquals("unrecognized content", assertThrows(
+        InvalidFileFormatException.class, () -> inspect("%PDF-1.7".getBytes())).getMessage());
+    Assertions.assertEquals("a truncated image", assertThrows(InvalidFileFormatException.class,
+        () -> inspect(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}))
+        .getMessage());
+    Assertions.assertEquals("a 2000x1000 image, larger than 1000000 pixels", assertThrows(
+        InvalidFileFormatException.class, () -> inspect(png(2000, 1000))).getMessage());
+  }
+}
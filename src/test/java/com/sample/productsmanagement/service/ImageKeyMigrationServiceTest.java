@@ -0,0 +1,127 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.ProductImage;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.product.ImageKeyMigrationService;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3Service;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ImageKeyMigrationServiceTest {
+
+  @InjectMocks
+  private ImageKeyMigrationService imageKeyMigrationService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private S3Service s3Service;
+
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setup() {
+    ImageKeyLayout layout = (productId, originalFilename) ->
+        String.format("p/%s-%s", productId, originalFilename);
+    ReflectionTestUtils.setField(imageKeyMigrationService, "imageKeyLayout", layout);
+    ReflectionTestUtils.setField(imageKeyMigrationService, "sourceBucket", "");
+    ReflectionTestUtils.setField(imageKeyMigrationService, "pageSize", 3);
+    ReflectionTestUtils.setField(imageKeyMigrationService, "concurrency", 2);
+    ReflectionTestUtils.setField(imageKeyMigrationService, "deleteSource", true);
+    ReflectionTestUtils.invokeMethod(imageKeyMigrationService, "init");
+    when(s3Service.bucketFor(anyString())).thenReturn("images");
+    when(transactionTemplate.execute(any())).thenAnswer(
+        invocation -> invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.invokeMethod(imageKeyMigrationService, "destroy");
+  }
+
+  private ProductImage image(int id, String imageLocation) {
+    return new ProductImage() {
+      @Override
+      public int getId() {
+        return id;
+      }
+
+      @Override
+      public String getImageLocation() {
+        return imageLocation;
+      }
+    };
+  }
+
+  @Test
+  @DisplayName("Migrate expect images copied, locations moved and sources deleted")
+  void migrate_expectImagesMoved() {
+    when(productRepository.findImagesAfter(0, 3)).thenReturn(List.of(image(1, "1-a.png"),
+        image(2, "p/2-b.png"), image(3, "3-c.png")));
+    when(productRepository.findImagesAfter(3, 3)).thenReturn(List.of(image(4, "4-d.png")));
+    when(productRepository.lockImages(List.of(1, 3))).thenReturn(List.of(image(1, "1-a.png"),
+        image(3, "3-c.png")));
+    when(productRepository.lockImages(List.of(4))).thenReturn(List.of(image(4, "4-d.png")));
+    when(productRepository.moveImageLocation(anyInt(), anyString(), anyString())).thenReturn(1);
+    when(productRepository.moveImageLocation(3, "3-c.png", "p/3-c.png")).thenReturn(0);
+    lenient().doThrow(new StorageUnavailableException("S3 is unavailable", null))
+        .when(s3Service).copyFile("images", "4-d.png", "p/4-d.png");
+
+    imageKeyMigrationService.migrate();
+
+    verify(s3Service).copyFile("images", "1-a.png", "p/1-a.png");
+    verify(s3Service).copyFile("images", "3-c.png", "p/3-c.png");
+    verify(s3Service, never()).copyFile(anyString(), eq("p/2-b.png"), anyString());
+    verify(productRepository).moveImageLocation(1, "1-a.png", "p/1-a.png");
+    verify(productRepository, never()).moveImageLocation(eq(4), anyString(), anyString());
+    verify(s3Service).deleteFiles("images", List.of("1-a.png"));
+  }
+
+  @Test
+  @DisplayName("Migrate expect image replaced after the page was read not copied over")
+  void migrate_expectReplacedImageNotCopied() {
+    ReflectionTestUtils.setField(imageKeyMigrationService, "concurrency", 1);
+    when(productRepository.findImagesAfter(0, 3)).thenReturn(List.of(image(1, "1-a.png"),
+        image(2, "2-b.png")));
+    when(productRepository.lockImages(List.of(1))).thenReturn(List.of(image(1, "p/1-a.png")));
+    when(productRepository.lockImages(List.of(2))).thenReturn(List.of(image(2, "2-b.png")));
+    when(productRepository.moveImageLocation(2, "2-b.png", "p/2-b.png")).thenReturn(1);
+
+    imageKeyMigrationService.migrate();
+
+    verify(s3Service, never()).copyFile(anyString(), eq("1-a.png"), anyString());
+    verify(productRepository, never()).moveImageLocation(eq(1), anyString(), anyString());
+    verify(s3Service).copyFile("images", "2-b.png", "p/2-b.png");
+    verify(s3Service).deleteFiles("images", List.of("2-b.png"));
+  }
+}
@@ -0,0 +1,192 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.model.ReconciliationCheckpoint;
+import com.sample.productsmanagement.repository.NamedLocks;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ReconciliationCheckpointRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.product.ImageReconciliationService;
+import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import com.sample.productsmanagement.service.storage.ObjectSummary;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class ImageReconciliationServiceTest {
+
+  @InjectMocks
+  private ImageReconciliationService imageReconciliationService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private ReconciliationCheckpointRepository checkpointRepository;
+
+  @Mock
+  private S3Service s3Service;
+
+  @Mock
+  private NamedLocks namedLocks;
+
+  private final List<ReconciliationCheckpoint> savedCheckpoints = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(imageReconciliationService, "deleteOrphans", true);
+    ReflectionTestUtils.setField(imageReconciliationService, "gracePeriod", Duration.ofHours(1));
+    ReflectionTestUtils.setField(imageReconciliationService, "pageSize", 2);
+    ReflectionTestUtils.setField(imageReconciliationService, "maxObjectsPerSecond",
+        Integer.MAX_VALUE);
+    lenient().when(s3Service.getBuckets()).thenReturn(List.of("images"));
+    lenient().when(namedLocks.runLocked(anyString(), anyString(), any(), any()))
+        .thenAnswer(invocation -> {
+          invocation.<Runnable>getArgument(3).run();
+          return true;
+        });
+    lenient().when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+      ReconciliationCheckpoint checkpoint = invocation.getArgument(0);
+      savedCheckpoints.add(checkpoint.toBuilder().build());
+      return checkpoint;
+    });
+  }
+
+  private ObjectListing page(String nextToken, ObjectSummary... objects) {
+    return new ObjectListing(List.of(objects), nextToken);
+  }
+
+  private ObjectSummary object(String key, Instant lastModified) {
+    return object("images", key, lastModified);
+  }
+
+  private ObjectSummary object(String bucket, String key, Instant lastModified) {
+    return new ObjectSummary(bucket, key, 0, lastModified);
+  }
+
+  @Test
+  @DisplayName("Reconcile expect old orphans deleted and missing images reported")
+  void reconcile_expectOrphansDeletedAndMissingReported() {
+    Instant old = Instant.now().minus(Duration.ofDays(1));
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(s3Service.listFiles(eq("images"), isNull(), isNull(), eq(2))).thenReturn(
+        page("token", object("1-a.png", old), object("2-b.png", old)));
+    when(s3Service.listFiles(eq("images"), isNull(), eq("token"), eq(2))).thenReturn(
+        page(null, object("4-d.png", Instant.now()), object("5-e.png", old)));
+    when(productRepository.findImageLocationsAfter("", 2)).thenReturn(List.of("1-a.png",
+        "3-c.png"));
+    when(productRepository.findImageLocationsAfter("3-c.png", 2)).thenReturn(List.of());
+    when(s3Service.fileExists("3-c.png")).thenReturn(false);
+
+    imageReconciliationService.reconcile();
+
+    verify(s3Service).deleteFiles("images", List.of("2-b.png"));
+    verify(s3Service).deleteFiles("images", List.of("5-e.png"));
+    ReconciliationCheckpoint last = savedCheckpoints.get(savedCheckpoints.size() - 1);
+    Assertions.assertNotNull(last.getCompletedAt());
+    Assertions.assertNull(last.getLastKey());
+    Assertions.assertEquals(4, last.getScannedObjects());
+    Assertions.assertEquals(2, last.getOrphanedObjects());
+    Assertions.assertEquals(2, last.getDeletedObjects());
+    Assertions.assertEquals(1, last.getMissingObjects());
+    Assertions.assertEquals("2-b.png", savedCheckpoints.get(0).getLastKey());
+  }
+
+  @Test
+  @DisplayName("Reconcile expect unfinished run resumed after checkpoint key")
+  void reconcile_expectResumeFromCheckpoint() {
+    ReconciliationCheckpoint checkpoint = ReconciliationCheckpoint.builder()
+        .name("image-reconciliation")
+        .lastKey("2-b.png")
+        .scannedObjects(2)
+        .startedAt(Instant.now())
+        .build();
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.of(checkpoint));
+    when(s3Service.listFiles(eq("images"), eq("2-b.png"), isNull(), eq(2))).thenReturn(
+        page(null, object("3-c.png", Instant.now())));
+    when(productRepository.findImageLocationsAfter("2-b.png", 2)).thenReturn(List.of("3-c.png"));
+
+    imageReconciliationService.reconcile();
+
+    verify(s3Service, never()).deleteFiles(anyString(), anyList());
+    verify(s3Service, never()).fileExists(anyString());
+    Assertions.assertEquals(3, checkpoint.getScannedObjects());
+    Assertions.assertNotNull(checkpoint.getCompletedAt());
+  }
+
+  @Test
+  @DisplayName("Reconcile expect listings of all buckets merged and orphans deleted per bucket")
+  void reconcile_expectBucketListingsMerged() {
+    Instant old = Instant.now().minus(Duration.ofDays(1));
+    when(s3Service.getBuckets()).thenReturn(List.of("images-a", "images-b"));
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(s3Service.listFiles(eq("images-a"), isNull(), isNull(), eq(2))).thenReturn(
+        page(null, object("images-a", "1-a.png", old), object("images-a", "4-d.png", old)));
+    when(s3Service.listFiles(eq("images-b"), isNull(), isNull(), eq(2))).thenReturn(
+        page(null, object("images-b", "2-b.png", old), object("images-b", "3-c.png", old)));
+    when(productRepository.findImageLocationsAfter("", 2)).thenReturn(List.of("1-a.png",
+        "3-c.png"));
+    when(productRepository.findImageLocationsAfter("3-c.png", 2)).thenReturn(List.of());
+
+    imageReconciliationService.reconcile();
+
+    verify(s3Service).deleteFiles("images-b", List.of("2-b.png"));
+    verify(s3Service).deleteFiles("images-a", List.of("4-d.png"));
+    verify(s3Service, never()).fileExists(anyString());
+    Assertions.assertEquals(4, savedCheckpoints.get(savedCheckpoints.size() - 1)
+        .getScannedObjects());
+  }
+
+  @Test
+  @DisplayName("Reconcile expect failure when image locations are not in S3 key order")
+  void reconcile_expectFailureOnUnsortedLocations() {
+    when(checkpointRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(s3Service.listFiles(anyString(), isNull(), isNull(), anyInt())).thenReturn(page(null));
+    when(productRepository.findImageLocationsAfter("", 2)).thenReturn(List.of("b.png",
+        "A.png"));
+
+    Assertions.assertThrows(IllegalStateException.class,
+        () -> imageReconciliationService.reconcile());
+    verify(s3Service, never()).deleteFiles(anyString(), anyList());
+  }
+
+  @Test
+  @DisplayName("Reconcile expect nothing scanned while another instance holds the lock")
+  void reconcile_expectSkippedWhenLockedElsewhere() {
+    when(namedLocks.runLocked(eq("default"), eq("image-reconciliation"), eq(Duration.ZERO),
+        any())).thenReturn(false);
+
+    imageReconciliationService.reconcile();
+
+    verify(checkpointRepository, never()).findById(anyString());
+    verify(s3Service, never()).listFiles(anyString(), any(), any(), anyInt());
+  }
+}
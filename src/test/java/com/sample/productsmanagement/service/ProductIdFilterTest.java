@@ -0,0 +1,152 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.product.ProductIdFilter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class ProductIdFilterTest {
+
+  @InjectMocks
+  private ProductIdFilter productIdFilter;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private ProductChangeRepository productChangeRepository;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(productIdFilter, "expectedProducts", 1000);
+    ReflectionTestUtils.setField(productIdFilter, "falsePositiveRate", 0.01);
+    ReflectionTestUtils.setField(productIdFilter, "pageSize", 500);
+    ReflectionTestUtils.setField(productIdFilter, "commitWindow", Duration.ofSeconds(30));
+    ReflectionTestUtils.setField(productIdFilter, "maxStaleRatio", 0.2);
+  }
+
+  private ProductChange created(long id, int productId, Instant createdAt) {
+    return ProductChange.builder()
+        .id(id)
+        .productId(productId)
+        .type(ChangeType.CREATED)
+        .createdAt(createdAt)
+        .build();
+  }
+
+  @Test
+  @DisplayName("Rebuild expect every stored id kept and most unknown ids ruled out")
+  void rebuild_expectStoredIdsKeptAndUnknownIdsRuledOut() {
+    Assertions.assertTrue(productIdFilter.mightContain(1));
+    List<Integer> firstPage = IntStream.rangeClosed(1, 500).map(id -> id * 20).boxed()
+        .toList();
+    List<Integer> secondPage = IntStream.rangeClosed(501, 600).map(id -> id * 20).boxed()
+        .toList();
+    when(productRepository.count()).thenReturn(600L);
+    when(productRepository.findIdsAfter(0, Limit.of(500))).thenReturn(firstPage);
+    when(productRepository.findIdsAfter(10_000, Limit.of(500))).thenReturn(secondPage);
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(anyLong(),
+        eq(ChangeType.CREATED), any())).thenReturn(List.of());
+
+    productIdFilter.rebuild();
+
+    for (int id = 20; id <= 12_000; id += 20) {
+      Assertions.assertTrue(productIdFilter.mightContain(id));
+    }
+    long falsePositives = IntStream.rangeClosed(1, 12_000)
+        .filter(id -> id % 20 != 0)
+        .limit(10_000)
+        .filter(productIdFilter::mightContain)
+        .count();
+    Assertions.assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+  }
+
+  @Test
+  @DisplayName("Refresh expect created products added and cursor held before unsettled changes")
+  void refresh_expectCreatedProductsAddedFromChangeFeed() {
+    when(productRepository.findIdsAfter(anyInt(), any())).thenReturn(List.of(20));
+    when(productChangeRepository.findLastIdCreatedBefore(any())).thenReturn(10L);
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(anyLong(),
+        eq(ChangeType.CREATED), any())).thenReturn(List.of());
+    productIdFilter.rebuild();
+    Assertions.assertFalse(productIdFilter.mightContain(7));
+
+    Instant old = Instant.now().minus(Duration.ofMinutes(1));
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(10L, ChangeType.CREATED,
+        Limit.of(500))).thenReturn(List.of(created(11, 7, old), created(12, 8, Instant.now()),
+        created(13, 9, old)));
+    productIdFilter.refresh();
+
+    Assertions.assertTrue(productIdFilter.mightContain(7));
+    Assertions.assertTrue(productIdFilter.mightContain(8));
+    Assertions.assertTrue(productIdFilter.mightContain(9));
+    Assertions.assertEquals(11L, ReflectionTestUtils.getField(productIdFilter, "changeCursor"));
+  }
+
+  @Test
+  @DisplayName("Refresh expect rebuild once deleted products make up too much of the filter")
+  void refresh_expectRebuildWhenTooManyDeletions() {
+    when(productRepository.count()).thenReturn(4L);
+    when(productRepository.findIdsAfter(anyInt(), any())).thenReturn(List.of(1, 2, 3, 4));
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(anyLong(),
+        eq(ChangeType.CREATED), any())).thenReturn(List.of());
+    productIdFilter.rebuild();
+
+    productIdFilter.recordDeletion();
+    productIdFilter.refresh();
+
+    verify(productRepository, times(2)).count();
+  }
+
+  @Test
+  @DisplayName("Might contain expect product created by another instance found before refresh")
+  void mightContain_expectIdsAboveSettledIdsLookedUp() {
+    when(productRepository.findIdsAfter(anyInt(), any())).thenReturn(List.of(2, 4));
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(anyLong(),
+        eq(ChangeType.CREATED), any())).thenReturn(List.of());
+    productIdFilter.rebuild();
+
+    // created and committed by another instance, not yet read from the change feed
+    Assertions.assertTrue(productIdFilter.mightContain(5));
+    Assertions.assertFalse(productIdFilter.mightContain(3));
+
+    when(productChangeRepository.findByIdGreaterThanAndTypeOrderByIdAsc(anyLong(),
+        eq(ChangeType.CREATED), any())).thenReturn(
+        List.of(created(1, 9, Instant.now().minus(Duration.ofMinutes(1)))));
+    productIdFilter.refresh();
+
+    Assertions.assertTrue(productIdFilter.mightContain(9));
+    Assertions.assertFalse(productIdFilter.mightContain(7));
+    Assertions.assertTrue(productIdFilter.mightContain(10));
+  }
+}
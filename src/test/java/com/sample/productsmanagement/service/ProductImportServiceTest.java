@@ -0,0 +1,323 @@
+package com.sample.productsmanagement.service;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.exception.ImportQueueFullException;
+import com.sample.productsmanagement.model.ImageMetadata;
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.model.ProductImport;
+import com.sample.productsmanagement.model.ProductImport.Status;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.repository.ProductImportRepository;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.product.ProductImportService;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
+import com.sample.productsmanagement.service.s3.FlatImageKeyLayout;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3Service;
+import jakarta.validation.Validation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+  @InjectMocks
+  private ProductImportService productImportService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductImportRepository productImportRepository;
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private ProductChangeRepository productChangeRepository;
+
+  @Mock
+  private ProductStatisticsService productStatisticsService;
+
+  @Mock
+  private S3Service s3Service;
+
+  @Spy
+  private ImageKeyLayout imageKeyLayout = new FlatImageKeyLayout();
+
+  @Spy
+  private ImageInspector imageInspector = new ImageInspector();
+
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @TempDir
+  private Path directory;
+
+  private ProductImport storedImport;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(productImportService, "validator",
+        Validation.buildDefaultValidatorFactory().getValidator());
+    ReflectionTestUtils.setField(productImportService, "directory", directory);
+    ReflectionTestUtils.setField(productImportService, "batchSize", 2);
+    ReflectionTestUtils.setField(productImportService, "concurrency", 1);
+    ReflectionTestUtils.setField(productImportService, "uploadThreads", 2);
+    ReflectionTestUtils.setField(productImportService, "maxImageSize", DataSize.ofMegabytes(1));
+    ReflectionTestUtils.invokeMethod(productImportService, "init");
+
+    when(productImportRepository.save(any())).thenAnswer(invocation -> {
+      ProductImport productImport = invocation.getArgument(0);
+      productImport.setId(7);
+      storedImport = productImport;
+      return productImport;
+    });
+    lenient().when(productImportRepository.findById(anyLong()))
+        .thenAnswer(invocation -> Optional.of(storedImport));
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReflectionTestUtils.invokeMethod(productImportService, "destroy");
+  }
+
+  private void awaitImport() throws InterruptedException {
+    ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) ReflectionTestUtils
+        .getField(productImportService, "importExecutor");
+    executor.getThreadPoolExecutor().shutdown();
+    Assertions.assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  private byte[] zip(String... names) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(output)) {
+      for (String name : names) {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(ImageInspectorTest.png(2, 3));
+        zip.closeEntry();
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private List<Product> mockSaves() {
+    when(transactionTemplate.execute(any())).thenAnswer(
+        invocation -> invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+    AtomicInteger ids = new AtomicInteger();
+    List<Product> savedProducts = new ArrayList<>();
+    when(productRepository.saveAll(anyList())).thenAnswer(invocation -> {
+      List<Product> batch = invocation.getArgument(0);
+      batch.forEach(product -> product.setId(ids.incrementAndGet()));
+      savedProducts.addAll(batch);
+      return batch;
+    });
+    when(productRepository.findAllById(any())).thenAnswer(invocation -> {
+      Set<Integer> productIds = invocation.getArgument(0);
+      return savedProducts.stream()
+          .filter(product -> productIds.contains(product.getId()))
+          .toList();
+    });
+    return savedProducts;
+  }
+
+  @Test
+  @DisplayName("Import products expect valid rows saved in batches with images uploaded")
+  void startImport_expectValidRowsImported() throws Exception {
+    String csv = """
+        name,price,quantity,image
+        First product,100,1,images/first.png
+        Bad,100,1,
+        Second product,abc,1,
+        Third product,300,3,missing.png
+        Fourth product,400,4,
+        """;
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        csv.getBytes(StandardCharsets.UTF_8));
+    MockMultipartFile images = new MockMultipartFile("images", "images.zip", "application/zip",
+        zip("images/first.png"));
+    List<Product> savedProducts = mockSaves();
+
+    productImportService.startImport(products, images);
+    awaitImport();
+
+    Assertions.assertEquals(Status.COMPLETED, storedImport.getStatus());
+    Assertions.assertEquals(5, storedImport.getProcessedRows());
+    Assertions.assertEquals(2, storedImport.getImportedRows());
+    Assertions.assertEquals(3, storedImport.getFailedRows());
+    Assertions.assertEquals(1, storedImport.getUploadedImages());
+    Assertions.assertEquals(List.of(
+        "Line 3: Minimum product name length is 5",
+        "Line 4: price and quantity should be numbers",
+        "Line 5: Image missing.png not found in the image archive"), storedImport.getErrors());
+    Assertions.assertEquals("1-first.png", savedProducts.get(0).getImageLocation());
+    Assertions.assertNull(savedProducts.get(1).getImageLocation());
+    verify(productStatisticsService).increment(2, 5, 1700);
+    Assertions.assertEquals(new ImageMetadata("png", 2, 3, 33L,
+        savedProducts.get(0).getImage().getVersion()), savedProducts.get(0).getImage());
+    Assertions.assertNotNull(savedProducts.get(0).getImage().getVersion());
+    verify(s3Service).uploadFile(eq("1-first.png"), any(InputStream.class), eq(33L),
+        eq("image/png"));
+    ArgumentCaptor<List<ProductChange>> changes = ArgumentCaptor.captor();
+    verify(productChangeRepository, times(2)).saveAll(changes.capture());
+    Assertions.assertEquals(List.of(List.of(ChangeType.CREATED, ChangeType.CREATED),
+            List.of(ChangeType.UPDATED)),
+        changes.getAllValues().stream()
+            .map(batch -> batch.stream().map(ProductChange::getType).toList())
+            .toList());
+    Assertions.assertEquals(1, changes.getAllValues().get(1).get(0).getProductId());
+    verify(s3Service, never()).deleteFile(any());
+  }
+
+  @Test
+  @DisplayName("Import products expect uploaded image deleted when the product changed meanwhile")
+  void startImport_expectImageDeletedWhenProductChanged() throws Exception {
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        "name,price,quantity,image\nFirst product,100,1,first.png\n"
+            .getBytes(StandardCharsets.UTF_8));
+    MockMultipartFile images = new MockMultipartFile("images", "images.zip", "application/zip",
+        zip("first.png"));
+    List<Product> savedProducts = mockSaves();
+    doAnswer(invocation -> {
+      savedProducts.get(0).setImageLocation("1-replaced.png");
+      return null;
+    }).when(s3Service).uploadFile(eq("1-first.png"), any(InputStream.class), eq(33L),
+        eq("image/png"));
+
+    productImportService.startImport(products, images);
+    awaitImport();
+
+    Assertions.assertEquals(Status.COMPLETED, storedImport.getStatus());
+    Assertions.assertEquals(0, storedImport.getUploadedImages());
+    Assertions.assertEquals("1-replaced.png", savedProducts.get(0).getImageLocation());
+    verify(s3Service).deleteFile("1-first.png");
+  }
+
+  @Test
+  @DisplayName("Import products expect failed import when CSV header is missing columns")
+  void startImport_expectFailedWhenHeaderInvalid() throws Exception {
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        "name,price\nFirst product,100\n".getBytes(StandardCharsets.UTF_8));
+
+    productImportService.startImport(products, null);
+    awaitImport();
+
+    Assertions.assertEquals(Status.FAILED, storedImport.getStatus());
+    Assertions.assertEquals(List.of("CSV header should contain name, price, quantity"),
+        storedImport.getErrors());
+    verify(productRepository, never()).saveAll(anyList());
+  }
+
+  @Test
+  @DisplayName("Import products expect rejected and nothing left behind when the queue is full")
+  void startImport_expectRejectedWhenQueueFull() throws Exception {
+    ReflectionTestUtils.invokeMethod(productImportService, "destroy");
+    ReflectionTestUtils.setField(productImportService, "queueCapacity", 0);
+    ReflectionTestUtils.invokeMethod(productImportService, "init");
+    ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) ReflectionTestUtils
+        .getField(productImportService, "importExecutor");
+    CountDownLatch running = new CountDownLatch(1);
+    executor.execute(() -> {
+      try {
+        running.await();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    MockMultipartFile products = new MockMultipartFile("file", "products.csv", "text/csv",
+        "name,price,quantity\n".getBytes(StandardCharsets.UTF_8));
+
+    try {
+      assertThrows(ImportQueueFullException.class,
+          () -> productImportService.startImport(products, null));
+    } finally {
+      running.countDown();
+    }
+
+    verify(productImportRepository).delete(storedImport);
+    Assertions.assertFalse(Files.exists(directory.resolve("import-7")));
+  }
+
+  @Test
+  @DisplayName("Init expect imports left unfinished by a restart or abandoned resolved")
+  void recoverImports_expectUnfinishedImportsResolved() throws Exception {
+    Instant old = Instant.now().minus(Duration.ofDays(2));
+    ProductImport interrupted = ProductImport.builder().id(1).status(Status.RUNNING)
+        .updatedAt(Instant.now()).build();
+    ProductImport queued = ProductImport.builder().id(2).status(Status.QUEUED)
+        .updatedAt(old).build();
+    ProductImport abandoned = ProductImport.builder().id(3).status(Status.QUEUED)
+        .updatedAt(old).build();
+    ProductImport elsewhere = ProductImport.builder().id(4).status(Status.RUNNING)
+        .updatedAt(Instant.now()).build();
+    Files.createDirectories(directory.resolve("import-1"));
+    Files.createDirectories(directory.resolve("import-2"));
+    Files.writeString(directory.resolve("import-2").resolve("products.csv"),
+        "name,price,quantity\n");
+    when(productImportRepository.findByStatusIn(List.of(Status.QUEUED, Status.RUNNING)))
+        .thenReturn(List.of(interrupted, queued, abandoned, elsewhere));
+    doReturn(Optional.of(queued)).when(productImportRepository).findById(2L);
+
+    ReflectionTestUtils.invokeMethod(productImportService, "recoverImports");
+    awaitImport();
+
+    Assertions.assertEquals(Status.FAILED, interrupted.getStatus());
+    Assertions.assertEquals(List.of("Import interrupted by a restart"), interrupted.getErrors());
+    Assertions.assertFalse(Files.exists(directory.resolve("import-1")));
+    Assertions.assertEquals(Status.COMPLETED, queued.getStatus());
+    Assertions.assertEquals(Status.FAILED, abandoned.getStatus());
+    Assertions.assertEquals(List.of("Import abandoned by the instance running it"),
+        abandoned.getErrors());
+    Assertions.assertEquals(Status.RUNNING, elsewhere.getStatus());
+  }
+}
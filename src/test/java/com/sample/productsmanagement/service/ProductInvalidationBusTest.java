@@ -0,0 +1,164 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.product.ProductInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class ProductInvalidationBusTest {
+
+  @InjectMocks
+  private ProductInvalidationBus productInvalidationBus;
+
+  @Mock
+  private ProductChangeRepository productChangeRepository;
+
+  @Mock
+  private EntityManagerFactory entityManagerFactory;
+
+  @Mock
+  private ImageCacheService imageCacheService;
+
+  @Mock
+  private SessionFactory sessionFactory;
+
+  @Mock
+  private Cache cache;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(productInvalidationBus, "batchSize", 5);
+    ReflectionTestUtils.setField(productInvalidationBus, "commitWindow", Duration.ofSeconds(30));
+    ReflectionTestUtils.setField(productInvalidationBus, "maxStaleness", Duration.ofSeconds(10));
+    ReflectionTestUtils.setField(productInvalidationBus, "maxPendingGaps", 100);
+  }
+
+  private void mockCache() {
+    when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+    when(sessionFactory.getCache()).thenReturn(cache);
+  }
+
+  private ProductChange change(long id, int productId, String previousImageLocation) {
+    return new ProductChange(id, productId, ChangeType.UPDATED, Instant.now(),
+        previousImageLocation);
+  }
+
+  @Test
+  @DisplayName("Poll expect changes coalesced per product and late commits of skipped ids evicted")
+  void poll_expectCoalescedEvictions() {
+    mockCache();
+    when(productChangeRepository.findLastIdCreatedBefore(any())).thenReturn(10L);
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Limit.class)))
+        .thenReturn(List.of(change(11, 1, "1-a.png"), change(13, 1, null),
+            change(14, 2, "2-b.png")));
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(14L), any(Limit.class)))
+        .thenReturn(List.of());
+    when(productChangeRepository.findAllById(Set.of(12L)))
+        .thenReturn(List.of())
+        .thenReturn(List.of(change(12, 3, null)));
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    productInvalidationBus.bindTo(registry);
+
+    productInvalidationBus.poll();
+
+    verify(cache).evictEntityData(Product.class, 1);
+    verify(cache).evictEntityData(Product.class, 2);
+    verify(cache, times(1)).evictQueryRegions();
+    verify(imageCacheService).evict("1-a.png");
+    verify(imageCacheService).evict("2-b.png");
+    Assertions.assertEquals(3, registry.get("product.invalidation.changes").counter().count());
+    Assertions.assertEquals(2, registry.get("product.invalidation.evictions").counter().count());
+    Assertions.assertEquals(1, registry.get("product.invalidation.pending-gaps").gauge().value());
+
+    productInvalidationBus.poll();
+
+    verify(cache).evictEntityData(Product.class, 3);
+    Assertions.assertEquals(0, registry.get("product.invalidation.pending-gaps").gauge().value());
+    Assertions.assertEquals(4, registry.get("product.invalidation.lag").timer().count());
+  }
+
+  @Test
+  @DisplayName("Poll expect every cached product evicted once the feed is unreadable too long")
+  void poll_expectEvictAllPastMaxStaleness() {
+    when(productChangeRepository.findLastIdCreatedBefore(any())).thenReturn(10L);
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class)))
+        .thenThrow(new QueryTimeoutException("timeout"));
+
+    productInvalidationBus.poll();
+
+    verify(entityManagerFactory, never()).unwrap(any());
+
+    mockCache();
+    ReflectionTestUtils.setField(productInvalidationBus, "caughtUpAt",
+        Instant.now().minus(Duration.ofMinutes(1)));
+    productInvalidationBus.poll();
+
+    verify(cache).evictEntityData(Product.class);
+    verify(cache).evictQueryRegions();
+    verify(cache, never()).evictEntityData(eq(Product.class), anyInt());
+  }
+
+  @Test
+  @DisplayName("Poll expect every cached product evicted while unremembered skipped ids may commit")
+  void poll_expectEvictAllPastMaxPendingGaps() {
+    mockCache();
+    ReflectionTestUtils.setField(productInvalidationBus, "maxPendingGaps", 1);
+    when(productChangeRepository.findLastIdCreatedBefore(any())).thenReturn(10L);
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(10L), any(Limit.class)))
+        .thenReturn(List.of(change(14, 1, null)));
+    when(productChangeRepository.findByIdGreaterThanOrderByIdAsc(eq(14L), any(Limit.class)))
+        .thenReturn(List.of());
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    productInvalidationBus.bindTo(registry);
+
+    productInvalidationBus.poll();
+
+    verify(cache).evictEntityData(Product.class, 1);
+    verify(cache, times(1)).evictEntityData(Product.class);
+    Assertions.assertEquals(3,
+        registry.get("product.invalidation.gap-overflows").counter().count());
+    Assertions.assertEquals(0, registry.get("product.invalidation.pending-gaps").gauge().value());
+
+    productInvalidationBus.poll();
+
+    verify(cache, times(2)).evictEntityData(Product.class);
+
+    ReflectionTestUtils.setField(productInvalidationBus, "evictAllUntil",
+        Instant.now().minus(Duration.ofSeconds(1)));
+    productInvalidationBus.poll();
+    productInvalidationBus.poll();
+
+    verify(cache, times(3)).evictEntityData(Product.class);
+  }
+}
@@ -0,0 +1,106 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductRepository.PurgeCandidate;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.product.ProductPurgeService;
+import com.sample.productsmanagement.service.s3.S3Service;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ProductPurgeServiceTest {
+
+  @InjectMocks
+  private ProductPurgeService productPurgeService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private S3Service s3Service;
+
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(productPurgeService, "gracePeriod", Duration.ofMinutes(10));
+    ReflectionTestUtils.setField(productPurgeService, "batchSize", 2);
+    ReflectionTestUtils.setField(productPurgeService, "maxBatchesPerRun", 3);
+    ReflectionTestUtils.setField(productPurgeService, "batchPause", Duration.ZERO);
+    when(transactionTemplate.execute(any())).thenAnswer(
+        invocation -> invocation.<TransactionCallback<Integer>>getArgument(0).doInTransaction(null));
+    when(productRepository.purgeDeleted(anyList()))
+        .thenAnswer(invocation -> invocation.<List<Integer>>getArgument(0).size());
+  }
+
+  private PurgeCandidate candidate(int id, String imageLocation) {
+    return new PurgeCandidate() {
+      @Override
+      public int getId() {
+        return id;
+      }
+
+      @Override
+      public String getImageLocation() {
+        return imageLocation;
+      }
+    };
+  }
+
+  @Test
+  @DisplayName("Purge expect images deleted in batch before rows until no candidate left")
+  void purgeDeletedProducts_expectBatchedImageAndRowDeletes() {
+    when(productRepository.lockPurgeCandidates(600, 2)).thenReturn(
+        List.of(candidate(1, "1-a.png"), candidate(2, null)),
+        List.of(candidate(3, "3-c.png")));
+
+    productPurgeService.purgeDeletedProducts();
+
+    InOrder order = inOrder(s3Service, productRepository);
+    order.verify(s3Service).deleteFiles(Arrays.asList("1-a.png", null));
+    order.verify(productRepository).purgeDeleted(List.of(1, 2));
+    order.verify(s3Service).deleteFiles(List.of("3-c.png"));
+    order.verify(productRepository).purgeDeleted(List.of(3));
+    verify(productRepository, times(2)).lockPurgeCandidates(anyLong(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Purge expect stop after max batches per run")
+  void purgeDeletedProducts_expectStopAtMaxBatches() {
+    when(productRepository.lockPurgeCandidates(600, 2)).thenReturn(
+        List.of(candidate(1, "1-a.png"), candidate(2, "2-b.png")));
+
+    productPurgeService.purgeDeletedProducts();
+
+    verify(s3Service, times(3)).deleteFiles(anyList());
+    verify(productRepository, times(3)).purgeDeleted(anyList());
+  }
+}
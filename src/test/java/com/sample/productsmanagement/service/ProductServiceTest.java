@@ -2,28 +2,72 @@ package com.sample.productsmanagement.service;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.sample.productsmanagement.exception.ImageNotFoundException;
 import com.sample.productsmanagement.exception.ProductNotFoundException;
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.exception.InvalidFileFormatException;
+import com.sample.productsmanagement.model.ImageMetadata;
 import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductChange;
+import com.sample.productsmanagement.model.ProductChange.ChangeType;
+import com.sample.productsmanagement.model.ProductChangeSet;
+import com.sample.productsmanagement.model.ProductLookup;
+import com.sample.productsmanagement.repository.ProductChangeRepository;
 import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.image.ImageCacheService;
+import com.sample.productsmanagement.service.image.ImageInspector;
+import com.sample.productsmanagement.service.product.ProductIdFilter;
 import com.sample.productsmanagement.service.product.ProductService;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
+import com.sample.productsmanagement.service.s3.FlatImageKeyLayout;
+import com.sample.productsmanagement.service.s3.ImageKeyLayout;
+import com.sample.productsmanagement.service.s3.S3CallExecutor.AsyncCall;
 import com.sample.productsmanagement.service.s3.S3Service;
+import com.sample.productsmanagement.service.snapshot.CatalogSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 class ProductServiceTest {
@@ -31,12 +75,30 @@ class ProductServiceTest {
   @InjectMocks
   private ProductService productService;
 
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
   @Mock
   private S3Service s3Service;
 
+  @Spy
+  private ImageKeyLayout imageKeyLayout = new FlatImageKeyLayout();
+
+  @Spy
+  private ImageInspector imageInspector = new ImageInspector();
+
   @Mock
   private ProductRepository productRepository;
 
+  @Mock
+  private ImageCacheService imageCacheService;
+
+  @Mock
+  private ProductChangeRepository productChangeRepository;
+
+  @Mock
+  private ProductStatisticsService productStatisticsService;
+
   @Test
   @DisplayName("Create Product expect save product and send response with product image url")
   void createProduct_expectSaveProductAndSendProductWithImageUrl() throws IOException {
@@ -45,15 +107,80 @@ class ProductServiceTest {
         .price(1)
         .quantity(10)
         .build();
+    MockMultipartFile newProductImage = new MockMultipartFile("new image", "product.png", "image/png", ImageInspectorTest.png(2, 3));
+    Product storedProduct = new Product(1, "test", 1, 10, null);
+    when(productRepository.save(any(Product.class))).thenReturn(storedProduct);
+    when(s3Service.uploadFileAsync(eq("1-product.png"), any(InputStream.class), eq(33L),
+        eq("image/png"))).thenReturn(new AsyncCall<>(
+            CompletableFuture.completedFuture("s3.aws.com/1-product.png"),
+            CompletableFuture.completedFuture(null)));
+
+    Product createdProduct = productService.createProduct(newProduct, newProductImage);
+
+    ImageMetadata image = new ImageMetadata("png", 2, 3, 33L,
+        storedProduct.getImage().getVersion());
+    Assertions.assertNotNull(image.getVersion());
+    Assertions.assertEquals(new Product(1, "test", 1, 10, "s3.aws.com/1-product.png")
+        .toBuilder().image(image).build(), createdProduct);
+    Assertions.assertEquals("1-product.png", storedProduct.getImageLocation());
+    Assertions.assertEquals(image, storedProduct.getImage());
+    verify(productRepository, times(1)).save(any(Product.class));
+    InOrder inOrder = inOrder(productRepository, productChangeRepository);
+    inOrder.verify(productRepository).flush();
+    inOrder.verify(productChangeRepository).save(any(ProductChange.class));
+  }
+
+  @Test
+  @DisplayName("Create Product expect storage error rethrown when image upload fails")
+  void createProduct_expectUploadFailureRethrown() throws IOException {
+    MockMultipartFile newProductImage = new MockMultipartFile("new image", "product.png", "image/png", ImageInspectorTest.png(2, 3));
+    when(productRepository.save(any(Product.class))).thenReturn(new Product(1, "test", 1, 10, null));
+    when(s3Service.uploadFileAsync(eq("1-product.png"), any(InputStream.class), eq(33L),
+        eq("image/png"))).thenReturn(new AsyncCall<>(CompletableFuture.failedFuture(
+            new StorageUnavailableException("S3 call timed out", null)),
+            CompletableFuture.completedFuture(null)));
+
+    StorageUnavailableException exception = assertThrows(StorageUnavailableException.class,
+        () -> productService.createProduct(Product.builder().name("test").build(), newProductImage));
+    Assertions.assertEquals("S3 call timed out", exception.getMessage());
+    verify(productChangeRepository, never()).save(any(ProductChange.class));
+  }
+
+  @Test
+  @DisplayName("Create Product expect image deleted on rollback only once the timed out upload has finished")
+  void createProduct_expectImageDeletedAfterTimedOutUploadFinished() throws IOException {
+    MockMultipartFile newProductImage = new MockMultipartFile("new image", "product.png", "image/png", ImageInspectorTest.png(2, 3));
+    when(productRepository.save(any(Product.class))).thenReturn(new Product(1, "test", 1, 10, null));
+    CompletableFuture<Void> uploadFinished = new CompletableFuture<>();
+    when(s3Service.uploadFileAsync(eq("1-product.png"), any(InputStream.class), eq(33L),
+        eq("image/png"))).thenReturn(new AsyncCall<>(CompletableFuture.failedFuture(
+            new StorageUnavailableException("S3 call timed out", null)), uploadFinished));
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      assertThrows(StorageUnavailableException.class, () -> productService.createProduct(
+          Product.builder().name("test").build(), newProductImage));
+      TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+          synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    verify(s3Service, after(200).never()).deleteFile(anyString());
+    uploadFinished.complete(null);
+    verify(s3Service, timeout(1000)).deleteFile("1-product.png");
+  }
+
+  @Test
+  @DisplayName("Create Product expect invalid file format and no upload when image content is not an image")
+  void createProduct_expectNonImageRejectedBeforeUpload() {
     MockMultipartFile newProductImage = new MockMultipartFile("new image", "product.png", "image/png", "test".getBytes());
-    when(productRepository.save(any(Product.class))).thenReturn(
-        new Product(1, "test", 1, 10, null),
-        new Product(1, "test", 1, 10, "1-product.png")
-    );
-    when(s3Service.uploadFile("1-product.png", newProductImage)).thenReturn("s3.aws.com/1-product.png");
-    Product expectedProduct = new Product(1, "test", 1, 10, "s3.aws.com/1-product.png");
+    when(productRepository.save(any(Product.class))).thenReturn(new Product(1, "test", 1, 10, null));
 
-    Assertions.assertEquals(expectedProduct, productService.createProduct(newProduct, newProductImage));
+    InvalidFileFormatException exception = assertThrows(InvalidFileFormatException.class,
+        () -> productService.createProduct(Product.builder().name("test").build(), newProductImage));
+    Assertions.assertEquals("unrecognized content", exception.getMessage());
+    verify(s3Service, never()).uploadFileAsync(anyString(), any(InputStream.class), anyLong(),
+        anyString());
   }
 
   @Test
@@ -67,6 +194,77 @@ class ProductServiceTest {
     Assertions.assertEquals(expectedProduct, productService.getProductDetail(1));
   }
 
+  @Test
+  @DisplayName("Get Product expect concurrent requests for the same id to share one load")
+  void getProductDetail_expectConcurrentRequestsCoalesced() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(productRepository.findById(1)).thenAnswer(invocation -> {
+      loading.countDown();
+      release.await();
+      return Optional.of(new Product(1, "test", 1, 1, null));
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Product> first = executor.submit(() -> productService.getProductDetail(1));
+      loading.await();
+      Future<Product> second = executor.submit(() -> productService.getProductDetail(1));
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      productService.bindTo(registry);
+      while (registry.get("product.reads.coalesced").tag("operation", "detail")
+          .functionCounter().count() == 0) {
+        Thread.onSpinWait();
+      }
+      release.countDown();
+
+      Assertions.assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+      verify(productRepository, times(1)).findById(1);
+      Assertions.assertEquals(1, registry.get("product.reads.loads").tag("operation", "detail")
+          .functionCounter().count());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Get Product expect return stable image proxy url when image proxy enabled")
+  public void getProductDetail_expectReturnImageProxyUrl() {
+    ReflectionTestUtils.setField(productService, "imageProxyEnabled", true);
+    ReflectionTestUtils.setField(productService, "imageProxyBaseUrl", "/api/v1/images");
+    Product product = new Product(1, "test", 1, 1, "1-my image.png");
+    when(productRepository.findById(1)).thenReturn(Optional.of(product));
+
+    Assertions.assertEquals("/api/v1/images/1-my%20image.png",
+        productService.getProductDetail(1).getImageLocation());
+    verify(s3Service, times(0)).getPreSignedUrl(anyString());
+  }
+
+  @Test
+  @DisplayName("Get Product expect image proxy url versioned by the upload of the image")
+  public void getProductDetail_expectVersionedImageProxyUrl() {
+    ReflectionTestUtils.setField(productService, "imageProxyEnabled", true);
+    ReflectionTestUtils.setField(productService, "imageProxyBaseUrl", "/api/v1/images");
+    Product product = new Product(1, "test", 1, 1, "1-image.png").toBuilder()
+        .image(new ImageMetadata("png", 2, 3, 33L, 1700000000000L))
+        .build();
+    when(productRepository.findById(1)).thenReturn(Optional.of(product));
+
+    Assertions.assertEquals("/api/v1/images/1-image.png?v=1700000000000",
+        productService.getProductDetail(1).getImageLocation());
+  }
+
+  @Test
+  @DisplayName("Get image version expect not found when no live product refers to the image")
+  void getImageVersion_expectNotFoundWithoutLiveProduct() {
+    when(productRepository.findImageVersions("1-image.png")).thenReturn(List.of(1700000000000L));
+    when(productRepository.findImageVersions("2-image.png")).thenReturn(List.of());
+
+    Assertions.assertEquals(1700000000000L, productService.getImageVersion("1-image.png"));
+    Assertions.assertEquals("Image 2-image.png, not found", assertThrows(
+        ImageNotFoundException.class, () -> productService.getImageVersion("2-image.png"))
+        .getMessage());
+  }
+
   @Test
   @DisplayName("Get Product expect got product not found exception when product given id not exist")
   void getProductDetail_expectThrowProductNotFoundException() {
@@ -75,22 +273,57 @@ class ProductServiceTest {
     Assertions.assertEquals("Product with id 1, not found", exception.getMessage());
   }
 
+  @Test
+  @DisplayName("Get Product expect product read from the catalog snapshot once it is built")
+  void getProductDetail_expectSnapshotRead() {
+    CatalogSnapshotService catalogSnapshot = mock(CatalogSnapshotService.class);
+    ReflectionTestUtils.setField(productService, "catalogSnapshot", catalogSnapshot);
+    when(catalogSnapshot.isLoaded()).thenReturn(true);
+    when(catalogSnapshot.find(1))
+        .thenReturn(Optional.of(new Product(1, "test", 1, 1, "1-image.png")));
+    when(catalogSnapshot.find(2)).thenReturn(Optional.empty());
+    when(s3Service.getPreSignedUrl("1-image.png")).thenReturn("s3.aws.com/1-image.png");
+
+    Assertions.assertEquals(new Product(1, "test", 1, 1, "s3.aws.com/1-image.png"),
+        productService.getProductDetail(1));
+    assertThrows(ProductNotFoundException.class, () -> productService.getProductDetail(2));
+    verify(productRepository, never()).findById(anyInt());
+  }
+
+  @Test
+  @DisplayName("Get Product expect not found without querying when id filter rules the id out")
+  void getProductDetail_expectFilteredIdNotQueried() {
+    ProductIdFilter productIdFilter = mock(ProductIdFilter.class);
+    ReflectionTestUtils.setField(productService, "productIdFilter", productIdFilter);
+    when(productIdFilter.mightContain(99)).thenReturn(false);
+
+    ProductNotFoundException exception = assertThrows(ProductNotFoundException.class,
+        () -> productService.getProductDetail(99));
+    Assertions.assertEquals("Product with id 99, not found", exception.getMessage());
+    Assertions.assertEquals(0, exception.getStackTrace().length);
+    verify(productRepository, never()).findById(anyInt());
+  }
+
   @Test
   @DisplayName("Update Product expect return product with image url when update product without url")
   void updateProduct_expectUpdateProductImageURL() throws IOException {
     Product existingProduct = new Product(2, "test 2", 1, 1, "1-image.png");
     Product updatedProduct = new Product(2, "update test", 1, 2, null);
     MockMultipartFile mockMultipartFile = new MockMultipartFile("test.png", "test.png",
-        "images/png", "afds".getBytes());
-    when(productRepository.findById(2)).thenReturn(Optional.of(existingProduct));
-    when(s3Service.uploadFile("2-test.png", mockMultipartFile)).thenReturn(
-        "s3.aws.com/2-test.png");
-    Product expectedResult = new Product(2, "update test", 1, 2, "s3.aws.com/2-test.png");
+        "images/png", ImageInspectorTest.png(4, 5));
+    when(productRepository.findByIdForUpdate(2)).thenReturn(Optional.of(existingProduct));
+    when(s3Service.getPreSignedUrl("2-test.png")).thenReturn("s3.aws.com/2-test.png");
 
-    Assertions.assertEquals(expectedResult,
-        productService.updateProduct(updatedProduct, mockMultipartFile));
+    Product result = productService.updateProduct(updatedProduct, mockMultipartFile);
+
+    Assertions.assertNotNull(existingProduct.getImage().getVersion());
+    Assertions.assertEquals(new Product(2, "update test", 1, 2, "s3.aws.com/2-test.png")
+        .toBuilder().image(new ImageMetadata("png", 4, 5, 33L,
+            existingProduct.getImage().getVersion())).build(), result);
     verify(s3Service, times(1)).deleteFile("1-image.png");
-    verify(productRepository, times(1)).findById(2);
+    verify(s3Service, times(1)).uploadFile(eq("2-test.png"), any(InputStream.class), eq(33L),
+        eq("image/png"));
+    verify(productRepository, times(1)).findByIdForUpdate(2);
   }
 
   @Test
@@ -98,14 +331,16 @@ class ProductServiceTest {
   void updateProduct_expectSetProductImageUrlToNull() throws IOException {
     Product existingProduct = new Product(1, "test", 1, 1, "1-image.png");
     Product updatedProduct = new Product(1, "update test", 1, 2, null);
-    when(productRepository.findById(1)).thenReturn(Optional.of(existingProduct));
+    when(productRepository.findByIdForUpdate(1)).thenReturn(Optional.of(existingProduct));
     MockMultipartFile mockMultipartFile = new MockMultipartFile("test", "".getBytes());
 
     Assertions.assertEquals(updatedProduct,
         productService.updateProduct(updatedProduct, mockMultipartFile));
-    verify(productRepository, times(1)).findById(1);
+    verify(productRepository, times(1)).findByIdForUpdate(1);
     verify(s3Service, times(1)).deleteFile("1-image.png");
     verify(productRepository, times(1)).save(updatedProduct);
+    verify(productStatisticsService, times(1)).applyChange(
+        new Product(1, "test", 1, 1, "1-image.png"), updatedProduct);
   }
 
   @Test
@@ -118,14 +353,15 @@ class ProductServiceTest {
   }
 
   @Test
-  @DisplayName("Delete Product expect call s3 service and product repository delete when success delete product given id")
-  void deleteProduct_expectCallS3ServiceDeleteMethod() {
+  @DisplayName("Delete Product expect product repository delete without touching s3 when success delete product given id")
+  void deleteProduct_expectDeleteWithoutS3Call() {
     Product product = new Product(1, "test", 1, 1, "1-image.png");
     when(productRepository.findById(1)).thenReturn(Optional.of(product));
     productService.deleteProduct(1);
 
     verify(productRepository, times(1)).deleteById(1);
-    verify(s3Service, times(1)).deleteFile("1-image.png");
+    verify(s3Service, times(0)).deleteFile("1-image.png");
+    verify(productStatisticsService, times(1)).applyChange(product, null);
   }
 
   @Test
@@ -154,4 +390,79 @@ class ProductServiceTest {
     productService.getProducts()
         .forEach(product -> Assertions.assertTrue(expected.contains(product)));
   }
-}
\ No newline at end of file
+
+  @Test
+  @DisplayName("Get products by ids expect chunked queries, one signing pass and requested order")
+  void getProductsByIds_expectRequestedOrderWithMissingIds() {
+    ReflectionTestUtils.setField(productService, "batchChunkSize", 2);
+    when(productRepository.findAllById(List.of(3, 1))).thenReturn(
+        List.of(new Product(1, "test 1", 1, 1, "1-a.png"), new Product(3, "test 3", 1, 1, null)));
+    when(productRepository.findAllById(List.of(7))).thenReturn(
+        List.of(new Product(7, "test 7", 1, 1, "7-b.png")));
+    when(s3Service.getPreSignedUrls(Arrays.asList("1-a.png", null, "7-b.png"))).thenReturn(
+        Arrays.asList("s3.aws.com/1-a.png", null, "s3.aws.com/7-b.png"));
+
+    List<ProductLookup> lookups = productService.getProductsByIds(List.of(3, 1, 7, 3));
+
+    Assertions.assertEquals(List.of(
+        new ProductLookup(3, new Product(3, "test 3", 1, 1, null)),
+        new ProductLookup(1, new Product(1, "test 1", 1, 1, "s3.aws.com/1-a.png")),
+        new ProductLookup(7, new Product(7, "test 7", 1, 1, "s3.aws.com/7-b.png")),
+        new ProductLookup(3, new Product(3, "test 3", 1, 1, null))), lookups);
+    verify(s3Service, never()).getPreSignedUrl(anyString());
+  }
+
+  @Test
+  @DisplayName("Get products by ids expect not found marker for ids without product")
+  void getProductsByIds_expectNotFoundMarker() {
+    ProductIdFilter productIdFilter = mock(ProductIdFilter.class);
+    ReflectionTestUtils.setField(productService, "productIdFilter", productIdFilter);
+    when(productIdFilter.mightContain(anyInt())).thenAnswer(
+        invocation -> invocation.<Integer>getArgument(0) != 99);
+    when(productRepository.findAllById(List.of(1, 2))).thenReturn(
+        List.of(new Product(1, "test 1", 1, 1, null)));
+    when(s3Service.getPreSignedUrls(Collections.singletonList(null))).thenReturn(
+        Collections.singletonList(null));
+
+    List<ProductLookup> lookups = productService.getProductsByIds(List.of(99, 1, 2));
+
+    Assertions.assertEquals(List.of(new ProductLookup(99, null),
+        new ProductLookup(1, new Product(1, "test 1", 1, 1, null)),
+        new ProductLookup(2, null)), lookups);
+  }
+
+  @Test
+  @DisplayName("Get product changes expect latest state per product with deleted ids as tombstones")
+  void getProductChanges_expectChangedProductsAndTombstones() {
+    ReflectionTestUtils.setField(productService, "changeSettleTime", Duration.ZERO);
+    List<ProductChange> changes = List.of(
+        new ProductChange(11, 1, ChangeType.CREATED, Instant.EPOCH),
+        new ProductChange(12, 2, ChangeType.CREATED, Instant.EPOCH),
+        new ProductChange(13, 1, ChangeType.UPDATED, Instant.EPOCH),
+        new ProductChange(14, 2, ChangeType.DELETED, Instant.EPOCH)
+    );
+    when(productChangeRepository.findByIdGreaterThanAndCreatedAtLessThanEqualOrderByIdAsc(
+        eq(10L), any(Instant.class), eq(Limit.of(4)))).thenReturn(changes);
+    when(productRepository.findAllById(List.of(1))).thenReturn(
+        List.of(new Product(1, "test 1", 1, 1, null)));
+
+    ProductChangeSet changeSet = productService.getProductChanges(10, 4);
+
+    Assertions.assertEquals(List.of(new Product(1, "test 1", 1, 1, null)), changeSet.products());
+    Assertions.assertEquals(List.of(2), changeSet.deletedIds());
+    Assertions.assertEquals(14, changeSet.cursor());
+    Assertions.assertTrue(changeSet.hasMore());
+  }
+
+  @Test
+  @DisplayName("Get product changes expect same cursor when there is no new change")
+  void getProductChanges_expectSameCursorWhenNoChange() {
+    ReflectionTestUtils.setField(productService, "changeSettleTime", Duration.ZERO);
+
+    ProductChangeSet changeSet = productService.getProductChanges(10, 100);
+
+    Assertions.assertEquals(10, changeSet.cursor());
+    Assertions.assertFalse(changeSet.hasMore());
+    Assertions.assertTrue(changeSet.products().isEmpty());
+  }
+}
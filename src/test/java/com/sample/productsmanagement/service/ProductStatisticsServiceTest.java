@@ -0,0 +1,108 @@
+package com.sample.productsmanagement.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.sample.productsmanagement.model.Product;
+import com.sample.productsmanagement.model.ProductStatistics;
+import com.sample.productsmanagement.repository.ProductRepository;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository;
+import com.sample.productsmanagement.repository.ProductStatisticsRepository.Totals;
+import com.sample.productsmanagement.repository.shard.ProductShards;
+import com.sample.productsmanagement.repository.shard.UnshardedProductShards;
+import com.sample.productsmanagement.service.product.ProductStatisticsService;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ProductStatisticsServiceTest {
+
+  @InjectMocks
+  private ProductStatisticsService productStatisticsService;
+
+  @Spy
+  private ProductShards productShards = new UnshardedProductShards();
+
+  @Mock
+  private ProductStatisticsRepository productStatisticsRepository;
+
+  @Mock
+  private ProductRepository productRepository;
+
+  @Mock
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(productStatisticsService, "slots", 4);
+  }
+
+  private Totals totals(long products, long units, long value) {
+    return new Totals() {
+      @Override
+      public long getTotalProducts() {
+        return products;
+      }
+
+      @Override
+      public long getTotalUnits() {
+        return units;
+      }
+
+      @Override
+      public long getTotalValue() {
+        return value;
+      }
+    };
+  }
+
+  @Test
+  @DisplayName("Apply change expect counters incremented by the difference of both versions")
+  void applyChange_expectDeltaIncrement() {
+    productStatisticsService.applyChange(new Product(1, "test", 10, 3, null),
+        new Product(1, "test", 12, 5, null));
+
+    verify(productStatisticsRepository).increment(anyInt(), eq(0L), eq(2L), eq(30L));
+  }
+
+  @Test
+  @DisplayName("Apply change expect no write when nothing counted changed")
+  void applyChange_expectNoWriteWithoutDelta() {
+    productStatisticsService.applyChange(new Product(1, "test", 10, 3, null),
+        new Product(1, "renamed", 10, 3, "1-image.png"));
+
+    verify(productStatisticsRepository, never()).increment(anyInt(), eq(0L), eq(0L), eq(0L));
+  }
+
+  @Test
+  @DisplayName("Recompute expect every slot reset and the actual totals stored in the first slot")
+  void recompute_expectDriftCorrected() {
+    ProductStatistics first = new ProductStatistics(0, 3, 30, 300);
+    ProductStatistics second = new ProductStatistics(2, -1, 5, 50);
+    when(productStatisticsRepository.lockAll()).thenReturn(List.of(first, second));
+    when(productRepository.calculateTotals()).thenReturn(totals(2, 20, 200));
+    when(transactionTemplate.execute(any())).thenAnswer(
+        invocation -> invocation.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+    productStatisticsService.recompute();
+
+    Assertions.assertEquals(new ProductStatistics(0, 2, 20, 200), first);
+    Assertions.assertEquals(new ProductStatistics(2, 0, 0, 0), second);
+    verify(productStatisticsRepository).save(first);
+  }
+}
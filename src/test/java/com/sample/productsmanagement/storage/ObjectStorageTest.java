@@ -0,0 +1,157 @@
+package com.sample.productsmanagement.storage;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.sample.productsmanagement.exception.StorageUnavailableException;
+import com.sample.productsmanagement.service.storage.FaultInjectingObjectStorage;
+import com.sample.productsmanagement.service.storage.FileSystemObjectStorage;
+import com.sample.productsmanagement.service.storage.InMemoryObjectStorage;
+import com.sample.productsmanagement.service.storage.ObjectListing;
+import com.sample.productsmanagement.service.storage.ObjectStorage;
+import com.sample.productsmanagement.service.storage.ObjectSummary;
+import com.sample.productsmanagement.service.storage.StoredObject;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ObjectStorageTest {
+
+  private static final String PROXY_URL = "/api/v1/images";
+
+  @TempDir
+  private Path directory;
+
+  private List<ObjectStorage> localStorages() {
+    return List.of(new InMemoryObjectStorage(PROXY_URL),
+        new FileSystemObjectStorage(directory.resolve("storage"), PROXY_URL));
+  }
+
+  private static void put(ObjectStorage storage, String bucket, String key, String content) {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    storage.put(bucket, key, new ByteArrayInputStream(bytes), bytes.length, "image/png");
+  }
+
+  private static List<String> keys(ObjectListing listing) {
+    return listing.objects().stream().map(ObjectSummary::key).toList();
+  }
+
+  @Test
+  @DisplayName("Local storages expect objects written, read back, copied and deleted")
+  void localStorages_expectRoundTrip() throws IOException {
+    for (ObjectStorage storage : localStorages()) {
+      put(storage, "images", "ab/1-image.png", "first");
+      put(storage, "images", "ab/1-image.png", "replaced");
+      storage.copy("images", "ab/1-image.png", "archive", "1-image.png");
+
+      Path target = directory.resolve("download");
+      Optional<StoredObject> stored = storage.download("archive", "1-image.png", target);
+
+      Assertions.assertEquals("replaced", Files.readString(target));
+      Assertions.assertEquals(8, stored.orElseThrow().size());
+      Assertions.assertEquals("image/png", stored.orElseThrow().contentType());
+      Assertions.assertNotNull(stored.orElseThrow().eTag());
+      Assertions.assertTrue(storage.exists("images", "ab/1-image.png"));
+      Assertions.assertFalse(storage.exists("images", "ab"));
+      Assertions.assertEquals(PROXY_URL + "/ab/1%20image.png",
+          storage.presignGet("images", "ab/1 image.png", null, Duration.ofMinutes(10)));
+
+      storage.delete("images", List.of("ab/1-image.png", "2-missing.png"));
+      storage.delete("archive", "1-image.png");
+      Assertions.assertFalse(storage.exists("images", "ab/1-image.png"));
+      Assertions.assertEquals(Optional.empty(),
+          storage.download("archive", "1-image.png", target));
+    }
+  }
+
+  @Test
+  @DisplayName("Local storages expect listings paged in key order across nested keys")
+  void localStorages_expectListingPagedInKeyOrder() {
+    for (ObjectStorage storage : localStorages()) {
+      List<String> keys = List.of("b/2-b.png", "1-a.png", "b/1-a.png", "c.png", "B.png",
+          "a.png", "b.png", "b-c.png");
+      keys.forEach(key -> put(storage, "images", key, key));
+
+      List<String> listed = new ArrayList<>();
+      ObjectListing page = storage.list("images", "1-a.png", null, 2);
+      listed.addAll(keys(page));
+      while (page.isTruncated()) {
+        page = storage.list("images", "1-a.png", page.nextContinuationToken(), 2);
+        listed.addAll(keys(page));
+      }
+
+      Assertions.assertEquals(List.of("B.png", "a.png", "b-c.png", "b.png", "b/1-a.png",
+          "b/2-b.png", "c.png"), listed);
+      Assertions.assertEquals(List.of("b/2-b.png", "c.png"),
+          keys(storage.list("images", "b/1-a.png", null, 2)));
+      Assertions.assertEquals(List.of(), keys(storage.list("empty", null, null, 2)));
+    }
+  }
+
+  @Test
+  @DisplayName("File system storage expect keys leaving the bucket rejected")
+  void fileSystemStorage_expectTraversalRejected() {
+    ObjectStorage storage = new FileSystemObjectStorage(directory.resolve("storage"), PROXY_URL);
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> put(storage, "images", "../secret.png", "x"));
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> put(storage, "..", "secret.png", "x"));
+    Assertions.assertEquals(Optional.empty(),
+        storage.download("images", "a/../../secret.png", directory.resolve("download")));
+  }
+
+  @Test
+  @DisplayName("File system storage expect file streams stored and short streams failed")
+  void fileSystemStorage_expectFileStreamStored() throws IOException {
+    ObjectStorage storage = new FileSystemObjectStorage(directory.resolve("storage"), PROXY_URL);
+    Path upload = Files.writeString(directory.resolve("upload"), "spooled upload");
+
+    try (InputStream content = new FileInputStream(upload.toFile())) {
+      storage.put("images", "1-image.png", content, Files.size(upload), "image/png");
+    }
+    storage.download("images", "1-image.png", directory.resolve("download"));
+
+    Assertions.assertEquals("spooled upload", Files.readString(directory.resolve("download")));
+    Assertions.assertThrows(RuntimeException.class, () -> storage.put("images", "2-image.png",
+        new ByteArrayInputStream(new byte[3]), 4, "image/png"));
+    Assertions.assertFalse(storage.exists("images", "2-image.png"));
+  }
+
+  @Test
+  @DisplayName("Fault injection expect calls delayed and failed before reaching the storage")
+  void faultInjection_expectLatencyAndFailures() {
+    ObjectStorage delegate = mock(ObjectStorage.class);
+    ObjectStorage slow = new FaultInjectingObjectStorage(delegate, Duration.ofMillis(50),
+        Duration.ZERO, 0);
+    ObjectStorage failing = new FaultInjectingObjectStorage(delegate, Duration.ZERO,
+        Duration.ZERO, 1);
+
+    long start = System.nanoTime();
+    slow.exists("images", "1-image.png");
+    Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start)
+        .compareTo(Duration.ofMillis(50)) >= 0);
+    verify(delegate).exists("images", "1-image.png");
+
+    Assertions.assertThrows(StorageUnavailableException.class,
+        () -> failing.download("images", "1-image.png", directory.resolve("download")));
+    verify(delegate, never()).download(anyString(), anyString(), any());
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new FaultInjectingObjectStorage(delegate, Duration.ZERO, Duration.ZERO, 2));
+  }
+}
@@ -0,0 +1,64 @@
+package com.sample.productsmanagement.timing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.repository.Repository;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ServerTimingFilterTest {
+
+  interface CountingRepository extends Repository<Object, Integer> {
+    long countAll();
+  }
+
+  private static final Pattern HEADER = Pattern.compile("db;dur=(\\d+\\.\\d);desc=\"2 calls\", "
+      + "serialize;dur=\\d+\\.\\d;desc=\"1 call\", app;dur=\\d+\\.\\d, total;dur=(\\d+\\.\\d)");
+
+  @Test
+  @DisplayName("Filter expect server timing header with repository time added before commit")
+  void doFilter_expectServerTimingHeader() throws Exception {
+    CountingRepository repository = (CountingRepository) new ServerTimingPostProcessor()
+        .postProcessAfterInitialization((CountingRepository) () -> {
+          long until = System.nanoTime() + 5_000_000;
+          while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+          }
+          return 1;
+        }, "countingRepository");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new ServerTimingFilter().doFilter(new MockHttpServletRequest("GET", "/api/v1/products"),
+        response, (req, res) -> {
+          repository.countAll();
+          repository.countAll();
+          res.getOutputStream().write("[]".getBytes(StandardCharsets.UTF_8));
+          res.getOutputStream().flush();
+        });
+
+    Assertions.assertTrue(response.isCommitted());
+    Matcher header = HEADER.matcher(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+    Assertions.assertTrue(header.matches(), response.getHeader(ServerTimingFilter.SERVER_TIMING));
+    Assertions.assertTrue(Double.parseDouble(header.group(1)) >= 10);
+    Assertions.assertTrue(
+        Double.parseDouble(header.group(2)) >= Double.parseDouble(header.group(1)));
+    Assertions.assertNull(RequestTiming.current());
+  }
+
+  @Test
+  @DisplayName("Server timing expect no filter and no proxies when disabled")
+  void serverTiming_expectNoBeansWhenDisabled() {
+    new ApplicationContextRunner()
+        .withUserConfiguration(ServerTimingFilter.class, ServerTimingPostProcessor.class)
+        .withPropertyValues("product.server-timing.enabled=false")
+        .run(context -> {
+          Assertions.assertTrue(context.getBeansOfType(ServerTimingFilter.class).isEmpty());
+          Assertions.assertTrue(context.getBeansOfType(ServerTimingPostProcessor.class).isEmpty());
+        });
+  }
+}